@@ -0,0 +1,345 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive;
+
+import ac.simons.tweetarchive.web.TwitterArchiveReader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import twitter4j.JSONException;
+import twitter4j.Status;
+
+/**
+ * Generates a reproducible archive of synthetic tweets in the format of the
+ * official Twitter archive. The same seed always creates the same tweets, and
+ * a smaller archive is always the beginning of a larger one with the same
+ * seed.
+ * <br>
+ * The tweets start in 2012, about every three hours. They are written in
+ * English, German and French, some contain hashtags and links, some are
+ * retweets, geo tagged or replies to recent tweets, so that there are longer
+ * conversations as well.
+ * <br>
+ * An archive that can be uploaded is created with
+ * {@code java ac.simons.tweetarchive.SyntheticTweetArchive <file> [numberOfTweets] [seed]}.
+ */
+public final class SyntheticTweetArchive {
+
+    public static final long DEFAULT_SEED = 4711L;
+
+    private static final long TWITTER_EPOCH = 1288834974657L;
+
+    private static final Instant START = Instant.parse("2012-01-01T00:00:00Z");
+
+    private static final long MEAN_INTERVAL = TimeUnit.HOURS.toMillis(3);
+
+    private static final DateTimeFormatter CREATED_AT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss Z", Locale.US);
+
+    private static final String[] LANGUAGES = {"en", "en", "en", "de", "de", "fr"};
+
+    private static final Map<String, String[]> WORDS = new TreeMap<>();
+
+    static {
+        WORDS.put("en", ("java spring boot hibernate search index query database postgresql lucene tweet archive stream "
+                + "release conference talk slides coffee train weekend code review build test cloud docker kotlin "
+                + "the a is and of to in for on with this that today great new my our just about").split(" "));
+        WORDS.put("de", ("java spring boot datenbank suche index kaffee zug wochenende vortrag konferenz folien schön "
+                + "heute morgen endlich wieder neues bauen testen grüße aachen fahrrad "
+                + "der die das und ist ein eine mit für auf von nicht noch auch").split(" "));
+        WORDS.put("fr", ("java spring boot recherche base données café train conférence présentation demain "
+                + "aujourd'hui nouveau le la les et est un une avec pour sur").split(" "));
+    }
+
+    private static final String[] HASHTAGS = {"#java", "#springboot", "#hibernate", "#postgresql", "#kaffee", "#jOOQ"};
+
+    private static final String[] CLIENTS = {
+        "<a href=\"http://twitter.com\" rel=\"nofollow\">Twitter Web Client</a>",
+        "<a href=\"http://twitter.com/download/iphone\" rel=\"nofollow\">Twitter for iPhone</a>",
+        "<a href=\"http://itunes.apple.com/us/app/twitter/id409789998?mt=12\" rel=\"nofollow\">Twitter for Mac</a>",
+        "<a href=\"http://tapbots.com/tweetbot\" rel=\"nofollow\">Tweetbot for iOS</a>"
+    };
+
+    private static final String[][] PLACES = {
+        {"DE", "Germany", "Aachen"},
+        {"NL", "Netherlands", "Amsterdam"},
+        {"US", "United States", "San Francisco"}
+    };
+
+    private static final long[] OTHER_USERS = {1193795274L, 14128609L, 68125424L};
+
+    private final JsonNodeFactory nodeFactory = JsonNodeFactory.instance;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Random random;
+
+    private final ObjectNode user;
+
+    private final Map<YearMonth, List<ObjectNode>> tweetsByMonth = new TreeMap<>();
+
+    private final List<Long> ids = new ArrayList<>();
+
+    private final List<Long> replyIds = new ArrayList<>();
+
+    /**
+     * Creates a new archive.
+     *
+     * @param seed The seed of all random decisions
+     * @param numberOfTweets The number of tweets in the archive
+     */
+    public SyntheticTweetArchive(final long seed, final int numberOfTweets) {
+        this.random = new Random(seed);
+        this.user = createUser(4711L);
+
+        long createdAt = START.toEpochMilli();
+        for (int i = 0; i < numberOfTweets; ++i) {
+            createdAt += 1 + (long) (this.random.nextDouble() * 2 * MEAN_INTERVAL);
+            final ObjectNode tweet = createTweet(createdAt, i);
+            final YearMonth month = YearMonth.from(Instant.ofEpochMilli(createdAt).atZone(ZoneOffset.UTC));
+            this.tweetsByMonth.computeIfAbsent(month, m -> new ArrayList<>()).add(tweet);
+        }
+    }
+
+    /**
+     * @return The months containing tweets, oldest first
+     */
+    public List<YearMonth> getMonths() {
+        return new ArrayList<>(this.tweetsByMonth.keySet());
+    }
+
+    /**
+     * @return The ids of all tweets, oldest first
+     */
+    public List<Long> getIds() {
+        return Collections.unmodifiableList(this.ids);
+    }
+
+    /**
+     * @return The ids of all tweets replying to another tweet of this archive,
+     * oldest first
+     */
+    public List<Long> getReplyIds() {
+        return Collections.unmodifiableList(this.replyIds);
+    }
+
+    /**
+     * @param month A month of {@link #getMonths()}
+     * @return The number of tweets in that month
+     */
+    public int getNumberOfTweets(final YearMonth month) {
+        return this.tweetsByMonth.getOrDefault(month, Collections.emptyList()).size();
+    }
+
+    /**
+     * Creates the content of a {@code data/js/tweets/YYYY_MM.js} entry.
+     *
+     * @param month The month of the entry
+     * @return The JavaScript, encoded as UTF-8
+     */
+    public byte[] createEntry(final YearMonth month) {
+        final ArrayNode tweets = this.nodeFactory.arrayNode();
+        // Newest first, as in the archive
+        final List<ObjectNode> tweetsOfMonth = new ArrayList<>(this.tweetsByMonth.getOrDefault(month, Collections.emptyList()));
+        Collections.reverse(tweetsOfMonth);
+        tweets.addAll(tweetsOfMonth);
+        try {
+            final String variable = String.format("Grailbird.data.tweets_%d_%02d", month.getYear(), month.getMonthValue());
+            return (variable + " = \n " + this.objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(tweets)).getBytes(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write tweets", e);
+        }
+    }
+
+    /**
+     * Writes the archive as zip file, containing one entry per month.
+     *
+     * @param out The target, which is not closed
+     * @throws IOException If the archive cannot be written
+     */
+    public void writeArchive(final OutputStream out) throws IOException {
+        final ZipOutputStream zip = new ZipOutputStream(out);
+        for (YearMonth month : this.tweetsByMonth.keySet()) {
+            zip.putNextEntry(new ZipEntry(String.format("data/js/tweets/%d_%02d.js", month.getYear(), month.getMonthValue())));
+            zip.write(createEntry(month));
+            zip.closeEntry();
+        }
+        zip.finish();
+    }
+
+    /**
+     * Reads all tweets of the archive through the {@link TwitterArchiveReader}
+     * as done during an import.
+     *
+     * @param handler Receives each status together with its raw json
+     */
+    public void readStatuses(final BiConsumer<Status, String> handler) {
+        final TwitterArchiveReader reader = new TwitterArchiveReader();
+        for (YearMonth month : this.tweetsByMonth.keySet()) {
+            try {
+                reader.read(new ByteArrayInputStream(createEntry(month)), handler);
+            } catch (IOException | JSONException e) {
+                throw new IllegalStateException("Could not read tweets of " + month, e);
+            }
+        }
+    }
+
+    private ObjectNode createUser(final long id) {
+        final ObjectNode rv = this.nodeFactory.objectNode();
+        rv.put("name", "User " + id);
+        rv.put("screen_name", "user" + id);
+        rv.put("protected", false);
+        rv.put("id_str", Long.toString(id));
+        rv.put("id", id);
+        rv.put("verified", false);
+        return rv;
+    }
+
+    private ObjectNode createTweet(final long createdAt, final int sequence) {
+        final long id = ((createdAt - TWITTER_EPOCH) << 22) | (sequence & 0xFFF);
+        final String lang = LANGUAGES[this.random.nextInt(LANGUAGES.length)];
+
+        final ObjectNode rv;
+        if (this.random.nextInt(10) == 0) {
+            // Retweets of other users, posted a while before
+            final long otherUserId = OTHER_USERS[this.random.nextInt(OTHER_USERS.length)];
+            final ObjectNode retweetedStatus = createStatus(id - ((this.random.nextInt(1000) + 1L) << 22), createdAt - 1000, lang, createUser(otherUserId));
+            rv = createStatus(id, createdAt, lang, this.user);
+            rv.put("text", "RT @user" + otherUserId + ": " + retweetedStatus.get("text").asText());
+            rv.set("entities", retweetedStatus.get("entities").deepCopy());
+            rv.set("retweeted_status", retweetedStatus);
+        } else {
+            rv = createStatus(id, createdAt, lang, this.user);
+        }
+
+        final int replyTo = this.random.nextInt(10);
+        if (replyTo < 3 && !this.ids.isEmpty()) {
+            // Replies to one of the last tweets, which leads to longer chains
+            final long inReplyToStatusId = this.ids.get(Math.max(0, this.ids.size() - 1 - this.random.nextInt(20)));
+            setInReplyTo(rv, inReplyToStatusId, this.user.get("id").asLong());
+            this.replyIds.add(id);
+        } else if (replyTo < 5) {
+            // Replies to tweets of other users
+            final long otherUserId = OTHER_USERS[this.random.nextInt(OTHER_USERS.length)];
+            setInReplyTo(rv, id - ((this.random.nextInt(1000) + 1L) << 22), otherUserId);
+        }
+
+        if (this.random.nextInt(10) == 0) {
+            final String[] place = PLACES[this.random.nextInt(PLACES.length)];
+            final ObjectNode coordinates = rv.putObject("coordinates");
+            coordinates.put("type", "Point");
+            coordinates.putArray("coordinates").add(6.0 + this.random.nextDouble()).add(50.5 + this.random.nextDouble());
+            final ObjectNode placeNode = rv.putObject("place");
+            placeNode.put("id", Long.toHexString(place[2].hashCode()));
+            placeNode.put("name", place[2]);
+            placeNode.put("full_name", place[2] + ", " + place[0]);
+            placeNode.put("country_code", place[0]);
+            placeNode.put("country", place[1]);
+            placeNode.put("place_type", "city");
+        } else {
+            rv.putObject("geo");
+        }
+
+        this.ids.add(id);
+        return rv;
+    }
+
+    private ObjectNode createStatus(final long id, final long createdAt, final String lang, final ObjectNode author) {
+        final String[] words = WORDS.get(lang);
+        final StringBuilder text = new StringBuilder();
+        final int numberOfWords = 5 + this.random.nextInt(15);
+        for (int i = 0; i < numberOfWords; ++i) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(words[this.random.nextInt(words.length)]);
+        }
+        if (this.random.nextInt(4) == 0) {
+            text.append(' ').append(HASHTAGS[this.random.nextInt(HASHTAGS.length)]);
+        }
+
+        final ObjectNode entities = this.nodeFactory.objectNode();
+        entities.putArray("user_mentions");
+        entities.putArray("media");
+        entities.putArray("hashtags");
+        final ArrayNode urls = entities.putArray("urls");
+        final int numberOfUrls = this.random.nextInt(3) == 0 ? 1 + this.random.nextInt(2) : 0;
+        for (int i = 0; i < numberOfUrls; ++i) {
+            final String url = String.format("https://t.co/%010x", this.random.nextLong() & 0xFFFFFFFFFFL);
+            final String expandedUrl = String.format("https://example.com/%s/%d", words[this.random.nextInt(words.length)], this.random.nextInt(10000));
+            text.append(' ');
+            final ObjectNode urlEntity = urls.addObject();
+            urlEntity.put("url", url);
+            urlEntity.put("expanded_url", expandedUrl);
+            urlEntity.put("display_url", expandedUrl.substring("https://".length()));
+            urlEntity.putArray("indices").add(text.length()).add(text.length() + url.length());
+            text.append(url);
+        }
+
+        final ObjectNode rv = this.nodeFactory.objectNode();
+        rv.put("source", CLIENTS[this.random.nextInt(CLIENTS.length)]);
+        rv.set("entities", entities);
+        rv.put("id_str", Long.toString(id));
+        rv.put("text", text.toString());
+        rv.put("id", id);
+        rv.put("created_at", ZonedDateTime.ofInstant(Instant.ofEpochMilli(createdAt), ZoneOffset.UTC).format(CREATED_AT_FORMAT));
+        rv.put("lang", lang);
+        rv.set("user", author);
+        return rv;
+    }
+
+    private static void setInReplyTo(final ObjectNode tweet, final long inReplyToStatusId, final long inReplyToUserId) {
+        tweet.put("in_reply_to_status_id_str", Long.toString(inReplyToStatusId));
+        tweet.put("in_reply_to_status_id", inReplyToStatusId);
+        tweet.put("in_reply_to_user_id_str", Long.toString(inReplyToUserId));
+        tweet.put("in_reply_to_user_id", inReplyToUserId);
+        tweet.put("in_reply_to_screen_name", "user" + inReplyToUserId);
+    }
+
+    public static void main(final String... args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: SyntheticTweetArchive <file> [numberOfTweets] [seed]");
+            System.exit(1);
+        }
+        final int numberOfTweets = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        final long seed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+        try (final OutputStream out = new FileOutputStream(new File(args[0]))) {
+            new SyntheticTweetArchive(seed, numberOfTweets).writeArchive(out);
+        }
+    }
+}
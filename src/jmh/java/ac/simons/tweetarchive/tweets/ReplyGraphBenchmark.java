@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import ac.simons.tweetarchive.SyntheticTweetArchive;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Builds the in memory {@link ReplyGraph} from the tweets of a synthetic
+ * archive and retrieves the conversations of its replies, which is how
+ * conversations are resolved with {@code tweetarchive.reply-graph.enabled}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplyGraphBenchmark {
+
+    @Param({"10000"})
+    public int numberOfTweets;
+
+    private final List<long[]> replies = new ArrayList<>();
+
+    private long[] replyIds;
+
+    private ReplyGraph replyGraph;
+
+    private int next;
+
+    @Setup
+    public void createReplyGraph() {
+        final SyntheticTweetArchive archive = new SyntheticTweetArchive(SyntheticTweetArchive.DEFAULT_SEED, this.numberOfTweets);
+        archive.readStatuses((status, rawJSON) -> this.replies.add(new long[]{status.getId(), status.getInReplyToStatusId()}));
+        this.replyIds = archive.getReplyIds().stream().mapToLong(Long::longValue).toArray();
+        this.replyGraph = buildReplyGraph();
+    }
+
+    @Benchmark
+    public ReplyGraph buildReplyGraph() {
+        final ReplyGraph rv = new ReplyGraph();
+        for (long[] reply : this.replies) {
+            rv.add(reply[0], reply[1]);
+        }
+        return rv;
+    }
+
+    @Benchmark
+    public long[] getConversation() {
+        this.next = (this.next + 1) % this.replyIds.length;
+        return this.replyGraph.getConversation(this.replyIds[this.next], Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import twitter4j.JSONArray;
+import twitter4j.JSONException;
+import twitter4j.JSONObject;
+import twitter4j.Status;
+import twitter4j.TwitterException;
+import twitter4j.TwitterObjectFactory;
+
+/**
+ * Compares the {@link TweetEntityMapper} with the {@link LegacyTweetEntityMapping
+ * former mapping}. Run with {@code -prof gc} (the default of the
+ * {@code benchmarks} profile) to compare the allocated bytes per operation.
+ * One operation maps a mix of retweets and tweets with and without urls from
+ * a handful of clients.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TweetEntityMapperBenchmark {
+
+    private static final String[] CLIENTS = {"Twitter Web Client", "Twitter for iPhone", "Twitter for Mac", "Tweetbot for iOS"};
+
+    private final LegacyTweetEntityMapping legacyMapping = new LegacyTweetEntityMapping();
+
+    private final TweetEntityMapper tweetEntityMapper = new TweetEntityMapper();
+
+    private final List<Status> statuses = new ArrayList<>();
+
+    @Setup
+    public void createStatuses() throws IOException, JSONException, TwitterException {
+        final String template;
+        try (final InputStream in = this.getClass().getResourceAsStream("/tweets/simple-tweet.json")) {
+            template = new Scanner(in, "UTF-8").useDelimiter("\\Z").next();
+        }
+        for (int i = 0; i < 64; ++i) {
+            final JSONObject json = new JSONObject(template);
+            json.put("id", i);
+            json.put("source", String.format("<a href=\"https://example.com/%d\" rel=\"nofollow\">%s</a>", i % CLIENTS.length, CLIENTS[i % CLIENTS.length]));
+            if (i % 3 != 0) {
+                final JSONObject retweetedStatus = (JSONObject) json.remove("retweeted_status");
+                json.put("text", retweetedStatus.getString("text"));
+                json.put("entities", retweetedStatus.getJSONObject("entities"));
+            }
+            if (i % 3 == 2) {
+                json.getJSONObject("entities").put("urls", new JSONArray());
+            }
+            this.statuses.add(TwitterObjectFactory.createStatus(json.toString()));
+        }
+    }
+
+    @Benchmark
+    public void legacyContent(final Blackhole blackhole) {
+        for (Status status : this.statuses) {
+            blackhole.consume(this.legacyMapping.extractContent(status));
+        }
+    }
+
+    @Benchmark
+    public void mapperContent(final Blackhole blackhole) {
+        for (Status status : this.statuses) {
+            blackhole.consume(this.tweetEntityMapper.renderContent(status));
+        }
+    }
+
+    @Benchmark
+    public void legacySource(final Blackhole blackhole) {
+        for (Status status : this.statuses) {
+            blackhole.consume(this.legacyMapping.extractSource(status));
+        }
+    }
+
+    @Benchmark
+    public void mapperSource(final Blackhole blackhole) {
+        for (Status status : this.statuses) {
+            blackhole.consume(this.tweetEntityMapper.parseSource(status.getSource()));
+        }
+    }
+
+    @Benchmark
+    public void legacyEntity(final Blackhole blackhole) {
+        for (Status status : this.statuses) {
+            blackhole.consume(this.legacyMapping.createEntity(status, null));
+        }
+    }
+
+    @Benchmark
+    public void mapperEntity(final Blackhole blackhole) {
+        for (Status status : this.statuses) {
+            blackhole.consume(this.tweetEntityMapper.toEntity(status, null));
+        }
+    }
+}
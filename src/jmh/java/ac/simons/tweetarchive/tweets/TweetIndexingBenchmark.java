@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import ac.simons.tweetarchive.SyntheticTweetArchive;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.hibernate.search.annotations.Store;
+import org.hibernate.search.bridge.LuceneOptions;
+import org.hibernate.search.engine.impl.LuceneOptionsImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Runs the {@link TweetLanguageDiscriminator} and the class bridges, which
+ * Hibernate Search calls for every tweet it indexes, over the tweets of a
+ * synthetic archive. One operation processes all tweets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TweetIndexingBenchmark {
+
+    @Param({"10000"})
+    public int numberOfTweets;
+
+    private final TweetLanguageDiscriminator languageDiscriminator = new TweetLanguageDiscriminator();
+
+    private final TweetYearBridge yearBridge = new TweetYearBridge();
+
+    private final TweetFacetsBridge facetsBridge = new TweetFacetsBridge();
+
+    /**
+     * The options of the {@code year} class bridge, the facets ignore them.
+     */
+    private final LuceneOptions bridgeOptions = new LuceneOptionsImpl(Field.Index.NOT_ANALYZED_NO_NORMS, Field.TermVector.NO, Store.NO, null, 1.0f, 1.0f);
+
+    private final List<TweetEntity> tweets = new ArrayList<>();
+
+    @Setup
+    public void createTweets() {
+        final TweetEntityMapper tweetEntityMapper = new TweetEntityMapper();
+        new SyntheticTweetArchive(SyntheticTweetArchive.DEFAULT_SEED, this.numberOfTweets)
+                .readStatuses((status, rawJSON) -> this.tweets.add(tweetEntityMapper.toEntity(status, rawJSON)));
+    }
+
+    @Benchmark
+    public void discriminateLanguage(final Blackhole blackhole) {
+        for (TweetEntity tweet : this.tweets) {
+            blackhole.consume(this.languageDiscriminator.getAnalyzerDefinitionName(tweet.getContent(), tweet, "content"));
+        }
+    }
+
+    @Benchmark
+    public void bridgeYear(final Blackhole blackhole) {
+        for (TweetEntity tweet : this.tweets) {
+            final Document document = new Document();
+            this.yearBridge.set("year", tweet, document, this.bridgeOptions);
+            blackhole.consume(document);
+        }
+    }
+
+    @Benchmark
+    public void bridgeFacets(final Blackhole blackhole) {
+        for (TweetEntity tweet : this.tweets) {
+            final Document document = new Document();
+            this.facetsBridge.set("facets", tweet, document, this.bridgeOptions);
+            blackhole.consume(document);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import ac.simons.tweetarchive.Application;
+import ac.simons.tweetarchive.SyntheticTweetArchive;
+import static ac.simons.tweetarchive.db.Tables.TWEETS;
+import ac.simons.tweetarchive.tweets.Paging.Order;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jooq.DSLContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Searches and retrieves conversations through the {@link TweetRepository}
+ * of a complete application context.
+ * <br>
+ * The tweets of a synthetic archive are stored in the database given by the
+ * system properties {@code benchmarks.db.url}, {@code benchmarks.db.username}
+ * and {@code benchmarks.db.password}, which must not contain other tweets. It
+ * defaults to a database named {@code tweetArchiveBenchmarks} next to the
+ * database used for development, which must have been created before. The
+ * tweets are kept between runs. The index is held in memory and rebuilt on
+ * every run, the cache of search results is disabled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TweetRepositoryBenchmark {
+
+    private static final String[] KEYWORDS = {"java", "spring boot", "kaffee zug", "conférence"};
+
+    private static final String[] QUERIES = {"java AND boot", "source:\"Twitter for Mac\" AND spring", "country_code:DE", "kaffee OR coffee OR café"};
+
+    private static final Paging FIRST_PAGE = new Paging(0, 20, Order.RELEVANCE, null);
+
+    @Param({"10000"})
+    public int numberOfTweets;
+
+    private ConfigurableApplicationContext applicationContext;
+
+    private TweetRepository tweetRepository;
+
+    private long[] replyIds;
+
+    private int next;
+
+    @Setup
+    public void startApplication() {
+        // The devtools would restart the benchmark in a new class loader
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        this.applicationContext = new SpringApplicationBuilder(Application.class).web(false).run(
+                "--spring.datasource.url=" + System.getProperty("benchmarks.db.url", "jdbc:postgresql://localhost:5432/tweetArchiveBenchmarks"),
+                "--spring.datasource.username=" + System.getProperty("benchmarks.db.username", "tweetArchive"),
+                "--spring.datasource.password=" + System.getProperty("benchmarks.db.password", "tweetArchive"),
+                "--spring.jpa.properties.hibernate.search.default.directory_provider=ram",
+                "--spring.jpa.properties.hibernate.search.default.indexBase=target/benchmarks/index",
+                "--spring.jpa.properties.hibernate.search.default.locking_strategy=single",
+                "--spring.jpa.properties.hibernate.search.default.worker.execution=sync",
+                "--tweetarchive.index.reconcile-on-startup=false",
+                "--tweetarchive.index.warm-up-on-startup=false",
+                "--tweetarchive.search.cache-maximum-weight=0",
+                "--tweetarchive.stream.journal-directory=target/benchmarks/journal",
+                "--tweetarchive.import.spool-directory=target/benchmarks/imports"
+        );
+        this.tweetRepository = this.applicationContext.getBean(TweetRepository.class);
+
+        final SyntheticTweetArchive archive = new SyntheticTweetArchive(SyntheticTweetArchive.DEFAULT_SEED, this.numberOfTweets);
+        final TweetStorageService tweetStorageService = this.applicationContext.getBean(TweetStorageService.class);
+        final List<TweetEntity> tweets = new ArrayList<>();
+        archive.readStatuses((status, rawJSON) -> tweets.add(tweetStorageService.createEntity(status, rawJSON)));
+        for (int from = 0; from < tweets.size(); from += 500) {
+            tweetStorageService.storeTweets(tweets.subList(from, Math.min(from + 500, tweets.size())));
+        }
+        final int storedTweets = this.applicationContext.getBean(DSLContext.class).fetchCount(TWEETS);
+        if (storedTweets != this.numberOfTweets) {
+            throw new IllegalStateException(String.format("Expected %d tweets in the benchmark database but found %d, use an empty database", this.numberOfTweets, storedTweets));
+        }
+        this.applicationContext.getBean(TweetIndexService.class).reconcile();
+        this.replyIds = archive.getReplyIds().stream().mapToLong(Long::longValue).toArray();
+    }
+
+    @TearDown
+    public void stopApplication() {
+        this.applicationContext.close();
+    }
+
+    @Benchmark
+    public TweetSearchResult<TweetEntity> searchByKeyword() {
+        return this.tweetRepository.searchByKeyword(KEYWORDS[nextIndex(KEYWORDS.length)], null, null, FIRST_PAGE);
+    }
+
+    @Benchmark
+    public TweetSearchResult<TweetEntity> searchByQuery() {
+        return this.tweetRepository.searchByQuery(QUERIES[nextIndex(QUERIES.length)], FIRST_PAGE);
+    }
+
+    @Benchmark
+    public List<TweetEntity> getConversation() {
+        return this.tweetRepository.getConversation(this.replyIds[nextIndex(this.replyIds.length)], null);
+    }
+
+    private int nextIndex(final int length) {
+        this.next = (this.next + 1) % length;
+        return this.next;
+    }
+}
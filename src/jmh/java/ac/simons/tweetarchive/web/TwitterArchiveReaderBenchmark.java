@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.web;
+
+import ac.simons.tweetarchive.SyntheticTweetArchive;
+import ac.simons.tweetarchive.tweets.TweetEntityMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.YearMonth;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import twitter4j.JSONException;
+
+/**
+ * Parses one entry of a synthetic archive as done by the
+ * {@link ArchiveImporter} for each month of an uploaded archive, with and
+ * without mapping the statuses to entities.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TwitterArchiveReaderBenchmark {
+
+    @Param({"10000"})
+    public int numberOfTweets;
+
+    private final TwitterArchiveReader archiveReader = new TwitterArchiveReader();
+
+    private final TweetEntityMapper tweetEntityMapper = new TweetEntityMapper();
+
+    private byte[] entry;
+
+    @Setup
+    public void createEntry() {
+        final SyntheticTweetArchive archive = new SyntheticTweetArchive(SyntheticTweetArchive.DEFAULT_SEED, this.numberOfTweets);
+        final YearMonth largestMonth = archive.getMonths().stream()
+                .max(Comparator.comparingInt(archive::getNumberOfTweets))
+                .orElseThrow(() -> new IllegalStateException("The archive is empty"));
+        this.entry = archive.createEntry(largestMonth);
+    }
+
+    @Benchmark
+    public int read(final Blackhole blackhole) throws IOException, JSONException {
+        return this.archiveReader.read(new ByteArrayInputStream(this.entry), (status, rawJSON) -> blackhole.consume(status));
+    }
+
+    @Benchmark
+    public int readAndMap(final Blackhole blackhole) throws IOException, JSONException {
+        return this.archiveReader.read(new ByteArrayInputStream(this.entry), (status, rawJSON) -> blackhole.consume(this.tweetEntityMapper.toEntity(status, rawJSON)));
+    }
+}
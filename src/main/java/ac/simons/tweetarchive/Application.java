@@ -15,6 +15,9 @@
  */
 package ac.simons.tweetarchive;
 
+import ac.simons.tweetarchive.config.TweetArchiveProperties;
+import ac.simons.tweetarchive.tweets.RawDataCompressionService;
+import ac.simons.tweetarchive.tweets.TweetIndexService;
 import ac.simons.tweetarchive.tweets.UserStreamAdapterImpl;
 import java.io.BufferedReader;
 import java.io.FileOutputStream;
@@ -29,6 +32,10 @@ import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
 import twitter4j.Twitter;
 import twitter4j.TwitterException;
 import twitter4j.TwitterFactory;
@@ -46,20 +53,29 @@ public class Application implements ApplicationRunner {
     @Autowired(required = false)
     private TwitterStream twitterStream;
 
-    @Autowired
+    @Autowired(required = false)
     private UserStreamAdapterImpl statusAdapter;
 
+    @Autowired
+    private ApplicationContext applicationContext;
+
     public static void main(final String... args) throws Exception {
         final OptionParser optionParser = new OptionParser();
         optionParser.allowsUnrecognizedOptions();
         optionParser.acceptsAll(Arrays.asList("g", "generate-tokens"))
                 .withRequiredArg()
                 .withValuesSeparatedBy(",");
+        optionParser.acceptsAll(Arrays.asList("r", "reindex"));
+        optionParser.accepts("compress-raw-data");
 
         final OptionSet optionSet = optionParser.parse(args);
         if (optionSet.hasArgument("g")) {
             final List<String> values = (List<String>) optionSet.valuesOf("g");
             createTwitterOauthTokens(values.get(0), values.get(1));
+        } else if (optionSet.has("r")) {
+            rebuildIndex(args);
+        } else if (optionSet.has("compress-raw-data")) {
+            compressRawData(args);
         } else {
             SpringApplication.run(Application.class, args);
         }
@@ -68,7 +84,8 @@ public class Application implements ApplicationRunner {
     @Override
     public void run(final ApplicationArguments args) throws Exception {
 
-        if (twitterStream == null) {
+        // Only track the stream when running as a web application and not as a command line tool
+        if (twitterStream == null || statusAdapter == null || !(applicationContext instanceof EmbeddedWebApplicationContext)) {
             return;
         }
 
@@ -76,6 +93,48 @@ public class Application implements ApplicationRunner {
         twitterStream.user();
     }
 
+    /**
+     * Rebuilds the full text index without starting the web application and
+     * without resuming imports.
+     *
+     * @param args Arguments passed to Spring Boot
+     * @throws InterruptedException
+     */
+    static void rebuildIndex(final String... args) throws InterruptedException {
+        try (final ConfigurableApplicationContext context = runAsTool(args)) {
+            context.getBean(TweetIndexService.class).rebuild();
+        }
+    }
+
+    /**
+     * Compresses the raw data of all tweets still stored as {@code jsonb}
+     * without starting the web application.
+     *
+     * @param args Arguments passed to Spring Boot
+     */
+    static void compressRawData(final String... args) {
+        try (final ConfigurableApplicationContext context = runAsTool(args)) {
+            final RawDataCompressionService.Result result = context.getBean(RawDataCompressionService.class).compressAll();
+            System.out.println(String.format("Compressed raw data of %d tweets, %d failed verification, %d bytes -> %d bytes",
+                    result.getConverted(), result.getFailed(), result.getUncompressedBytes(), result.getCompressedBytes()));
+        }
+    }
+
+    static ConfigurableApplicationContext runAsTool(final String... args) {
+        return new SpringApplicationBuilder(Application.class)
+                .web(false)
+                .properties(
+                        TweetArchiveProperties.TWEETARCHIVE_PREFIX + ".index.reconcile-on-startup=false",
+                        TweetArchiveProperties.TWEETARCHIVE_PREFIX + ".index.warm-up-on-startup=false",
+                        TweetArchiveProperties.TWEETARCHIVE_PREFIX + ".import.resume-on-startup=false",
+                        TweetArchiveProperties.TWEETARCHIVE_PREFIX + ".reply-graph.enabled=false",
+                        // The journal and the tombstones belong to the running application
+                        TweetArchiveProperties.TWEETARCHIVE_PREFIX + ".stream.enabled=false",
+                        TweetArchiveProperties.TWEETARCHIVE_PREFIX + ".deletions.apply-in-background=false"
+                )
+                .run(args);
+    }
+
     static void createTwitterOauthTokens(final String consumerKey, final String consumerSecret) throws Exception {
         final Twitter twitter = TwitterFactory.getSingleton();
         twitter.setOAuthConsumer(consumerKey, consumerSecret);
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+@EnableConfigurationProperties(TweetArchiveProperties.class)
+public class TweetArchiveConfig {
+
+    /**
+     * Runs the import jobs, one at a time. Running jobs are interrupted on
+     * shutdown and resumed on the next start.
+     *
+     * @return The executor for import jobs
+     */
+    @Bean
+    public ThreadPoolTaskExecutor importJobExecutor() {
+        final ThreadPoolTaskExecutor rv = new ThreadPoolTaskExecutor();
+        rv.setCorePoolSize(1);
+        rv.setMaxPoolSize(1);
+        rv.setThreadNamePrefix("import-job-");
+        rv.setWaitForTasksToCompleteOnShutdown(false);
+        return rv;
+    }
+
+    /**
+     * Searches the yearly shards of the index in parallel.
+     *
+     * @param properties Used for the number of threads
+     * @return The executor for searching shards
+     */
+    @Bean
+    public ThreadPoolTaskExecutor shardSearchExecutor(final TweetArchiveProperties properties) {
+        final ThreadPoolTaskExecutor rv = new ThreadPoolTaskExecutor();
+        rv.setCorePoolSize(properties.getSearch().getParallelism());
+        rv.setMaxPoolSize(properties.getSearch().getParallelism());
+        rv.setThreadNamePrefix("shard-search-");
+        return rv;
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.config;
+
+import java.io.File;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration of the tweet archive itself.
+ */
+@ConfigurationProperties(prefix = TweetArchiveProperties.TWEETARCHIVE_PREFIX)
+@Getter
+@Setter
+public final class TweetArchiveProperties {
+
+    public static final String TWEETARCHIVE_PREFIX = "tweetarchive";
+
+    /**
+     * Import of archives ({@code import} is a reserved word).
+     */
+    @Getter(AccessLevel.NONE)
+    private final Import archiveImport = new Import();
+
+    /**
+     * Maintenance of the full text index.
+     */
+    private final Index index = new Index();
+
+    /**
+     * Searching the archive.
+     */
+    private final Search search = new Search();
+
+    /**
+     * The in-memory graph of replies.
+     */
+    private final ReplyGraph replyGraph = new ReplyGraph();
+
+    /**
+     * Storage of the raw json data of tweets.
+     */
+    private final RawData rawData = new RawData();
+
+    /**
+     * Ingestion of the user stream.
+     */
+    private final Stream stream = new Stream();
+
+    /**
+     * Applying deletions of tweets.
+     */
+    private final Deletions deletions = new Deletions();
+
+    public Import getImport() {
+        return this.archiveImport;
+    }
+
+    /**
+     * The ways archives can be stored.
+     */
+    public enum ImportMode {
+        /**
+         * Tweets are stored through JPA and indexed on the fly.
+         */
+        JPA,
+        /**
+         * Tweets are copied into the database with {@code COPY} and indexed
+         * batch by batch after each copy has been committed.
+         */
+        COPY
+    }
+
+    /**
+     * What happens to statuses from the user stream while storage cannot keep
+     * up. Statuses that don't make it through the queue are stored from the
+     * journal once the queue is empty again.
+     */
+    public enum StreamBackpressure {
+        /**
+         * The stream is blocked until there is room in the queue, the
+         * connection may be dropped by Twitter if this takes too long.
+         */
+        BLOCK,
+        /**
+         * New statuses are only written to the journal.
+         */
+        SPILL,
+        /**
+         * The oldest queued statuses are removed from the queue to make room
+         * for new ones.
+         */
+        DROP_OLDEST
+    }
+
+    /**
+     * The ways the raw json data of tweets can be stored.
+     */
+    public enum RawDataCompression {
+        /**
+         * Stored as {@code jsonb}.
+         */
+        NONE,
+        /**
+         * Compressed with zstd and the newest trained dictionary, the original
+         * json is kept byte by byte.
+         */
+        ZSTD
+    }
+
+    @Getter
+    @Setter
+    public static class Import {
+
+        /**
+         * How archives are stored.
+         */
+        private ImportMode mode = ImportMode.JPA;
+
+        /**
+         * Number of tweets that are stored and committed together when
+         * importing an archive.
+         */
+        private int batchSize = 500;
+
+        /**
+         * Number of archive entries (months) that are parsed in parallel.
+         */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Maximum number of archive entries waiting to be parsed and of parsed
+         * entries waiting to be stored.
+         */
+        private int queueCapacity = 16;
+
+        /**
+         * Directory where uploaded archives are kept until their import job
+         * is finished.
+         */
+        private File spoolDirectory = new File("var/imports");
+
+        /**
+         * Resumes unfinished import jobs on startup.
+         */
+        private boolean resumeOnStartup = true;
+    }
+
+    @Getter
+    @Setter
+    public static class Index {
+
+        /**
+         * Replays tweets missing from the index (and removes deleted ones) on
+         * startup, i.e. after a crash lost queued index work.
+         */
+        private boolean reconcileOnStartup = true;
+
+        /**
+         * Reads the index once after startup, the application is reported as
+         * out of service until then.
+         */
+        private boolean warmUpOnStartup = true;
+
+        /**
+         * Number of threads loading tweets when rebuilding the index.
+         */
+        private int reindexThreads = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Number of tweets loaded together by one thread when rebuilding the
+         * index.
+         */
+        private int reindexBatchSize = 100;
+
+        /**
+         * JDBC fetch size used for loading the ids of all tweets when
+         * rebuilding or reconciling the index.
+         */
+        private int reindexFetchSize = 1000;
+
+        /**
+         * Maximum age in milliseconds of the number of tweets reported by the
+         * index status and metrics.
+         */
+        private long statusMaxAge = 10000;
+    }
+
+    @Getter
+    @Setter
+    public static class Search {
+
+        /**
+         * Approximate maximum number of bytes used by cached search results,
+         * {@literal 0} disables the cache.
+         */
+        private long cacheMaximumWeight = 32L * 1024 * 1024;
+
+        /**
+         * Maximum number of compiled keyword and parsed queries kept each.
+         */
+        private long queryCacheSize = 1000;
+
+        /**
+         * Number of index shards (one per year) searched in parallel.
+         */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    @Getter
+    @Setter
+    public static class ReplyGraph {
+
+        /**
+         * Keeps a graph of all replies in memory to retrieve conversations
+         * without recursive queries and to compute statistics about them.
+         */
+        private boolean enabled = false;
+
+        /**
+         * JDBC fetch size used for loading the graph on startup.
+         */
+        private int loadFetchSize = 10000;
+    }
+
+    @Getter
+    @Setter
+    public static class RawData {
+
+        /**
+         * How the raw data of new tweets is stored.
+         */
+        private RawDataCompression compression = RawDataCompression.NONE;
+
+        /**
+         * The zstd compression level.
+         */
+        private int compressionLevel = 3;
+
+        /**
+         * Maximum size of a trained dictionary in bytes.
+         */
+        private int dictionarySize = 64 * 1024;
+
+        /**
+         * Number of tweets used for training a dictionary.
+         */
+        private int trainingSamples = 10000;
+
+        /**
+         * Number of tweets converted together by
+         * {@code --compress-raw-data}.
+         */
+        private int conversionBatchSize = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class Stream {
+
+        /**
+         * Receives the user stream and stores it through the journal. Command
+         * line tools run without, so that they never open the journal of a
+         * running application.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Maximum number of received statuses waiting to be stored.
+         */
+        private int queueCapacity = 10000;
+
+        /**
+         * Maximum number of statuses stored and committed together.
+         */
+        private int batchSize = 100;
+
+        /**
+         * What happens when the queue is full or storing fails.
+         */
+        private StreamBackpressure backpressure = StreamBackpressure.SPILL;
+
+        /**
+         * Directory of the journal, all statuses are written to the journal
+         * before they are queued.
+         */
+        private File journalDirectory = new File("var/journal");
+
+        /**
+         * Size in bytes after which a new journal segment is started, old
+         * segments are deleted once all their statuses have been stored.
+         */
+        private long journalSegmentSize = 64L * 1024 * 1024;
+
+        /**
+         * Maximum delay in milliseconds between attempts to store a failed
+         * batch.
+         */
+        private long maxRetryDelay = 30000;
+    }
+
+    @Getter
+    @Setter
+    public static class Deletions {
+
+        /**
+         * Applies recorded deletions in the background, disabled for command
+         * line tools.
+         */
+        private boolean applyInBackground = true;
+
+        /**
+         * Interval in milliseconds in which recorded deletions are applied,
+         * deletions within one interval are applied together.
+         */
+        private long applyInterval = 1000;
+
+        /**
+         * Maximum number of tweets deleted in one transaction.
+         */
+        private int batchSize = 500;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * A rectangular area given by decimal degrees. Boxes whose western boundary
+ * lies east of their eastern boundary cross the antimeridian.
+ */
+@RequiredArgsConstructor
+@Getter
+public final class BoundingBox {
+
+    private final double south;
+
+    private final double west;
+
+    private final double north;
+
+    private final double east;
+
+    /**
+     * @return True if latitudes and longitudes are in range and the southern
+     * boundary is not north of the northern one
+     */
+    public boolean isValid() {
+        return -90.0 <= this.south && this.south <= this.north && this.north <= 90.0
+                && -180.0 <= this.west && this.west <= 180.0
+                && -180.0 <= this.east && this.east <= 180.0;
+    }
+
+    /**
+     * @return True if this box crosses the antimeridian
+     */
+    public boolean crossesAntimeridian() {
+        return this.west > this.east;
+    }
+
+    /**
+     * @return The width of this box in degrees of longitude
+     */
+    double getWidth() {
+        return crossesAntimeridian() ? this.east + 360.0 - this.west : this.east - this.west;
+    }
+
+    /**
+     * @param longitude A longitude inside this box
+     * @return The distance from the western boundary in degrees
+     */
+    double offsetOf(final double longitude) {
+        return longitude < this.west ? longitude + 360.0 - this.west : longitude - this.west;
+    }
+
+    /**
+     * @param offset Distance from the western boundary in degrees
+     * @return The longitude, normalized to -180 to 180 degrees
+     */
+    double longitudeAt(final double offset) {
+        final double rv = this.west + offset;
+        return rv > 180.0 ? rv - 360.0 : rv;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Statistics about conversations, computed from the in-memory
+ * {@link ReplyGraph}.
+ */
+@RestController
+@RequestMapping("/conversations")
+@ConditionalOnProperty(prefix = "tweetarchive.reply-graph", name = "enabled")
+@RequiredArgsConstructor
+public final class ConversationsApiController {
+
+    private static final int MAX_LIMIT = 1000;
+
+    private final ReplyGraphService replyGraphService;
+
+    @GetMapping("/longest")
+    public List<ReplyGraph.Conversation> getLongestConversations(@RequestParam(defaultValue = "10") final int limit) {
+        return this.replyGraphService.getLongestConversations(Math.min(limit, MAX_LIMIT));
+    }
+
+    @GetMapping("/mostReplied")
+    public List<ReplyGraph.RepliedTweet> getMostRepliedTweets(@RequestParam(defaultValue = "10") final int limit) {
+        return this.replyGraphService.getMostRepliedTweets(Math.min(limit, MAX_LIMIT));
+    }
+}
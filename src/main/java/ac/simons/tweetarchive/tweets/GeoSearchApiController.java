@@ -0,0 +1,144 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import static ac.simons.tweetarchive.tweets.SearchApiController.paging;
+import static ac.simons.tweetarchive.tweets.SearchApiController.toResponse;
+import java.time.LocalDate;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Searches tweets by their location, optionally restricted by keywords and
+ * dates. Paging and headers are the same as for the {@link SearchApiController}.
+ * All coordinates are decimal degrees.
+ */
+@RestController
+@RequiredArgsConstructor
+public final class GeoSearchApiController {
+
+    /**
+     * Upper limit for the radius, a bit more than half of the circumference
+     * of the earth.
+     */
+    private static final double MAX_RADIUS = 20038.0;
+
+    /**
+     * Upper limit for the number of rows and columns of a grid.
+     */
+    private static final int MAX_GRID_SIZE = 256;
+
+    private final TweetRepository tweetRepository;
+
+    /**
+     * @param lat Latitude of the center
+     * @param lon Longitude of the center
+     * @param radius Radius in kilometers
+     * @param q Optional keywords
+     * @param from Optional date (formatted as yyyy-MM-dd)
+     * @param to Optional date (formatted as yyyy-MM-dd)
+     * @param firstResult Offset of the first result
+     * @param maxResults Page size
+     * @return Tweets within the radius, nearest first
+     */
+    @GetMapping("/search/near")
+    public ResponseEntity<List<TweetEntity>> searchNear(
+            @RequestParam final double lat,
+            @RequestParam final double lon,
+            @RequestParam final double radius,
+            @RequestParam(required = false) final String q,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate to,
+            @RequestParam(defaultValue = "0") final int firstResult,
+            @RequestParam(defaultValue = "50") final int maxResults
+    ) {
+        if (Math.abs(lat) > 90.0 || Math.abs(lon) > 180.0 || radius <= 0.0 || radius > MAX_RADIUS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return toResponse(this.tweetRepository.searchNear(lat, lon, radius, q, from, to, paging(firstResult, maxResults, Paging.Order.RELEVANCE, null)));
+    }
+
+    /**
+     * @param bbox South, west, north and east boundary, separated by commas.
+     * West may be east of east for boxes crossing the antimeridian
+     * @param q Optional keywords
+     * @param from Optional date (formatted as yyyy-MM-dd)
+     * @param to Optional date (formatted as yyyy-MM-dd)
+     * @param firstResult Offset of the first result
+     * @param maxResults Page size
+     * @param order Order of the results
+     * @param searchAfter Cursor from the previous page, implies newest first
+     * @return Tweets inside the box
+     */
+    @GetMapping("/search/within")
+    public ResponseEntity<List<TweetEntity>> searchWithin(
+            @RequestParam final double[] bbox,
+            @RequestParam(required = false) final String q,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate to,
+            @RequestParam(defaultValue = "0") final int firstResult,
+            @RequestParam(defaultValue = "50") final int maxResults,
+            @RequestParam(defaultValue = "RELEVANCE") final Paging.Order order,
+            @RequestParam(required = false) final Long searchAfter
+    ) {
+        final BoundingBox boundingBox = boundingBox(bbox);
+        if (boundingBox == null || !boundingBox.isValid()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return toResponse(this.tweetRepository.searchWithin(boundingBox, q, from, to, paging(firstResult, maxResults, order, searchAfter)));
+    }
+
+    /**
+     * Counts tweets inside a grid over the box, for example for rendering
+     * heatmaps of areas containing too many tweets to be retrieved.
+     *
+     * @param bbox South, west, north and east boundary, separated by commas
+     * @param rows Number of rows of the grid
+     * @param columns Number of columns of the grid
+     * @param q Optional keywords
+     * @param from Optional date (formatted as yyyy-MM-dd)
+     * @param to Optional date (formatted as yyyy-MM-dd)
+     * @return All cells containing at least one tweet
+     */
+    @GetMapping("/search/within/grid")
+    public ResponseEntity<List<TweetGeoGridCell>> countWithin(
+            @RequestParam final double[] bbox,
+            @RequestParam(defaultValue = "32") final int rows,
+            @RequestParam(defaultValue = "32") final int columns,
+            @RequestParam(required = false) final String q,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate to
+    ) {
+        final BoundingBox boundingBox = boundingBox(bbox);
+        if (boundingBox == null || !boundingBox.isValid()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(this.tweetRepository.countWithin(boundingBox, gridSize(rows), gridSize(columns), q, from, to));
+    }
+
+    static BoundingBox boundingBox(final double[] bbox) {
+        return bbox.length == 4 ? new BoundingBox(bbox[0], bbox[1], bbox[2], bbox[3]) : null;
+    }
+
+    static int gridSize(final int size) {
+        return Math.max(1, Math.min(size, MAX_GRID_SIZE));
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import ac.simons.tweetarchive.tweets.TweetIndexService.IndexStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Administration of the full text index.
+ */
+@RestController
+@RequestMapping("/admin/index")
+@RequiredArgsConstructor
+public final class IndexApiController {
+
+    private final TweetIndexService tweetIndexService;
+
+    @GetMapping
+    public IndexStatus getStatus() {
+        return this.tweetIndexService.getStatus();
+    }
+
+    /**
+     * Starts rebuilding the index in the background.
+     *
+     * @return The progress of the rebuild
+     */
+    @PostMapping("/rebuild")
+    public ResponseEntity<ReindexProgress> startRebuild() {
+        return ResponseEntity.accepted().body(this.tweetIndexService.startRebuild());
+    }
+
+    @GetMapping("/rebuild")
+    public ResponseEntity<ReindexProgress> getRebuildProgress() {
+        return this.tweetIndexService.getRebuildProgress()
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import lombok.Getter;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.Token;
+
+/**
+ * Thrown when a query entered by the user cannot be parsed. Answered with
+ * {@literal 400} by the {@link SearchApiController}.
+ */
+@Getter
+public final class InvalidQueryException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The query as entered.
+     */
+    private final String query;
+
+    /**
+     * The column (starting at 1) where parsing failed, {@literal null} if
+     * unknown.
+     */
+    private final Integer column;
+
+    InvalidQueryException(final String query, final ParseException cause) {
+        super(cause.getMessage(), cause);
+        this.query = query;
+        this.column = columnOf(cause);
+    }
+
+    /**
+     * {@link org.apache.lucene.queryparser.classic.QueryParser#parse(java.lang.String)}
+     * wraps the actual exception, which knows the last token read.
+     *
+     * @param exception The exception thrown by the parser
+     * @return The column of the first token that could not be parsed
+     */
+    private static Integer columnOf(final ParseException exception) {
+        final Throwable cause = exception.getCause() instanceof ParseException ? exception.getCause() : exception;
+        final Token lastToken = ((ParseException) cause).currentToken;
+        if (lastToken == null) {
+            return null;
+        }
+        return lastToken.next == null ? lastToken.endColumn + 1 : lastToken.next.beginColumn;
+    }
+}
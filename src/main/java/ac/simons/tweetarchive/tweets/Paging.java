@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Describes which page of a search result should be retrieved. Pages are
+ * either addressed by offset or, for deep paging, by the id of the last
+ * tweet of the previous page. The latter requires the tweets to be ordered by
+ * id, which is the same as newest first.
+ */
+@RequiredArgsConstructor
+@Getter
+public final class Paging {
+
+    /**
+     * Possible orders of search results.
+     */
+    public enum Order {
+        /**
+         * Best matches first.
+         */
+        RELEVANCE,
+        /**
+         * Newest tweets first.
+         */
+        NEWEST
+    }
+
+    /**
+     * Offset of the first tweet, ignored when {@link #searchAfter} is set.
+     */
+    private final int firstResult;
+
+    private final int maxResults;
+
+    private final Order order;
+
+    /**
+     * Id of the last tweet of the previous page, implies
+     * {@link Order#NEWEST}.
+     */
+    private final Long searchAfter;
+
+    /**
+     * @return The effective order
+     */
+    public Order getOrder() {
+        return this.searchAfter == null ? this.order : Order.NEWEST;
+    }
+}
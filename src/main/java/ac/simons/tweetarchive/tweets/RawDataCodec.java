@@ -0,0 +1,209 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import static ac.simons.tweetarchive.db.tables.RawDataDictionaries.RAW_DATA_DICTIONARIES;
+import ac.simons.tweetarchive.config.TweetArchiveProperties;
+import ac.simons.tweetarchive.config.TweetArchiveProperties.RawDataCompression;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jooq.DSLContext;
+import static org.jooq.impl.DSL.currentTimestamp;
+import static org.jooq.impl.DSL.val;
+import org.springframework.stereotype.Component;
+
+/**
+ * Compresses and decompresses the raw json data of tweets. Data is compressed
+ * with zstd and the newest dictionary trained on tweets. Each zstd frame
+ * contains the id of its dictionary, so older frames can still be read after
+ * a new dictionary has been trained.
+ * <br>
+ * The compressed data is the exact UTF-8 representation of the json, whereas
+ * {@code jsonb} normalizes whitespace and the order of keys.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public final class RawDataCodec {
+
+    /**
+     * A dictionary ready for compression.
+     */
+    @RequiredArgsConstructor
+    private static final class Dictionary {
+
+        private final long id;
+
+        private final ZstdDictCompress compress;
+    }
+
+    /**
+     * Upper bound of the decompressed size of a frame. The raw data of a
+     * tweet is a few kilobytes, anything larger is considered corrupt.
+     */
+    private static final long MAX_DECOMPRESSED_SIZE = 1024 * 1024;
+
+    private final DSLContext create;
+
+    private final TweetArchiveProperties properties;
+
+    private final ConcurrentMap<Long, ZstdDictDecompress> decompressDictionaries = new ConcurrentHashMap<>();
+
+    /**
+     * The dictionary used for compression, loaded on first use. Only written
+     * while holding the lock of this codec.
+     */
+    private volatile Optional<Dictionary> compressDictionary;
+
+    /**
+     * Compresses the raw data of a new tweet if configured.
+     *
+     * @param rawData The raw data to store
+     */
+    public void encode(final TweetRawDataEntity rawData) {
+        if (this.properties.getRawData().getCompression() == RawDataCompression.ZSTD && rawData.getRawData() != null) {
+            rawData.compress(compress(rawData.getRawData()));
+        }
+    }
+
+    /**
+     * @param rawData The stored raw data
+     * @return The json data, regardless of how it has been stored
+     */
+    public String decode(final TweetRawDataEntity rawData) {
+        return decode(rawData.getRawData(), rawData.getCompressedRawData());
+    }
+
+    /**
+     * @param rawData The uncompressed data, if any
+     * @param compressedRawData The compressed data, if any
+     * @return The json data
+     */
+    public String decode(final String rawData, final byte[] compressedRawData) {
+        return compressedRawData == null ? rawData : decompress(compressedRawData);
+    }
+
+    /**
+     * Compresses json with the newest dictionary, if any.
+     *
+     * @param json The json to compress
+     * @return A zstd frame
+     */
+    public byte[] compress(final String json) {
+        final byte[] uncompressed = json.getBytes(StandardCharsets.UTF_8);
+        return getCompressDictionary()
+                .map(dictionary -> Zstd.compress(uncompressed, dictionary.compress))
+                .orElseGet(() -> Zstd.compress(uncompressed, this.properties.getRawData().getCompressionLevel()));
+    }
+
+    /**
+     * @param frame A zstd frame
+     * @return The json contained in the frame
+     * @throws IllegalStateException if the frame doesn't contain its size or
+     * is larger than the raw data of any tweet
+     */
+    public String decompress(final byte[] frame) {
+        final long dictionaryId = Zstd.getDictIdFromFrame(frame);
+        // Negative sizes are unknown sizes or errors
+        final long frameContentSize = Zstd.getFrameContentSize(frame);
+        if (frameContentSize < 0 || frameContentSize > MAX_DECOMPRESSED_SIZE) {
+            throw new IllegalStateException("Invalid frame content size " + frameContentSize);
+        }
+        final int size = (int) frameContentSize;
+        final byte[] uncompressed;
+        if (dictionaryId == 0) {
+            uncompressed = Zstd.decompress(frame, size);
+        } else {
+            uncompressed = Zstd.decompress(frame, this.decompressDictionaries.computeIfAbsent(dictionaryId, this::loadDecompressDictionary), size);
+        }
+        return new String(uncompressed, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Trains a new dictionary, stores it and uses it for all further
+     * compression.
+     *
+     * @param samples Raw data of typical tweets
+     * @return The id of the new dictionary
+     */
+    public synchronized long train(final Collection<String> samples) {
+        final TweetArchiveProperties.RawData config = this.properties.getRawData();
+        final byte[][] sampleBytes = samples.stream().map(sample -> sample.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+        final ZstdDictTrainer trainer = new ZstdDictTrainer(
+                (int) Math.min(Integer.MAX_VALUE, Stream.of(sampleBytes).mapToLong(sample -> sample.length).sum()),
+                config.getDictionarySize()
+        );
+        for (byte[] sample : sampleBytes) {
+            trainer.addSample(sample);
+        }
+        final byte[] dictionary = trainer.trainSamples();
+        final long id = Zstd.getDictIdFromDict(dictionary);
+        this.create
+                .insertInto(RAW_DATA_DICTIONARIES)
+                .columns(RAW_DATA_DICTIONARIES.ID, RAW_DATA_DICTIONARIES.DICTIONARY, RAW_DATA_DICTIONARIES.CREATED_AT)
+                .values(val(id), val(dictionary), currentTimestamp())
+                .onDuplicateKeyIgnore()
+                .execute();
+        this.compressDictionary = Optional.of(new Dictionary(id, new ZstdDictCompress(dictionary, config.getCompressionLevel())));
+        log.info("Trained dictionary {} ({} bytes) from {} samples", id, dictionary.length, sampleBytes.length);
+        return id;
+    }
+
+    /**
+     * @return The id of the dictionary used for compression, if any
+     */
+    public Optional<Long> getDictionaryId() {
+        return getCompressDictionary().map(dictionary -> dictionary.id);
+    }
+
+    private Optional<Dictionary> getCompressDictionary() {
+        final Optional<Dictionary> rv = this.compressDictionary;
+        return rv != null ? rv : loadCompressDictionary();
+    }
+
+    private synchronized Optional<Dictionary> loadCompressDictionary() {
+        if (this.compressDictionary == null) {
+            this.compressDictionary = this.create
+                    .select(RAW_DATA_DICTIONARIES.ID, RAW_DATA_DICTIONARIES.DICTIONARY)
+                    .from(RAW_DATA_DICTIONARIES)
+                    .orderBy(RAW_DATA_DICTIONARIES.CREATED_AT.desc())
+                    .limit(1)
+                    .fetchOptional()
+                    .map(r -> new Dictionary(r.value1(), new ZstdDictCompress(r.value2(), this.properties.getRawData().getCompressionLevel())));
+        }
+        return this.compressDictionary;
+    }
+
+    private ZstdDictDecompress loadDecompressDictionary(final long id) {
+        return this.create
+                .select(RAW_DATA_DICTIONARIES.DICTIONARY)
+                .from(RAW_DATA_DICTIONARIES)
+                .where(RAW_DATA_DICTIONARIES.ID.eq(id))
+                .fetchOptional()
+                .map(r -> new ZstdDictDecompress(r.value1()))
+                .orElseThrow(() -> new IllegalStateException("Unknown dictionary " + id));
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import static ac.simons.tweetarchive.db.tables.TweetsRawData.TWEETS_RAW_DATA;
+import ac.simons.tweetarchive.config.TweetArchiveProperties;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jooq.BatchBindStep;
+import org.jooq.DSLContext;
+import org.jooq.Record2;
+import static java.util.Collections.singletonMap;
+import static org.jooq.impl.DSL.inline;
+import static org.jooq.impl.DSL.rand;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import twitter4j.TwitterException;
+import twitter4j.TwitterObjectFactory;
+
+/**
+ * Converts the raw data of existing tweets from {@code jsonb} into zstd
+ * frames. A dictionary is trained on a random sample first, if none exists
+ * yet.
+ * <br>
+ * Every converted tweet is decompressed again and must be identical to the
+ * stored json byte by byte and must be materializable into a status by
+ * twitter4j. Otherwise its raw data is left as it is. Note that the stored
+ * {@code jsonb} has already been normalized by PostgreSQL, so it's that
+ * representation which is preserved.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RawDataCompressionService {
+
+    /**
+     * Outcome of a conversion.
+     */
+    @Getter
+    public static final class Result {
+
+        private long converted;
+
+        private long failed;
+
+        private long uncompressedBytes;
+
+        private long compressedBytes;
+    }
+
+    private final DSLContext create;
+
+    private final RawDataCodec rawDataCodec;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TweetArchiveProperties properties;
+
+    /**
+     * Compresses the raw data of all tweets that are still stored as
+     * {@code jsonb}. Each batch is converted in its own transaction.
+     *
+     * @return Statistics of the conversion
+     */
+    public Result compressAll() {
+        final TweetArchiveProperties.RawData config = this.properties.getRawData();
+        if (!this.rawDataCodec.getDictionaryId().isPresent()) {
+            final List<String> samples = this.create
+                    .select(TWEETS_RAW_DATA.RAW_DATA.cast(String.class))
+                    .from(TWEETS_RAW_DATA)
+                    .where(TWEETS_RAW_DATA.RAW_DATA.isNotNull())
+                    .orderBy(rand())
+                    .limit(config.getTrainingSamples())
+                    .fetch(0, String.class);
+            if (!samples.isEmpty()) {
+                this.rawDataCodec.train(samples);
+            }
+        }
+
+        final Result rv = new Result();
+        long lastId = Long.MIN_VALUE;
+        List<Record2<Long, String>> batch;
+        do {
+            final long afterId = lastId;
+            batch = this.transactionTemplate.execute(status -> compressBatch(afterId, config.getConversionBatchSize(), rv));
+            if (!batch.isEmpty()) {
+                lastId = batch.get(batch.size() - 1).value1();
+                log.info("Compressed raw data of {} tweets ({} failed), {} bytes -> {} bytes",
+                        rv.getConverted(), rv.getFailed(), rv.getUncompressedBytes(), rv.getCompressedBytes());
+            }
+        } while (!batch.isEmpty());
+        return rv;
+    }
+
+    private List<Record2<Long, String>> compressBatch(final long afterId, final int batchSize, final Result result) {
+        final List<Record2<Long, String>> rv = this.create
+                .select(TWEETS_RAW_DATA.ID, TWEETS_RAW_DATA.RAW_DATA.cast(String.class))
+                .from(TWEETS_RAW_DATA)
+                .where(TWEETS_RAW_DATA.RAW_DATA.isNotNull())
+                .and(TWEETS_RAW_DATA.ID.gt(afterId))
+                .orderBy(TWEETS_RAW_DATA.ID)
+                .limit(batchSize)
+                .fetch();
+
+        final BatchBindStep updates = this.create.batch(this.create
+                .update(TWEETS_RAW_DATA)
+                .set(TWEETS_RAW_DATA.COMPRESSED_RAW_DATA, new byte[0])
+                .set(singletonMap(TWEETS_RAW_DATA.RAW_DATA, inline((Object) null)))
+                .where(TWEETS_RAW_DATA.ID.eq(0L)));
+        for (Record2<Long, String> tweet : rv) {
+            final String rawData = tweet.value2();
+            final byte[] compressed = this.rawDataCodec.compress(rawData);
+            if (!verify(tweet.value1(), rawData, compressed)) {
+                ++result.failed;
+                continue;
+            }
+            updates.bind(compressed, tweet.value1());
+            ++result.converted;
+            result.uncompressedBytes += rawData.getBytes(StandardCharsets.UTF_8).length;
+            result.compressedBytes += compressed.length;
+        }
+        if (updates.size() > 0) {
+            updates.execute();
+        }
+        return rv;
+    }
+
+    private boolean verify(final long id, final String rawData, final byte[] compressed) {
+        final String decompressed = this.rawDataCodec.decompress(compressed);
+        if (!decompressed.equals(rawData)) {
+            log.warn("Raw data of tweet {} didn't survive compression", id);
+            return false;
+        }
+        try {
+            if (TwitterObjectFactory.createStatus(decompressed).getId() != id) {
+                log.warn("Raw data of tweet {} belongs to another tweet", id);
+                return false;
+            }
+        } catch (TwitterException e) {
+            log.warn("Raw data of tweet {} cannot be materialized: {}", id, e.getMessage());
+            return false;
+        }
+        return true;
+    }
+}
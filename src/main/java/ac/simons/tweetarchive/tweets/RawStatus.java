@@ -0,0 +1,33 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import twitter4j.Status;
+
+/**
+ * A {@link Status status} together with the raw json it has been created
+ * from.
+ */
+@RequiredArgsConstructor
+@Getter
+public final class RawStatus {
+
+    private final Status status;
+
+    private final String rawContent;
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.search.batchindexing.MassIndexerProgressMonitor;
+
+/**
+ * Tracks and logs the progress of a complete rebuild of the index.
+ */
+@Slf4j
+public final class ReindexProgress implements MassIndexerProgressMonitor {
+
+    /**
+     * Progress is logged every time this number of documents have been added.
+     */
+    private static final long LOG_INTERVAL = 10_000;
+
+    private final long startedAt = System.nanoTime();
+
+    private final AtomicLong total = new AtomicLong();
+
+    private final AtomicLong entitiesLoaded = new AtomicLong();
+
+    private final AtomicLong documentsAdded = new AtomicLong();
+
+    private volatile long finishedAt;
+
+    @Override
+    public void addToTotalCount(final long count) {
+        this.total.addAndGet(count);
+    }
+
+    @Override
+    public void entitiesLoaded(final int size) {
+        this.entitiesLoaded.addAndGet(size);
+    }
+
+    @Override
+    public void documentsBuilt(final int number) {
+        // Built documents are counted when they have been added
+    }
+
+    @Override
+    public void documentsAdded(final long increment) {
+        final long previous = this.documentsAdded.getAndAdd(increment);
+        if ((previous + increment) / LOG_INTERVAL > previous / LOG_INTERVAL) {
+            log.info("Reindexed {} of {} tweets, {} documents/s", previous + increment, this.total.get(), String.format("%.1f", getDocumentsPerSecond()));
+        }
+    }
+
+    @Override
+    public void indexingCompleted() {
+        this.finishedAt = System.nanoTime();
+        log.info("Reindexed {} tweets in {}s, {} documents/s", this.documentsAdded.get(), TimeUnit.NANOSECONDS.toSeconds(this.finishedAt - this.startedAt), String.format("%.1f", getDocumentsPerSecond()));
+    }
+
+    public long getTotal() {
+        return this.total.get();
+    }
+
+    public long getEntitiesLoaded() {
+        return this.entitiesLoaded.get();
+    }
+
+    public long getDocumentsAdded() {
+        return this.documentsAdded.get();
+    }
+
+    public boolean isCompleted() {
+        return this.finishedAt != 0L;
+    }
+
+    /**
+     * @return Average throughput since the rebuild started
+     */
+    public double getDocumentsPerSecond() {
+        final long elapsed = (isCompleted() ? this.finishedAt : System.nanoTime()) - this.startedAt;
+        return elapsed == 0 ? 0.0 : this.documentsAdded.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+}
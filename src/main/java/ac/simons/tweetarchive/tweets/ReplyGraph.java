@@ -0,0 +1,359 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntToLongFunction;
+import java.util.stream.LongStream;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * A graph of tweets and the tweets they reply to, kept completely in
+ * primitive arrays. Every tweet is a node addressed by an int index, tweets
+ * that are replied to but are not in the archive (yet) are kept as
+ * placeholders. Replies are chained through {@link #firstReply} and
+ * {@link #nextReply}, so no collection per node is needed.
+ * <br>
+ * Instances are not thread safe.
+ */
+public final class ReplyGraph {
+
+    /**
+     * Statistics of one conversation.
+     */
+    @RequiredArgsConstructor
+    @Getter
+    public static final class Conversation {
+
+        /**
+         * Id of the first tweet of the conversation.
+         */
+        private final long id;
+
+        private final boolean inArchive;
+
+        /**
+         * Number of tweets of the conversation that are in the archive.
+         */
+        private final int tweets;
+
+        /**
+         * Length of the longest chain of replies.
+         */
+        private final int depth;
+    }
+
+    /**
+     * A tweet and the number of direct replies to it.
+     */
+    @RequiredArgsConstructor
+    @Getter
+    public static final class RepliedTweet {
+
+        private final long id;
+
+        private final boolean inArchive;
+
+        private final int replies;
+    }
+
+    private static final int NONE = -1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+
+    private int[] parent = new int[INITIAL_CAPACITY];
+
+    private int[] firstReply = new int[INITIAL_CAPACITY];
+
+    private int[] nextReply = new int[INITIAL_CAPACITY];
+
+    private int[] replies = new int[INITIAL_CAPACITY];
+
+    private final BitSet inArchive = new BitSet();
+
+    private int size;
+
+    /**
+     * Open addressing from ids to nodes, {@literal 0} marks empty slots.
+     */
+    private long[] slotIds = new long[2 * INITIAL_CAPACITY];
+
+    private int[] slotNodes = new int[2 * INITIAL_CAPACITY];
+
+    /**
+     * Adds a tweet or marks a placeholder as being in the archive.
+     *
+     * @param id The id of the tweet
+     * @param inReplyToStatusId The id of the tweet replied to, {@literal null}
+     * if the tweet isn't a reply
+     */
+    public void add(final long id, final Long inReplyToStatusId) {
+        if (id <= 0) {
+            return;
+        }
+        final int node = nodeOf(id);
+        final boolean added = !this.inArchive.get(node);
+        this.inArchive.set(node);
+        // Replies are always newer and therefor have greater ids, which rules out cycles
+        if (inReplyToStatusId != null && inReplyToStatusId > 0 && inReplyToStatusId < id && this.parent[node] == NONE) {
+            final int parentNode = nodeOf(inReplyToStatusId);
+            this.parent[node] = parentNode;
+            this.nextReply[node] = this.firstReply[parentNode];
+            this.firstReply[parentNode] = node;
+            ++this.replies[parentNode];
+        } else if (added && this.parent[node] != NONE) {
+            // A removed reply that is added again
+            ++this.replies[this.parent[node]];
+        }
+    }
+
+    /**
+     * Removes a tweet from the archive. It stays in the graph as placeholder
+     * so that the conversation isn't disconnected, but doesn't count as
+     * reply anymore.
+     *
+     * @param id The id of the tweet
+     */
+    public void remove(final long id) {
+        final int node = find(id);
+        if (node != NONE && this.inArchive.get(node)) {
+            this.inArchive.clear(node);
+            if (this.parent[node] != NONE) {
+                --this.replies[this.parent[node]];
+            }
+        }
+    }
+
+    /**
+     * @return The number of tweets in the archive
+     */
+    public int getTweets() {
+        return this.inArchive.cardinality();
+    }
+
+    /**
+     * @return The number of nodes, including placeholders
+     */
+    public int getNodes() {
+        return this.size;
+    }
+
+    /**
+     * Retrieves the ids of the conversation of a tweet: All tweets it replies
+     * to, the tweet itself and the replies to it. Only tweets in the archive
+     * are returned.
+     *
+     * @param id The id of the tweet
+     * @param maxDepth Maximum number of levels of replies
+     * @return The ids, empty if the tweet isn't in the archive
+     */
+    public long[] getConversation(final long id, final int maxDepth) {
+        final int node = find(id);
+        if (node == NONE || !this.inArchive.get(node)) {
+            return new long[0];
+        }
+
+        final LongStream.Builder rv = LongStream.builder();
+        for (int ancestor = this.parent[node]; ancestor != NONE; ancestor = this.parent[ancestor]) {
+            addIfInArchive(rv, ancestor);
+        }
+        rv.add(id);
+
+        // Breadth first, one level after another
+        int[] level = {node};
+        int levelSize = 1;
+        for (int depth = 1; depth <= maxDepth && levelSize > 0; ++depth) {
+            int[] nextLevel = new int[Math.max(levelSize, 16)];
+            int nextLevelSize = 0;
+            for (int i = 0; i < levelSize; ++i) {
+                for (int reply = this.firstReply[level[i]]; reply != NONE; reply = this.nextReply[reply]) {
+                    if (nextLevelSize == nextLevel.length) {
+                        nextLevel = Arrays.copyOf(nextLevel, 2 * nextLevelSize);
+                    }
+                    nextLevel[nextLevelSize++] = reply;
+                    addIfInArchive(rv, reply);
+                }
+            }
+            level = nextLevel;
+            levelSize = nextLevelSize;
+        }
+        return rv.build().toArray();
+    }
+
+    /**
+     * Computes the conversations with the longest chains of replies.
+     *
+     * @param limit Maximum number of conversations
+     * @return Conversations ordered by the length of their longest chain and
+     * their number of tweets
+     */
+    public List<Conversation> getLongestConversations(final int limit) {
+        final int[] depth = new int[this.size];
+        final int[] root = new int[this.size];
+        Arrays.fill(depth, NONE);
+
+        // Walk up from each node until a node with known depth, then assign downwards
+        int[] path = new int[16];
+        for (int node = 0; node < this.size; ++node) {
+            int pathLength = 0;
+            int current = node;
+            while (current != NONE && depth[current] == NONE) {
+                if (pathLength == path.length) {
+                    path = Arrays.copyOf(path, 2 * pathLength);
+                }
+                path[pathLength++] = current;
+                current = this.parent[current];
+            }
+            int currentDepth = current == NONE ? NONE : depth[current];
+            final int currentRoot = current == NONE ? path[pathLength - 1] : root[current];
+            while (pathLength > 0) {
+                final int next = path[--pathLength];
+                depth[next] = ++currentDepth;
+                root[next] = currentRoot;
+            }
+        }
+
+        final int[] tweets = new int[this.size];
+        final int[] maxDepth = new int[this.size];
+        // Placeholders only count through the tweets in the archive replying to them
+        for (int node = 0; node < this.size; ++node) {
+            if (this.inArchive.get(node)) {
+                ++tweets[root[node]];
+                maxDepth[root[node]] = Math.max(maxDepth[root[node]], depth[node]);
+            }
+        }
+
+        final List<Conversation> rv = new ArrayList<>();
+        for (int node : top(limit, node -> maxDepth[node] == 0 ? Long.MIN_VALUE : (long) maxDepth[node] << 32 | tweets[node])) {
+            rv.add(new Conversation(this.ids[node], this.inArchive.get(node), tweets[node], maxDepth[node]));
+        }
+        return rv;
+    }
+
+    /**
+     * Computes the tweets with the most direct replies.
+     *
+     * @param limit Maximum number of tweets
+     * @return Tweets ordered by their number of replies
+     */
+    public List<RepliedTweet> getMostRepliedTweets(final int limit) {
+        final List<RepliedTweet> rv = new ArrayList<>();
+        for (int node : top(limit, node -> this.replies[node] == 0 ? Long.MIN_VALUE : this.replies[node])) {
+            rv.add(new RepliedTweet(this.ids[node], this.inArchive.get(node), this.replies[node]));
+        }
+        return rv;
+    }
+
+    /**
+     * Selects the nodes with the highest keys. Nodes with a key of
+     * {@link Long#MIN_VALUE} are ignored.
+     *
+     * @param limit Maximum number of nodes
+     * @param key Computes the key of a node
+     * @return Nodes in descending order of their keys
+     */
+    private int[] top(final int limit, final IntToLongFunction key) {
+        if (limit <= 0) {
+            return new int[0];
+        }
+        final int[] nodes = new int[limit];
+        final long[] keys = new long[limit];
+        int cnt = 0;
+        for (int node = 0; node < this.size; ++node) {
+            final long nodeKey = key.applyAsLong(node);
+            if (nodeKey == Long.MIN_VALUE || cnt == nodes.length && keys[cnt - 1] >= nodeKey) {
+                continue;
+            }
+            int pos = cnt == nodes.length ? cnt - 1 : cnt++;
+            while (pos > 0 && keys[pos - 1] < nodeKey) {
+                nodes[pos] = nodes[pos - 1];
+                keys[pos] = keys[pos - 1];
+                --pos;
+            }
+            nodes[pos] = node;
+            keys[pos] = nodeKey;
+        }
+        return Arrays.copyOf(nodes, cnt);
+    }
+
+    private void addIfInArchive(final LongStream.Builder target, final int node) {
+        if (this.inArchive.get(node)) {
+            target.add(this.ids[node]);
+        }
+    }
+
+    private int slot(final long id, final int capacity) {
+        return Long.hashCode(id * 0x9E3779B97F4A7C15L) & (capacity - 1);
+    }
+
+    private int find(final long id) {
+        for (int slot = slot(id, this.slotIds.length); this.slotIds[slot] != 0; slot = (slot + 1) & (this.slotIds.length - 1)) {
+            if (this.slotIds[slot] == id) {
+                return this.slotNodes[slot];
+            }
+        }
+        return NONE;
+    }
+
+    private int nodeOf(final long id) {
+        final int existing = find(id);
+        if (existing != NONE) {
+            return existing;
+        }
+
+        if (this.size == this.ids.length) {
+            final int capacity = 2 * this.size;
+            this.ids = Arrays.copyOf(this.ids, capacity);
+            this.parent = Arrays.copyOf(this.parent, capacity);
+            this.firstReply = Arrays.copyOf(this.firstReply, capacity);
+            this.nextReply = Arrays.copyOf(this.nextReply, capacity);
+            this.replies = Arrays.copyOf(this.replies, capacity);
+            rehash(2 * capacity);
+        }
+        final int node = this.size++;
+        this.ids[node] = id;
+        this.parent[node] = NONE;
+        this.firstReply[node] = NONE;
+        this.nextReply[node] = NONE;
+        insert(this.slotIds, this.slotNodes, id, node);
+        return node;
+    }
+
+    private void rehash(final int capacity) {
+        final long[] newSlotIds = new long[capacity];
+        final int[] newSlotNodes = new int[capacity];
+        for (int node = 0; node < this.size; ++node) {
+            insert(newSlotIds, newSlotNodes, this.ids[node], node);
+        }
+        this.slotIds = newSlotIds;
+        this.slotNodes = newSlotNodes;
+    }
+
+    private void insert(final long[] targetIds, final int[] targetNodes, final long id, final int node) {
+        int slot = slot(id, targetIds.length);
+        while (targetIds[slot] != 0) {
+            slot = (slot + 1) & (targetIds.length - 1);
+        }
+        targetIds[slot] = id;
+        targetNodes[slot] = node;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import static ac.simons.tweetarchive.db.tables.Tweets.TWEETS;
+import ac.simons.tweetarchive.config.TweetArchiveProperties;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jooq.Cursor;
+import org.jooq.DSLContext;
+import org.jooq.Record2;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Keeps the {@link ReplyGraph} of all tweets in memory. The graph is loaded
+ * on startup and afterwards updated after each transaction that stored or
+ * deleted tweets.
+ * <br>
+ * Until the graph has been loaded, {@link #isLoaded()} is false and callers
+ * should fall back to the database.
+ */
+@Service
+@ConditionalOnProperty(prefix = "tweetarchive.reply-graph", name = "enabled")
+@RequiredArgsConstructor
+@Slf4j
+public class ReplyGraphService {
+
+    private final DSLContext create;
+
+    private final TweetArchiveProperties properties;
+
+    private final ReplyGraph replyGraph = new ReplyGraph();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile boolean loaded;
+
+    /**
+     * Loads the graph. The write lock is held while reading all tweets, so
+     * changes committed in the meantime are applied afterwards.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        final long start = System.currentTimeMillis();
+        write(graph -> {
+            try (Cursor<Record2<Long, Long>> cursor = this.create
+                    .select(TWEETS.ID, TWEETS.IN_REPLY_TO_STATUS_ID)
+                    .from(TWEETS)
+                    .fetchSize(this.properties.getReplyGraph().getLoadFetchSize())
+                    .fetchLazy()) {
+                cursor.forEach(tweet -> graph.add(tweet.value1(), tweet.value2()));
+            }
+            return null;
+        });
+        this.loaded = true;
+        log.info("Loaded reply graph with {} tweets in {}ms", read(ReplyGraph::getTweets), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @return True if the graph has been loaded
+     */
+    public boolean isLoaded() {
+        return this.loaded;
+    }
+
+    @TransactionalEventListener
+    public void onTweetsStored(final TweetsStoredEvent event) {
+        write(graph -> {
+            event.getTweets().forEach(tweet -> graph.add(tweet.getId(), tweet.getInReplyTo() == null ? null : tweet.getInReplyTo().getInReplyToStatusId()));
+            return null;
+        });
+    }
+
+    @TransactionalEventListener
+    public void onTweetDeleted(final TweetDeletedEvent event) {
+        write(graph -> {
+            graph.remove(event.getId());
+            return null;
+        });
+    }
+
+    /**
+     * @param id The id of the tweet
+     * @param maxDepth Maximum number of levels of replies
+     * @return The ids of the conversation
+     * @see ReplyGraph#getConversation(long, int)
+     */
+    public long[] getConversation(final long id, final int maxDepth) {
+        return read(graph -> graph.getConversation(id, maxDepth));
+    }
+
+    /**
+     * @param limit Maximum number of conversations
+     * @return The conversations with the longest chains of replies
+     * @see ReplyGraph#getLongestConversations(int)
+     */
+    public List<ReplyGraph.Conversation> getLongestConversations(final int limit) {
+        return read(graph -> graph.getLongestConversations(limit));
+    }
+
+    /**
+     * @param limit Maximum number of tweets
+     * @return The tweets with the most replies
+     * @see ReplyGraph#getMostRepliedTweets(int)
+     */
+    public List<ReplyGraph.RepliedTweet> getMostRepliedTweets(final int limit) {
+        return read(graph -> graph.getMostRepliedTweets(limit));
+    }
+
+    private <T> T read(final Function<ReplyGraph, T> query) {
+        return withLock(this.lock.readLock(), query);
+    }
+
+    private <T> T write(final Function<ReplyGraph, T> update) {
+        return withLock(this.lock.writeLock(), update);
+    }
+
+    private <T> T withLock(final Lock lockToUse, final Function<ReplyGraph, T> function) {
+        lockToUse.lock();
+        try {
+            return function.apply(this.replyGraph);
+        } finally {
+            lockToUse.unlock();
+        }
+    }
+}
@@ -15,17 +15,41 @@
  */
 package ac.simons.tweetarchive.tweets;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
- * The API to the search repository.
+ * The API to the search repository. Results are paged, either by offset or
+ * by a cursor. The total number of hits is returned in the
+ * {@value #TOTAL_COUNT_HEADER} header, the cursor for the next page in the
+ * {@value #SEARCH_AFTER_HEADER} header.
+ * <br>
+ * All hits can be streamed as newline delimited JSON, the tweets are written
+ * as they are loaded. For list views, {@link TweetProjection projections}
+ * read solely from the index are available. Counts of the values of
+ * {@link TweetFacet facets} are available together with the first page.
+ * <br>
+ * Queries of the extended search that cannot be parsed are answered with
+ * {@literal 400} and a description of the error.
  *
  * @author Michael J. Simons, 2016-09-06
  */
@@ -33,31 +57,243 @@ import org.springframework.web.bind.annotation.RestController;
 @RequiredArgsConstructor
 public final class SearchApiController {
 
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    public static final String SEARCH_AFTER_HEADER = "X-Search-After";
+
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType(APPLICATION_NDJSON_VALUE);
+
+    /**
+     * Upper limit for the page size.
+     */
+    private static final int MAX_RESULTS_LIMIT = 1000;
+
+    /**
+     * Upper limit for the number of values per facet.
+     */
+    private static final int MAX_FACET_LIMIT = 100;
+
     private final TweetRepository tweetRepository;
 
+    private final ObjectMapper objectMapper;
+
     /**
      * @param q The keywords to search for
      * @param from Optional date (formatted as yyyy-MM-dd)
      * @param to Optional date (formatted as yyyy-MM-dd)
+     * @param firstResult Offset of the first result
+     * @param maxResults Page size
+     * @param order Order of the results
+     * @param searchAfter Cursor from the previous page, implies newest first
      * @return
      */
     @GetMapping("/search")
-    public List<TweetEntity> search(
+    public ResponseEntity<List<TweetEntity>> search(
+            @NotNull @RequestParam final String q,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate to,
+            @RequestParam(defaultValue = "0") final int firstResult,
+            @RequestParam(defaultValue = "50") final int maxResults,
+            @RequestParam(defaultValue = "RELEVANCE") final Paging.Order order,
+            @RequestParam(required = false) final Long searchAfter
+    ) {
+        return toResponse(this.tweetRepository.searchByKeyword(q, from, to, paging(firstResult, maxResults, order, searchAfter)));
+    }
+
+    /**
+     * Same as {@link #search(java.lang.String, java.time.LocalDate, java.time.LocalDate, int, int, ac.simons.tweetarchive.tweets.Paging.Order, java.lang.Long)},
+     * but the hits are projected from the index.
+     *
+     * @param q The keywords to search for
+     * @param from Optional date (formatted as yyyy-MM-dd)
+     * @param to Optional date (formatted as yyyy-MM-dd)
+     * @param firstResult Offset of the first result
+     * @param maxResults Page size
+     * @param order Order of the results
+     * @param searchAfter Cursor from the previous page, implies newest first
+     * @return
+     */
+    @GetMapping("/search/projections")
+    public ResponseEntity<List<TweetProjection>> searchProjections(
+            @NotNull @RequestParam final String q,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate to,
+            @RequestParam(defaultValue = "0") final int firstResult,
+            @RequestParam(defaultValue = "50") final int maxResults,
+            @RequestParam(defaultValue = "RELEVANCE") final Paging.Order order,
+            @RequestParam(required = false) final Long searchAfter
+    ) {
+        return toResponse(this.tweetRepository.searchProjectionsByKeyword(q, from, to, paging(firstResult, maxResults, order, searchAfter)));
+    }
+
+    /**
+     * Returns the first page of hits together with the most frequent values
+     * of all {@link TweetFacet facets} of all hits.
+     *
+     * @param q The keywords to search for
+     * @param from Optional date (formatted as yyyy-MM-dd)
+     * @param to Optional date (formatted as yyyy-MM-dd)
+     * @param maxResults Page size
+     * @param order Order of the results
+     * @param facetLimit Maximum number of values per facet
+     * @return
+     */
+    @GetMapping("/search/facets")
+    public ResponseEntity<TweetFacetedSearchResult> searchWithFacets(
+            @NotNull @RequestParam final String q,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate to,
+            @RequestParam(defaultValue = "50") final int maxResults,
+            @RequestParam(defaultValue = "RELEVANCE") final Paging.Order order,
+            @RequestParam(defaultValue = "10") final int facetLimit
+    ) {
+        return toResponse(this.tweetRepository.searchWithFacetsByKeyword(q, from, to, paging(0, maxResults, order, null), facetLimit(facetLimit)));
+    }
+
+    /**
+     * @param q The keywords to search for
+     * @param from Optional date (formatted as yyyy-MM-dd)
+     * @param to Optional date (formatted as yyyy-MM-dd)
+     * @return All hits as newline delimited JSON
+     */
+    @GetMapping(value = "/search/stream", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamSearch(
             @NotNull @RequestParam final String q,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate from,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate to
     ) {
-        return this.tweetRepository.searchByKeyword(q, from, to);
+        return toResponse(out -> this.tweetRepository.streamByKeyword(q, from, to, ndjsonWriter(out)));
     }
 
     /**
      * @param q The query
+     * @param firstResult Offset of the first result
+     * @param maxResults Page size
+     * @param order Order of the results
+     * @param searchAfter Cursor from the previous page, implies newest first
      * @return
      */
     @GetMapping("/extendedSearch")
-    public List<TweetEntity> extendedSearch(
+    public ResponseEntity<List<TweetEntity>> extendedSearch(
+            @NotNull @RequestParam final String q,
+            @RequestParam(defaultValue = "0") final int firstResult,
+            @RequestParam(defaultValue = "50") final int maxResults,
+            @RequestParam(defaultValue = "RELEVANCE") final Paging.Order order,
+            @RequestParam(required = false) final Long searchAfter
+    ) {
+        return toResponse(this.tweetRepository.searchByQuery(q, paging(firstResult, maxResults, order, searchAfter)));
+    }
+
+    /**
+     * Projection variant of {@link #extendedSearch(java.lang.String, int, int, ac.simons.tweetarchive.tweets.Paging.Order, java.lang.Long)}.
+     *
+     * @param q The query
+     * @param firstResult Offset of the first result
+     * @param maxResults Page size
+     * @param order Order of the results
+     * @param searchAfter Cursor from the previous page, implies newest first
+     * @return
+     */
+    @GetMapping("/extendedSearch/projections")
+    public ResponseEntity<List<TweetProjection>> extendedSearchProjections(
+            @NotNull @RequestParam final String q,
+            @RequestParam(defaultValue = "0") final int firstResult,
+            @RequestParam(defaultValue = "50") final int maxResults,
+            @RequestParam(defaultValue = "RELEVANCE") final Paging.Order order,
+            @RequestParam(required = false) final Long searchAfter
+    ) {
+        return toResponse(this.tweetRepository.searchProjectionsByQuery(q, paging(firstResult, maxResults, order, searchAfter)));
+    }
+
+    /**
+     * Faceted variant of {@link #extendedSearch(java.lang.String, int, int, ac.simons.tweetarchive.tweets.Paging.Order, java.lang.Long)}.
+     *
+     * @param q The query
+     * @param maxResults Page size
+     * @param order Order of the results
+     * @param facetLimit Maximum number of values per facet
+     * @return
+     */
+    @GetMapping("/extendedSearch/facets")
+    public ResponseEntity<TweetFacetedSearchResult> extendedSearchWithFacets(
+            @NotNull @RequestParam final String q,
+            @RequestParam(defaultValue = "50") final int maxResults,
+            @RequestParam(defaultValue = "RELEVANCE") final Paging.Order order,
+            @RequestParam(defaultValue = "10") final int facetLimit
+    ) {
+        return toResponse(this.tweetRepository.searchWithFacetsByQuery(q, paging(0, maxResults, order, null), facetLimit(facetLimit)));
+    }
+
+    /**
+     * @param q The query
+     * @return All hits as newline delimited JSON
+     */
+    @GetMapping(value = "/extendedSearch/stream", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamExtendedSearch(
             @NotNull @RequestParam final String q
     ) {
-        return this.tweetRepository.searchByQuery(q);
+        this.tweetRepository.validateQuery(q);
+        return toResponse(out -> this.tweetRepository.streamByQuery(q, ndjsonWriter(out)));
+    }
+
+    /**
+     * @param e The exception thrown while parsing a query
+     * @param request The current request
+     * @return A structured description of the error
+     */
+    @ExceptionHandler(InvalidQueryException.class)
+    public ResponseEntity<Map<String, Object>> handleInvalidQuery(final InvalidQueryException e, final HttpServletRequest request) {
+        // The error is JSON, even for the streaming endpoints producing NDJSON
+        request.removeAttribute(HandlerMapping.PRODUCIBLE_MEDIA_TYPES_ATTRIBUTE);
+        final Map<String, Object> body = new LinkedHashMap<>();
+        body.put("error", "invalid_query");
+        body.put("message", e.getMessage());
+        body.put("query", e.getQuery());
+        body.put("column", e.getColumn());
+        return ResponseEntity.badRequest()
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .body(body);
+    }
+
+    static Paging paging(final int firstResult, final int maxResults, final Paging.Order order, final Long searchAfter) {
+        return new Paging(Math.max(0, firstResult), Math.max(1, Math.min(maxResults, MAX_RESULTS_LIMIT)), order, searchAfter);
+    }
+
+    static int facetLimit(final int facetLimit) {
+        return Math.max(1, Math.min(facetLimit, MAX_FACET_LIMIT));
+    }
+
+    static ResponseEntity<TweetFacetedSearchResult> toResponse(final TweetFacetedSearchResult result) {
+        return ResponseEntity.ok()
+                .header(TOTAL_COUNT_HEADER, Integer.toString(result.getResult().getTotalHits()))
+                .body(result);
+    }
+
+    static <T> ResponseEntity<List<T>> toResponse(final TweetSearchResult<T> result) {
+        final ResponseEntity.BodyBuilder rv = ResponseEntity.ok()
+                .header(TOTAL_COUNT_HEADER, Integer.toString(result.getTotalHits()));
+        if (result.getSearchAfter() != null) {
+            rv.header(SEARCH_AFTER_HEADER, Long.toString(result.getSearchAfter()));
+        }
+        return rv.body(result.getTweets());
+    }
+
+    static ResponseEntity<StreamingResponseBody> toResponse(final StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .contentType(APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    private Consumer<TweetEntity> ndjsonWriter(final OutputStream out) {
+        return tweet -> {
+            try {
+                out.write(this.objectMapper.writeValueAsBytes(tweet));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
     }
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexReaderContext;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.IndexSearcher;
+
+/**
+ * Searches the shards of a (multi) reader in parallel, one task per shard.
+ * The top hits of all shards are merged by the {@link IndexSearcher}, term
+ * statistics are those of the whole reader, so scores are the same as with
+ * a sequential search.
+ */
+final class ShardedIndexSearcher extends IndexSearcher {
+
+    ShardedIndexSearcher(final IndexReader reader, final ExecutorService executor) {
+        super(reader, executor);
+    }
+
+    /**
+     * Groups all segments by the shard (the reader directly containing them)
+     * instead of searching each segment in a task of its own. Slices keep
+     * the order of the segments, hits with equal scores are merged in that
+     * order.
+     *
+     * @param leaves All segments
+     * @return One slice per shard
+     */
+    @Override
+    protected LeafSlice[] slices(final List<LeafReaderContext> leaves) {
+        final Map<IndexReaderContext, List<LeafReaderContext>> shards = new LinkedHashMap<>();
+        for (LeafReaderContext leaf : leaves) {
+            shards.computeIfAbsent(leaf.parent == null ? leaf : leaf.parent, shard -> new ArrayList<>()).add(leaf);
+        }
+        return shards.values().stream()
+                .map(shard -> new LeafSlice(shard.toArray(new LeafReaderContext[shard.size()])))
+                .toArray(LeafSlice[]::new);
+    }
+
+    int getNumberOfSlices() {
+        return this.leafSlices == null ? 0 : this.leafSlices.length;
+    }
+}
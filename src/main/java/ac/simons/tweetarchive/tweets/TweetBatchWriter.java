@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Funnels tweets created by several producers into one writer thread, which
+ * stores them in batches. The number of pending units of work is bounded, so
+ * producers are blocked if storage cannot keep up.
+ * <br>
+ * Once storing a batch fails, the writer stops and all further writes as well
+ * as {@link #close()} fail with that error. Errors are wrapped into an
+ * {@link IllegalStateException}.
+ */
+@Slf4j
+public final class TweetBatchWriter implements AutoCloseable {
+
+    /**
+     * Stores one batch of tweets, usually in one transaction.
+     */
+    @FunctionalInterface
+    public interface BatchStore {
+
+        /**
+         * @param batch The tweets to store
+         * @return The number of tweets actually stored
+         */
+        int store(List<TweetEntity> batch);
+    }
+
+    @RequiredArgsConstructor
+    private static final class Unit {
+
+        private final List<TweetEntity> tweets;
+
+        private final IntConsumer onStored;
+    }
+
+    private static final Unit END = new Unit(Collections.emptyList(), stored -> {
+    });
+
+    private final BatchStore store;
+
+    private final int batchSize;
+
+    private final BlockingQueue<Unit> queue;
+
+    private final Thread writer;
+
+    private volatile RuntimeException failure;
+
+    /**
+     * Creates and starts a new writer.
+     *
+     * @param name The name of the writer thread
+     * @param store The actual storage
+     * @param batchSize Maximum number of tweets stored together
+     * @param capacity Maximum number of units waiting to be stored
+     */
+    public TweetBatchWriter(final String name, final BatchStore store, final int batchSize, final int capacity) {
+        this.store = store;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::run, name);
+        this.writer.start();
+    }
+
+    /**
+     * Schedules a unit of tweets (for example the content of one archive
+     * entry) for storage. Large units are split into several batches.
+     * Blocks while the writer is busy and the maximum number of units are
+     * waiting.
+     *
+     * @param tweets The tweets to store
+     * @param onStored Called with the number of tweets actually stored, after
+     * all of them have been committed
+     * @throws InterruptedException When interrupted while waiting
+     */
+    public void write(final List<TweetEntity> tweets, final IntConsumer onStored) throws InterruptedException {
+        enqueue(new Unit(tweets, onStored));
+    }
+
+    /**
+     * Waits until all scheduled tweets have been stored and stops the writer.
+     *
+     * @throws IllegalStateException When storing failed or when interrupted
+     * while waiting, the interrupt flag is restored in that case
+     */
+    @Override
+    public void close() {
+        try {
+            enqueue(END);
+            this.writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the writer", e);
+        }
+        checkFailure();
+    }
+
+    private void enqueue(final Unit unit) throws InterruptedException {
+        do {
+            checkFailure();
+            // Nothing would ever take the unit
+            if (!this.writer.isAlive()) {
+                throw new IllegalStateException("Writer has stopped");
+            }
+        } while (!this.queue.offer(unit, 100, TimeUnit.MILLISECONDS));
+    }
+
+    private void checkFailure() {
+        if (this.failure != null) {
+            throw this.failure;
+        }
+    }
+
+    private void run() {
+        try {
+            Unit unit;
+            while ((unit = this.queue.take()) != END) {
+                int stored = 0;
+                for (int from = 0; from < unit.tweets.size(); from += this.batchSize) {
+                    stored += this.store.store(unit.tweets.subList(from, Math.min(from + this.batchSize, unit.tweets.size())));
+                }
+                unit.onStored.accept(stored);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.failure = new IllegalStateException("Writer has been interrupted", e);
+        } catch (RuntimeException e) {
+            log.error("Could not store tweets, stopping writer", e);
+            this.failure = e;
+        } catch (Throwable e) {
+            log.error("Writer died", e);
+            this.failure = new IllegalStateException("Writer died", e);
+        } finally {
+            this.queue.clear();
+        }
+    }
+}
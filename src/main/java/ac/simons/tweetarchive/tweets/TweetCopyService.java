@@ -0,0 +1,200 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import static java.util.stream.Collectors.toList;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jooq.DSLContext;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * An alternative to {@link TweetStorageService#storeTweets(java.util.Collection)}
+ * for restoring or migrating very large archives. Tweets are streamed into a
+ * temporary staging table via PostgreSQL's {@code COPY} and then merged into
+ * the tweets and raw data tables with one set based insert.
+ * <br>
+ * As this completely bypasses Hibernate, the copied tweets are not indexed.
+ * Use {@link TweetIndexService#index(java.util.Collection)} with the ids
+ * returned by {@link #copyAll(java.util.Collection)} afterwards.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TweetCopyService {
+
+    /**
+     * All columns of the tweets table filled by {@link TweetStorageService}.
+     */
+    private static final String COLUMNS
+            = "id, twitter_user_id, screen_name, created_at, content, source, "
+            + "in_reply_to_status_id, in_reply_to_screen_name, in_reply_to_user_id, "
+            + "quoted_status_id, country_code, lang, latitude, longitude";
+
+    /**
+     * The columns in the order they are written to the copy stream, the raw
+     * data goes into its own table.
+     */
+    private static final String STAGED_COLUMNS = COLUMNS + ", raw_data, compressed_raw_data";
+
+    private static final String CREATE_STAGING_TABLE
+            = "CREATE TEMPORARY TABLE tweets_staging (LIKE tweets INCLUDING DEFAULTS, raw_data JSONB, compressed_raw_data BYTEA) ON COMMIT DROP";
+
+    private static final String COPY_INTO_STAGING_TABLE
+            = "COPY tweets_staging (" + STAGED_COLUMNS + ") FROM STDIN (FORMAT csv)";
+
+    /**
+     * The primary key of the partitioned tweets table contains the creation
+     * date, existing tweets are skipped by looking up their ids in the
+     * unpartitioned {@code tweet_ids}, which guards the uniqueness of ids.
+     * Tweets stored concurrently by another transaction are skipped by the
+     * trigger registering their ids and are not returned. Deleted tweets are
+     * not copied again.
+     */
+    private static final String MERGE_STAGING_TABLE
+            = "WITH inserted AS ("
+            + "  INSERT INTO tweets (" + COLUMNS + ") SELECT DISTINCT ON (s.id) " + COLUMNS + " FROM tweets_staging s"
+            + "  WHERE NOT EXISTS (SELECT 1 FROM tweet_ids i WHERE i.id = s.id)"
+            + "  AND NOT EXISTS (SELECT 1 FROM tweet_tombstones d WHERE d.id = s.id) ORDER BY s.id ON CONFLICT (id, created_at) DO NOTHING RETURNING id"
+            + "), inserted_raw_data AS ("
+            + "  INSERT INTO tweets_raw_data (id, raw_data, compressed_raw_data)"
+            + "  SELECT DISTINCT ON (s.id) s.id, s.raw_data, s.compressed_raw_data FROM tweets_staging s JOIN inserted i ON i.id = s.id"
+            + "  ON CONFLICT (id) DO UPDATE SET raw_data = EXCLUDED.raw_data, compressed_raw_data = EXCLUDED.compressed_raw_data"
+            + ") SELECT id FROM inserted";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final DSLContext create;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final TweetDeletionService tweetDeletionService;
+
+    /**
+     * Copies all tweets into the tweets table. Tweets that already exist are
+     * skipped.
+     *
+     * @param tweets The tweets to copy, usually created through
+     * {@link TweetStorageService#createEntity(twitter4j.Status, java.lang.String)}
+     * @return The ids of the tweets actually inserted
+     */
+    @Transactional
+    public List<Long> copyAll(final Collection<TweetEntity> tweets) {
+        if (tweets.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // The merge checks the tombstones
+        this.tweetDeletionService.lockForStoring();
+        this.create.execute(CREATE_STAGING_TABLE);
+        this.create.connection(connection -> {
+            final PGConnection pgConnection = connection.unwrap(PGConnection.class);
+            try (final Writer out = new BufferedWriter(new OutputStreamWriter(new PGCopyOutputStream(pgConnection, COPY_INTO_STAGING_TABLE), StandardCharsets.UTF_8))) {
+                for (TweetEntity tweet : tweets) {
+                    writeRow(out, tweet);
+                }
+            }
+        });
+        final List<Long> rv = this.create.fetch(MERGE_STAGING_TABLE).getValues(0, Long.class);
+        log.debug("Copied {} of {} tweets", rv.size(), tweets.size());
+
+        final Set<Long> copiedIds = new HashSet<>(rv);
+        this.eventPublisher.publishEvent(new TweetsStoredEvent(tweets.stream().filter(t -> copiedIds.contains(t.getId())).collect(toList())));
+        return rv;
+    }
+
+    static void writeRow(final Writer out, final TweetEntity tweet) throws IOException {
+        final Optional<TweetEntity.InReplyTo> inReplyTo = Optional.ofNullable(tweet.getInReplyTo());
+        final Optional<TweetEntity.Location> location = Optional.ofNullable(tweet.getLocation());
+        final Object[] values = new Object[]{
+            tweet.getId(),
+            tweet.getTwitterUserId(),
+            tweet.getScreenName(),
+            tweet.getCreatedAt().toOffsetDateTime(),
+            tweet.getContent(),
+            tweet.getSource(),
+            inReplyTo.map(TweetEntity.InReplyTo::getInReplyToStatusId).orElse(null),
+            inReplyTo.map(TweetEntity.InReplyTo::getInReplyToScreenName).orElse(null),
+            inReplyTo.map(TweetEntity.InReplyTo::getInReplyToUserId).orElse(null),
+            tweet.getQuotedStatusId(),
+            tweet.getCountryCode(),
+            tweet.getLang(),
+            location.map(TweetEntity.Location::getLatitude).orElse(null),
+            location.map(TweetEntity.Location::getLongitude).orElse(null),
+            tweet.getRawData().getRawData(),
+            tweet.getRawData().getCompressedRawData()
+        };
+        for (int i = 0; i < values.length; ++i) {
+            if (i > 0) {
+                out.write(',');
+            }
+            writeValue(out, values[i]);
+        }
+        out.write('\n');
+    }
+
+    /**
+     * Writes one CSV value. {@literal null} is written as an unquoted empty
+     * value, all text is quoted so that empty strings are kept. Binary data is
+     * written in the hex format of {@code bytea}.
+     *
+     * @param out The target
+     * @param value The value to write
+     * @throws IOException
+     */
+    static void writeValue(final Writer out, final Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Number) {
+            out.write(value.toString());
+            return;
+        }
+        if (value instanceof byte[]) {
+            out.write("\\x");
+            for (byte b : (byte[]) value) {
+                out.write(HEX_DIGITS[(b >> 4) & 0xF]);
+                out.write(HEX_DIGITS[b & 0xF]);
+            }
+            return;
+        }
+        final String text = value.toString();
+        out.write('"');
+        for (int i = 0; i < text.length(); ++i) {
+            final char c = text.charAt(i);
+            if (c == '"') {
+                out.write('"');
+            }
+            out.write(c);
+        }
+        out.write('"');
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import ac.simons.tweetarchive.config.TweetArchiveProperties;
+import static ac.simons.tweetarchive.db.tables.TweetTombstones.TWEET_TOMBSTONES;
+import static ac.simons.tweetarchive.db.tables.Tweets.TWEETS;
+import static ac.simons.tweetarchive.db.tables.TweetsRawData.TWEETS_RAW_DATA;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.search.jpa.FullTextEntityManager;
+import org.hibernate.search.jpa.Search;
+import org.jooq.DSLContext;
+import static org.jooq.impl.DSL.any;
+import static org.jooq.impl.DSL.currentTimestamp;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Deletes tweets. Deletions are recorded as tombstones and applied in
+ * batches by a background thread: One statement deletes the tweets of a
+ * batch, one purge removes them from the index. This way deleting thousands
+ * of tweets at once, for example after cleaning up an account, neither
+ * hammers the database nor the index.
+ * <br>
+ * Tombstones are kept after they have been applied, so that deleted tweets
+ * are not stored again, neither from the stream nor from an archive.
+ * Transactions storing tweets hold a shared advisory lock from checking the
+ * tombstones until they commit, a batch of tombstones is applied holding the
+ * lock exclusively. So a tweet is either deleted by the batch or its
+ * tombstone is seen by the transaction storing it.
+ */
+@Service
+@Slf4j
+public class TweetDeletionService {
+
+    private static final String INSERT_TOMBSTONE
+            = "INSERT INTO tweet_tombstones (id) VALUES (?) ON CONFLICT (id) DO NOTHING";
+
+    /**
+     * Key of the advisory lock between storing tweets and applying
+     * tombstones.
+     */
+    private static final long TOMBSTONES_LOCK = 0x746f6d6273746f6eL;
+
+    private final DSLContext create;
+
+    private final EntityManager entityManager;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TweetArchiveProperties.Deletions config;
+
+    private final CountDownLatch stopping = new CountDownLatch(1);
+
+    private final Thread applier;
+
+    /**
+     * Set when new tombstones have been recorded, initially set to apply
+     * tombstones left over from a previous run.
+     */
+    private final AtomicBoolean pending = new AtomicBoolean(true);
+
+    public TweetDeletionService(
+            final DSLContext create,
+            final EntityManager entityManager,
+            final ApplicationEventPublisher eventPublisher,
+            final TransactionTemplate transactionTemplate,
+            final TweetArchiveProperties properties
+    ) {
+        this.create = create;
+        this.entityManager = entityManager;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.config = properties.getDeletions();
+        this.applier = new Thread(this::run, "tombstone-applier");
+    }
+
+    @PostConstruct
+    public void start() {
+        if (this.config.isApplyInBackground()) {
+            this.applier.start();
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        this.stopping.countDown();
+        if (this.applier.isAlive()) {
+            this.applier.join();
+        }
+    }
+
+    /**
+     * Records the deletion of a tweet. The tweet is deleted with the next
+     * batch, which is usually applied within a second.
+     *
+     * @param id The id of the deleted tweet
+     */
+    public void delete(final long id) {
+        this.create.execute(INSERT_TOMBSTONE, id);
+        this.pending.set(true);
+    }
+
+    /**
+     * Must be called in the transaction storing the tweets, as it locks the
+     * tombstones for storing.
+     *
+     * @param ids Ids of tweets
+     * @return The ids of those tweets that have been deleted
+     * @see #lockForStoring()
+     */
+    public Set<Long> findDeletedIds(final Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new HashSet<>();
+        }
+        lockForStoring();
+        return new HashSet<>(this.create
+                .select(TWEET_TOMBSTONES.ID)
+                .from(TWEET_TOMBSTONES)
+                .where(TWEET_TOMBSTONES.ID.in(ids))
+                .fetch(TWEET_TOMBSTONES.ID));
+    }
+
+    /**
+     * Waits until tombstones currently being applied are committed and keeps
+     * further tombstones from being applied until the current transaction
+     * ends. Must be called in transactions storing tweets before they check
+     * the tombstones, otherwise a tombstone recorded and applied between the
+     * check and the commit would miss the stored tweet.
+     */
+    public void lockForStoring() {
+        this.create.fetch("SELECT pg_advisory_xact_lock_shared(?)", TOMBSTONES_LOCK);
+    }
+
+    /**
+     * Applies all recorded deletions, one transaction per batch.
+     *
+     * @return The number of applied tombstones
+     */
+    public int applyTombstones() {
+        int rv = 0;
+        int applied;
+        do {
+            applied = this.transactionTemplate.execute(status -> applyBatch());
+            rv += applied;
+        } while (applied == this.config.getBatchSize());
+        return rv;
+    }
+
+    private int applyBatch() {
+        // Waits for transactions that may store tweets of this batch
+        this.create.fetch("SELECT pg_advisory_xact_lock(?)", TOMBSTONES_LOCK);
+        final List<Long> ids = this.create
+                .select(TWEET_TOMBSTONES.ID)
+                .from(TWEET_TOMBSTONES)
+                .where(TWEET_TOMBSTONES.APPLIED_AT.isNull())
+                .orderBy(TWEET_TOMBSTONES.ID)
+                .limit(this.config.getBatchSize())
+                .forUpdate().skipLocked()
+                .fetch(TWEET_TOMBSTONES.ID);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        final Long[] idArray = ids.toArray(new Long[ids.size()]);
+        final List<Long> deletedIds = this.create
+                .deleteFrom(TWEETS)
+                .where(TWEETS.ID.eq(any(idArray)))
+                .returning(TWEETS.ID)
+                .fetch()
+                .getValues(TWEETS.ID);
+        this.create
+                .deleteFrom(TWEETS_RAW_DATA)
+                .where(TWEETS_RAW_DATA.ID.eq(any(idArray)))
+                .execute();
+        this.create
+                .update(TWEET_TOMBSTONES)
+                .set(TWEET_TOMBSTONES.APPLIED_AT, currentTimestamp())
+                .where(TWEET_TOMBSTONES.ID.eq(any(idArray)))
+                .execute();
+
+        // The tweets have been deleted behind Hibernates back
+        final FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(this.entityManager);
+        deletedIds.forEach(id -> fullTextEntityManager.purge(TweetEntity.class, id));
+        fullTextEntityManager.flushToIndexes();
+        deletedIds.forEach(id -> this.eventPublisher.publishEvent(new TweetDeletedEvent(id)));
+
+        log.info("Applied {} tombstones, deleted {} tweets", ids.size(), deletedIds.size());
+        return ids.size();
+    }
+
+    private void run() {
+        try {
+            while (!this.stopping.await(this.config.getApplyInterval(), TimeUnit.MILLISECONDS)) {
+                if (!this.pending.getAndSet(false)) {
+                    continue;
+                }
+                try {
+                    applyTombstones();
+                } catch (RuntimeException e) {
+                    log.warn("Could not apply tombstones, retrying in {}ms", this.config.getApplyInterval(), e);
+                    this.pending.set(true);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
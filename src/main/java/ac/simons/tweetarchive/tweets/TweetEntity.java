@@ -20,11 +20,15 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_EMPTY;
 import java.io.Serializable;
 import java.time.ZonedDateTime;
+import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Embeddable;
 import javax.persistence.Embedded;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.Id;
+import javax.persistence.OneToOne;
+import javax.persistence.PrimaryKeyJoinColumn;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 import lombok.AccessLevel;
@@ -43,14 +47,18 @@ import org.hibernate.search.annotations.AnalyzerDiscriminator;
 import org.hibernate.search.annotations.ClassBridge;
 import org.hibernate.search.annotations.ClassBridges;
 import org.hibernate.search.annotations.Field;
+import org.hibernate.search.annotations.FullTextFilterDef;
 import org.hibernate.search.annotations.Index;
 import org.hibernate.search.annotations.Indexed;
 import org.hibernate.search.annotations.IndexedEmbedded;
+import org.hibernate.search.annotations.NumericField;
 import org.hibernate.search.annotations.Parameter;
+import org.hibernate.search.annotations.SortableField;
 import org.hibernate.search.annotations.Spatial;
 import org.hibernate.search.annotations.Store;
 import org.hibernate.search.annotations.TokenFilterDef;
 import org.hibernate.search.annotations.TokenizerDef;
+import org.hibernate.search.filter.ShardSensitiveOnlyFilter;
 import org.hibernate.search.spatial.Coordinates;
 import org.hibernate.validator.constraints.NotBlank;
 
@@ -90,8 +98,14 @@ import org.hibernate.validator.constraints.NotBlank;
             name = "year",
             index = Index.YES, analyze = Analyze.NO, store = Store.NO,
             impl = TweetYearBridge.class
+    ),
+    @ClassBridge(
+            name = "facets",
+            index = Index.NO, analyze = Analyze.NO, store = Store.NO,
+            impl = TweetFacetsBridge.class
     )
 })
+@FullTextFilterDef(name = TweetYearShardIdentifierProvider.YEARS_FILTER, impl = ShardSensitiveOnlyFilter.class)
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @Getter
 @JsonInclude(NON_EMPTY)
@@ -173,9 +187,14 @@ public class TweetEntity implements Serializable {
     }
 
     /**
-     * Twitter status id.
+     * Twitter status id. Those ids are ordered by time, so they are also
+     * indexed as numeric, sortable field for ordering search results newest
+     * first.
      */
     @Id
+    @Field(name = "status_id", index = Index.YES, analyze = Analyze.NO, store = Store.NO)
+    @NumericField(forField = "status_id")
+    @SortableField(forField = "status_id")
     private long id;
 
     /**
@@ -201,11 +220,12 @@ public class TweetEntity implements Serializable {
 
     /**
      * The actual tweet with all entites (short urls, image urls etc.) resolved
-     * as plain url (not hyperlinked).
+     * as plain url (not hyperlinked). Stored in the index as well, so that
+     * {@link TweetProjection projections} don't need the database.
      */
     @Column(nullable = false)
     @NotBlank
-    @Field(index = Index.YES, analyze = Analyze.YES, store = Store.NO)
+    @Field(index = Index.YES, analyze = Analyze.YES, store = Store.YES)
     @AnalyzerDiscriminator(impl = TweetLanguageDiscriminator.class)
     private String content;
 
@@ -218,12 +238,15 @@ public class TweetEntity implements Serializable {
     private String source;
 
     /**
-     * The raw json data of the original tweet object.
+     * The raw json data of the original tweet object. Stored with the tweet
+     * but loaded only on access.
      */
-    @Column(name = "raw_data", nullable = false, columnDefinition = "jsonb")
-    @NotBlank
+    @OneToOne(fetch = FetchType.LAZY, optional = false, cascade = CascadeType.ALL)
+    @PrimaryKeyJoinColumn
+    @NotNull
+    @Getter(AccessLevel.PACKAGE)
     @JsonIgnore
-    private String rawData;
+    private TweetRawDataEntity rawData;
 
     /**
      * Facts used to reconstruct the replied tweet.
@@ -241,6 +264,14 @@ public class TweetEntity implements Serializable {
     @Setter
     private Long quotedStatusId;
 
+    /**
+     * Id of the first tweet of the conversation this tweet belongs to. That
+     * tweet is not necessarily part of the archive. Maintained by the
+     * database.
+     */
+    @Column(name = "conversation_id", insertable = false, updatable = false)
+    private Long conversationId;
+
     /**
      * Country code from the tweets place if available.
      */
@@ -273,6 +304,6 @@ public class TweetEntity implements Serializable {
         this.createdAt = createdAt;
         this.content = content;
         this.source = source;
-        this.rawData = rawData;
+        this.rawData = new TweetRawDataEntity(id, rawData);
     }
 }
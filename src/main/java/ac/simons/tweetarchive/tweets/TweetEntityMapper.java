@@ -0,0 +1,168 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import ac.simons.tweetarchive.tweets.TweetEntity.InReplyTo;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.ZoneId;
+import org.springframework.stereotype.Component;
+import twitter4j.GeoLocation;
+import twitter4j.Place;
+import twitter4j.Status;
+import twitter4j.URLEntity;
+
+/**
+ * Maps {@link Status statuses} to new, unsaved {@link TweetEntity tweet
+ * entities}. Every ingested tweet passes through here, so the content is
+ * rendered in one pass into a buffer of the exact size and the name of the
+ * client is parsed from the source anchor without regular expressions.
+ * <br>
+ * There are only a few different clients, their parsed names are cached by
+ * the complete source.
+ */
+@Component
+public final class TweetEntityMapper {
+
+    private static final ZoneId UTC = ZoneId.of("UTC");
+
+    private static final String RETWEET_PREFIX = "RT @";
+
+    private static final String RETWEET_SEPARATOR = ": ";
+
+    private static final String ANCHOR_START = "<a";
+
+    private static final String ANCHOR_END = "</a>";
+
+    private final Cache<String, String> sources = Caffeine.newBuilder()
+            .maximumSize(1024)
+            .build();
+
+    /**
+     * Creates a new tweet, the raw data is not encoded yet.
+     *
+     * @param status The status to map
+     * @param rawContent The raw json the status has been created from
+     * @return A new tweet entity
+     */
+    public TweetEntity toEntity(final Status status, final String rawContent) {
+        final TweetEntity tweet = new TweetEntity(
+                status.getId(),
+                status.getUser().getId(),
+                status.getUser().getScreenName(),
+                status.getCreatedAt().toInstant().atZone(UTC),
+                renderContent(status),
+                parseSource(status.getSource()),
+                rawContent
+        );
+        final Place place = status.getPlace();
+        tweet.setCountryCode(place == null ? null : place.getCountryCode());
+        if (status.getInReplyToStatusId() != -1L && status.getInReplyToUserId() != -1L && status.getInReplyToScreenName() != null) {
+            tweet.setInReplyTo(new InReplyTo(status.getInReplyToStatusId(), status.getInReplyToScreenName(), status.getInReplyToUserId()));
+        }
+        tweet.setLang(status.getLang());
+        final GeoLocation geoLocation = status.getGeoLocation();
+        tweet.setLocation(geoLocation == null ? null : new TweetEntity.Location(geoLocation.getLatitude(), geoLocation.getLongitude()));
+        // TODO Handle quoted tweets
+        return tweet;
+    }
+
+    /**
+     * Renders the text of a status with expanded urls. Retweets are rendered
+     * as {@code RT @user: } followed by the text of the retweeted status.
+     *
+     * @param status The status to render
+     * @return The content of the tweet
+     */
+    public String renderContent(final Status status) {
+        // TODO Handle quoted tweets
+        final Status workStatus = status.isRetweet() ? status.getRetweetedStatus() : status;
+        final String text = workStatus.getText();
+        final URLEntity[] urlEntities = workStatus.getURLEntities();
+        final String retweetedScreenName = status.isRetweet() ? workStatus.getUser().getScreenName() : null;
+
+        int length = text.length();
+        for (URLEntity urlEntity : urlEntities) {
+            length += urlEntity.getExpandedURL().length() - (urlEntity.getEnd() - urlEntity.getStart());
+        }
+        if (retweetedScreenName != null) {
+            length += RETWEET_PREFIX.length() + retweetedScreenName.length() + RETWEET_SEPARATOR.length();
+        }
+
+        final StringBuilder rv = new StringBuilder(Math.max(length, text.length()));
+        if (retweetedScreenName != null) {
+            rv.append(RETWEET_PREFIX).append(retweetedScreenName).append(RETWEET_SEPARATOR);
+        }
+        int pos = 0;
+        for (URLEntity urlEntity : urlEntities) {
+            rv.append(text, pos, urlEntity.getStart());
+            rv.append(urlEntity.getExpandedURL());
+            pos = urlEntity.getEnd();
+        }
+        if (pos <= text.length()) {
+            rv.append(text, pos, text.length());
+        }
+        return rv.toString();
+    }
+
+    /**
+     * Extracts the name of the client from the source of a status, which is
+     * an anchor like {@code <a href="...">Twitter for Mac</a>}.
+     *
+     * @param source The source of a status
+     * @return The name of the client or {@literal null} if the source is not
+     * an anchor
+     */
+    public String parseSource(final String source) {
+        if (source == null) {
+            return null;
+        }
+        return this.sources.get(source, TweetEntityMapper::parseAnchorText);
+    }
+
+    /**
+     * Returns the trimmed text between the end of the opening tag and the
+     * closing tag of an anchor that spans a single line.
+     */
+    static String parseAnchorText(final String source) {
+        int start = 0;
+        int end = source.length();
+        while (start < end && source.charAt(start) <= ' ') {
+            ++start;
+        }
+        while (end > start && source.charAt(end - 1) <= ' ') {
+            --end;
+        }
+        if (!source.startsWith(ANCHOR_START, start) || !source.startsWith(ANCHOR_END, end - ANCHOR_END.length())) {
+            return null;
+        }
+        for (int i = start; i < end; ++i) {
+            if (isLineTerminator(source.charAt(i))) {
+                return null;
+            }
+        }
+        final int endOfOpeningTag = source.indexOf('>', start + ANCHOR_START.length());
+        final int textEnd = end - ANCHOR_END.length();
+        if (endOfOpeningTag < 0 || endOfOpeningTag >= textEnd) {
+            return null;
+        }
+        return source.substring(endOfOpeningTag + 1, textEnd).trim();
+    }
+
+    private static boolean isLineTerminator(final char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import java.util.function.Function;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The properties of tweets that can be counted next to search hits. Their
+ * values are indexed as doc values by the {@link TweetFacetsBridge}.
+ */
+@RequiredArgsConstructor
+@Getter
+public enum TweetFacet {
+
+    YEAR("year", TweetYearBridge::yearOf),
+    LANG("lang", TweetEntity::getLang),
+    SOURCE("source", TweetEntity::getSource),
+    COUNTRY_CODE("country_code", TweetEntity::getCountryCode),
+    REPLY_TO("reply.to", tweet -> tweet.getInReplyTo() == null ? null : tweet.getInReplyTo().getInReplyToScreenName());
+
+    /**
+     * The name of the facet, same as the name of the corresponding indexed
+     * field.
+     */
+    private final String name;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final Function<TweetEntity, String> extractor;
+
+    /**
+     * @return The name of the doc values field containing the values of this
+     * facet
+     */
+    String getDocValuesField() {
+        return "facet." + this.name;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import java.util.Map;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The first page of a search result together with the counts of the values
+ * of all {@link TweetFacet facets} of all hits.
+ */
+@RequiredArgsConstructor
+@Getter
+public final class TweetFacetedSearchResult {
+
+    @JsonUnwrapped
+    private final TweetSearchResult<TweetEntity> result;
+
+    /**
+     * The most frequent values of each facet by facet name, ordered by their
+     * count.
+     */
+    private final Map<String, Map<String, Integer>> facets;
+}
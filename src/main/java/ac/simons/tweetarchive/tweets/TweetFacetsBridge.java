@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.util.BytesRef;
+import org.hibernate.search.bridge.FieldBridge;
+import org.hibernate.search.bridge.LuceneOptions;
+
+/**
+ * Adds the values of all {@link TweetFacet facets} as sorted doc values, so
+ * that they can be counted while collecting hits.
+ */
+public final class TweetFacetsBridge implements FieldBridge {
+
+    @Override
+    public void set(final String name, final Object value, final Document document, final LuceneOptions luceneOptions) {
+        final TweetEntity tweet = (TweetEntity) value;
+        for (TweetFacet facet : TweetFacet.values()) {
+            final String facetValue = facet.getExtractor().apply(tweet);
+            if (facetValue != null) {
+                document.add(new SortedDocValuesField(facet.getDocValuesField(), new BytesRef(facetValue)));
+            }
+        }
+    }
+}
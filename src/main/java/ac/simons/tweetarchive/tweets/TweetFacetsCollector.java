@@ -0,0 +1,169 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.FilterCollector;
+import org.apache.lucene.search.FilterLeafCollector;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopDocsCollector;
+
+/**
+ * Collects the top hits and counts the values of the requested facets of all
+ * hits in the same pass. Values are counted per segment by their ordinal and
+ * resolved only once per segment and distinct value.
+ * <br>
+ * One instance collects the segments of one slice. Several instances can be
+ * used with a {@link org.apache.lucene.search.CollectorManager} to search
+ * slices in parallel, their counts are merged with
+ * {@link #topCounts(java.util.Collection, int)}.
+ */
+final class TweetFacetsCollector extends FilterCollector {
+
+    private final TopDocsCollector<?> topDocsCollector;
+
+    private final TweetFacet[] facets;
+
+    private final Map<TweetFacet, Map<String, Integer>> counts = new EnumMap<>(TweetFacet.class);
+
+    /**
+     * The values of the current segment.
+     */
+    private SortedDocValues[] segmentValues;
+
+    /**
+     * The counts of the current segment by ordinal.
+     */
+    private int[][] segmentCounts;
+
+    /**
+     * @param topDocsCollector Collects the top hits
+     * @param facets The facets to count, may be empty
+     */
+    TweetFacetsCollector(final TopDocsCollector<?> topDocsCollector, final Set<TweetFacet> facets) {
+        super(topDocsCollector);
+        this.topDocsCollector = topDocsCollector;
+        this.facets = facets.toArray(new TweetFacet[facets.size()]);
+        for (TweetFacet facet : this.facets) {
+            this.counts.put(facet, new HashMap<>());
+        }
+    }
+
+    @Override
+    public LeafCollector getLeafCollector(final LeafReaderContext context) throws IOException {
+        final LeafCollector leafCollector = super.getLeafCollector(context);
+        if (this.facets.length == 0) {
+            return leafCollector;
+        }
+
+        addSegmentCounts();
+        final SortedDocValues[] values = new SortedDocValues[this.facets.length];
+        final int[][] ordinalCounts = new int[this.facets.length][];
+        for (int i = 0; i < this.facets.length; ++i) {
+            // Empty for segments indexed without facets
+            values[i] = DocValues.getSorted(context.reader(), this.facets[i].getDocValuesField());
+            ordinalCounts[i] = new int[values[i].getValueCount()];
+        }
+        this.segmentValues = values;
+        this.segmentCounts = ordinalCounts;
+
+        return new FilterLeafCollector(leafCollector) {
+            @Override
+            public void collect(final int doc) throws IOException {
+                super.collect(doc);
+                for (int i = 0; i < values.length; ++i) {
+                    final int ordinal = values[i].getOrd(doc);
+                    if (ordinal >= 0) {
+                        ++ordinalCounts[i][ordinal];
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * @return The top hits of all collected segments
+     */
+    TopDocs topDocs() {
+        return this.topDocsCollector.topDocs();
+    }
+
+    /**
+     * @return The counts of all values of all facets in the collected
+     * segments
+     */
+    Map<TweetFacet, Map<String, Integer>> getCounts() {
+        addSegmentCounts();
+        return this.counts;
+    }
+
+    private void addSegmentCounts() {
+        if (this.segmentValues == null) {
+            return;
+        }
+        for (int i = 0; i < this.facets.length; ++i) {
+            final Map<String, Integer> facetCounts = this.counts.get(this.facets[i]);
+            for (int ordinal = 0; ordinal < this.segmentCounts[i].length; ++ordinal) {
+                if (this.segmentCounts[i][ordinal] > 0) {
+                    facetCounts.merge(this.segmentValues[i].lookupOrd(ordinal).utf8ToString(), this.segmentCounts[i][ordinal], Integer::sum);
+                }
+            }
+        }
+        this.segmentValues = null;
+        this.segmentCounts = null;
+    }
+
+    /**
+     * Merges the counts of several collectors.
+     *
+     * @param collectors The collectors of all slices
+     * @param limit Maximum number of values per facet
+     * @return The most frequent values of each facet by the name of the facet,
+     * ordered by their count
+     */
+    static Map<String, Map<String, Integer>> topCounts(final Collection<TweetFacetsCollector> collectors, final int limit) {
+        final Map<TweetFacet, Map<String, Integer>> merged = new EnumMap<>(TweetFacet.class);
+        for (TweetFacetsCollector collector : collectors) {
+            collector.getCounts().forEach((facet, facetCounts) -> {
+                final Map<String, Integer> mergedCounts = merged.computeIfAbsent(facet, f -> new HashMap<>());
+                facetCounts.forEach((value, count) -> mergedCounts.merge(value, count, Integer::sum));
+            });
+        }
+
+        final Comparator<Map.Entry<String, Integer>> byCountDescending = Map.Entry.<String, Integer>comparingByValue().reversed();
+        final Map<String, Map<String, Integer>> rv = new LinkedHashMap<>();
+        merged.forEach((facet, facetCounts) -> {
+            final Map<String, Integer> topValues = new LinkedHashMap<>();
+            facetCounts.entrySet().stream()
+                    .sorted(byCountDescending.thenComparing(Map.Entry.comparingByKey()))
+                    .limit(limit)
+                    .forEachOrdered(entry -> topValues.put(entry.getKey(), entry.getValue()));
+            rv.put(facet.getName(), topValues);
+        });
+        return rv;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * One cell of a grid over a {@link BoundingBox}, containing the number of
+ * tweets located inside and their center.
+ */
+@RequiredArgsConstructor
+@Getter
+public final class TweetGeoGridCell {
+
+    private final double south;
+
+    private final double west;
+
+    private final double north;
+
+    private final double east;
+
+    private final long count;
+
+    /**
+     * Mean latitude of all tweets in this cell.
+     */
+    private final double latitude;
+
+    /**
+     * Mean longitude of all tweets in this cell.
+     */
+    private final double longitude;
+}
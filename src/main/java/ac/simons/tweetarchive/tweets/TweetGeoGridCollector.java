@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.util.Bits;
+import org.hibernate.search.spatial.impl.SpatialHelper;
+
+/**
+ * Counts hits by their location in the cells of a grid over a bounding box.
+ * Locations are read from the doc values Hibernate Search writes for
+ * {@link org.hibernate.search.annotations.Spatial} fields, hits without a
+ * location are ignored.
+ * <br>
+ * One instance collects the segments of one slice, the cells of all slices
+ * are merged with {@link #merge(java.util.Collection)}.
+ */
+final class TweetGeoGridCollector extends SimpleCollector {
+
+    /**
+     * Name of the spatial field of tweets.
+     */
+    static final String LOCATION_FIELD = "location";
+
+    static final String LATITUDE_FIELD = SpatialHelper.formatLatitude(LOCATION_FIELD);
+
+    static final String LONGITUDE_FIELD = SpatialHelper.formatLongitude(LOCATION_FIELD);
+
+    private final BoundingBox boundingBox;
+
+    private final int rows;
+
+    private final int columns;
+
+    private final long[] counts;
+
+    private final double[] latitudeSums;
+
+    /**
+     * Sums of the offsets from the western boundary, to average correctly in
+     * cells crossing the antimeridian.
+     */
+    private final double[] offsetSums;
+
+    private NumericDocValues latitudes;
+
+    private NumericDocValues longitudes;
+
+    private Bits docsWithLocation;
+
+    TweetGeoGridCollector(final BoundingBox boundingBox, final int rows, final int columns) {
+        this.boundingBox = boundingBox;
+        this.rows = rows;
+        this.columns = columns;
+        this.counts = new long[rows * columns];
+        this.latitudeSums = new double[rows * columns];
+        this.offsetSums = new double[rows * columns];
+    }
+
+    @Override
+    protected void doSetNextReader(final LeafReaderContext context) throws IOException {
+        this.latitudes = DocValues.getNumeric(context.reader(), LATITUDE_FIELD);
+        this.longitudes = DocValues.getNumeric(context.reader(), LONGITUDE_FIELD);
+        this.docsWithLocation = DocValues.getDocsWithField(context.reader(), LATITUDE_FIELD);
+    }
+
+    @Override
+    public void collect(final int doc) {
+        if (!this.docsWithLocation.get(doc)) {
+            return;
+        }
+        final double latitude = Double.longBitsToDouble(this.latitudes.get(doc));
+        final double offset = this.boundingBox.offsetOf(Double.longBitsToDouble(this.longitudes.get(doc)));
+        final int row = cellOf(latitude - this.boundingBox.getSouth(), this.boundingBox.getNorth() - this.boundingBox.getSouth(), this.rows);
+        final int column = cellOf(offset, this.boundingBox.getWidth(), this.columns);
+        final int cell = row * this.columns + column;
+        ++this.counts[cell];
+        this.latitudeSums[cell] += latitude;
+        this.offsetSums[cell] += offset;
+    }
+
+    @Override
+    public boolean needsScores() {
+        return false;
+    }
+
+    private static int cellOf(final double offset, final double length, final int numberOfCells) {
+        if (length <= 0.0) {
+            return 0;
+        }
+        return Math.max(0, Math.min(numberOfCells - 1, (int) (offset / length * numberOfCells)));
+    }
+
+    /**
+     * @param collectors The collectors of all slices, all over the same grid
+     * @return All cells containing at least one hit, from south west to north
+     * east
+     */
+    static List<TweetGeoGridCell> merge(final Collection<TweetGeoGridCollector> collectors) {
+        final List<TweetGeoGridCell> rv = new ArrayList<>();
+        if (collectors.isEmpty()) {
+            return rv;
+        }
+        final TweetGeoGridCollector first = collectors.iterator().next();
+        final BoundingBox boundingBox = first.boundingBox;
+        final double cellHeight = (boundingBox.getNorth() - boundingBox.getSouth()) / first.rows;
+        final double cellWidth = boundingBox.getWidth() / first.columns;
+        for (int cell = 0; cell < first.counts.length; ++cell) {
+            long count = 0;
+            double latitudeSum = 0.0;
+            double offsetSum = 0.0;
+            for (TweetGeoGridCollector collector : collectors) {
+                count += collector.counts[cell];
+                latitudeSum += collector.latitudeSums[cell];
+                offsetSum += collector.offsetSums[cell];
+            }
+            if (count == 0) {
+                continue;
+            }
+            final int row = cell / first.columns;
+            final int column = cell % first.columns;
+            rv.add(new TweetGeoGridCell(
+                    boundingBox.getSouth() + row * cellHeight,
+                    boundingBox.longitudeAt(column * cellWidth),
+                    boundingBox.getSouth() + (row + 1) * cellHeight,
+                    boundingBox.longitudeAt((column + 1) * cellWidth),
+                    count,
+                    latitudeSum / count,
+                    boundingBox.longitudeAt(offsetSum / count)
+            ));
+        }
+        return rv;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import ac.simons.tweetarchive.tweets.TweetIndexService.IndexStatus;
+import java.util.Arrays;
+import java.util.Collection;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes how far the full text index lags behind the database.
+ */
+@Component
+@RequiredArgsConstructor
+public final class TweetIndexMetrics implements PublicMetrics {
+
+    private final TweetIndexService tweetIndexService;
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        final IndexStatus status = this.tweetIndexService.getStatus();
+        return Arrays.asList(
+                new Metric<>("tweetarchive.index.tweets", status.getTweets()),
+                new Metric<>("tweetarchive.index.documents", status.getDocuments()),
+                new Metric<>("tweetarchive.index.lag", status.getLag())
+        );
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import ac.simons.tweetarchive.config.TweetArchiveProperties;
+import static ac.simons.tweetarchive.db.tables.Tweets.TWEETS;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.hibernate.search.SearchFactory;
+import org.hibernate.search.jpa.FullTextEntityManager;
+import org.hibernate.search.jpa.Search;
+import org.jooq.Cursor;
+import org.jooq.DSLContext;
+import org.jooq.Record1;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Keeps the full text index in sync with the database. With asynchronous
+ * indexing, index work that has been queued but not applied is lost on a
+ * crash. {@link #reconcile()} replays those changes from the database by
+ * merging the sorted ids of the index with the ids of all tweets.
+ * <br>
+ * After changes to the mapping (for example new analyzers), the index can be
+ * rebuilt with {@link #startRebuild()} while the application keeps running.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TweetIndexService {
+
+    /**
+     * Name of the document id field inside the index.
+     */
+    static final String ID_FIELD = "id";
+
+    private static final int INDEX_BATCH_SIZE = 500;
+
+    private final EntityManager entityManager;
+
+    private final DSLContext create;
+
+    private final TweetArchiveProperties properties;
+
+    private Future<?> rebuild;
+
+    private ReindexProgress rebuildProgress;
+
+    private volatile TweetCount tweetCount;
+
+    /**
+     * Compares the number of tweets in the database with the number of
+     * documents in the index.
+     */
+    @RequiredArgsConstructor
+    @Getter
+    public static final class IndexStatus {
+
+        private final long tweets;
+
+        /**
+         * Age of the tweet count in milliseconds, the documents are always
+         * counted live.
+         */
+        private final long tweetsAge;
+
+        private final long documents;
+
+        /**
+         * The tweet count may be older than the document count, tweets
+         * stored and indexed since then would give a negative lag, so it is
+         * never less than 0.
+         *
+         * @return Number of tweets not yet visible in the index
+         */
+        public long getLag() {
+            return Math.max(0, this.tweets - this.documents);
+        }
+    }
+
+    /**
+     * The number of tweets in the database and when they have been counted.
+     */
+    @RequiredArgsConstructor
+    private static final class TweetCount {
+
+        private final long value;
+
+        private final long countedAt;
+    }
+
+    /**
+     * Retrieves the status of the index. Counting the tweets scans the whole
+     * table, so the count is reused for
+     * {@code tweetarchive.index.status-max-age} milliseconds.
+     *
+     * @return The current status of the index
+     */
+    public IndexStatus getStatus() {
+        final SearchFactory searchFactory = Search.getFullTextEntityManager(this.entityManager).getSearchFactory();
+        final IndexReader indexReader = searchFactory.getIndexReaderAccessor().open(TweetYearShardIdentifierProvider.getIndexNames(searchFactory, null, null));
+        try {
+            final TweetCount counted = countTweets();
+            return new IndexStatus(counted.value, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - counted.countedAt), indexReader.numDocs());
+        } finally {
+            searchFactory.getIndexReaderAccessor().close(indexReader);
+        }
+    }
+
+    /**
+     * Adds the tweets with the given ids to the full text index.
+     *
+     * @param ids The ids of the tweets to index
+     */
+    @Transactional
+    public void index(final Collection<Long> ids) {
+        final FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(this.entityManager);
+        final List<Long> batch = new ArrayList<>(INDEX_BATCH_SIZE);
+        for (Long id : ids) {
+            batch.add(id);
+            if (batch.size() == INDEX_BATCH_SIZE) {
+                index(fullTextEntityManager, batch);
+                batch.clear();
+            }
+        }
+        index(fullTextEntityManager, batch);
+    }
+
+    /**
+     * Indexes all tweets that are missing from the index and removes documents
+     * of tweets that have been deleted.
+     *
+     * @return The number of changed documents
+     */
+    @Transactional
+    public int reconcile() {
+        final FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(this.entityManager);
+        final long[] indexedIds = findIndexedIds();
+        final List<Long> missingIds = new ArrayList<>(INDEX_BATCH_SIZE);
+        int missing = 0;
+        int deleted = 0;
+        int next = 0;
+        try (Cursor<Record1<Long>> cursor = this.create
+                .select(TWEETS.ID)
+                .from(TWEETS)
+                .orderBy(TWEETS.ID)
+                .fetchSize(this.properties.getIndex().getReindexFetchSize())
+                .fetchLazy()) {
+            for (Record1<Long> tweet : cursor) {
+                final long id = tweet.value1();
+                for (; next < indexedIds.length && indexedIds[next] < id; ++next) {
+                    fullTextEntityManager.purge(TweetEntity.class, indexedIds[next]);
+                    ++deleted;
+                }
+                if (next < indexedIds.length && indexedIds[next] == id) {
+                    ++next;
+                    continue;
+                }
+                missingIds.add(id);
+                ++missing;
+                if (missingIds.size() == INDEX_BATCH_SIZE) {
+                    index(fullTextEntityManager, missingIds);
+                    missingIds.clear();
+                }
+            }
+        }
+        index(fullTextEntityManager, missingIds);
+        for (; next < indexedIds.length; ++next) {
+            fullTextEntityManager.purge(TweetEntity.class, indexedIds[next]);
+            ++deleted;
+        }
+        fullTextEntityManager.flushToIndexes();
+
+        log.info("Reconciled index: {} tweets were missing, {} deleted tweets were still indexed", missing, deleted);
+        return missing + deleted;
+    }
+
+    /**
+     * Starts a complete rebuild of the index in the background unless a
+     * rebuild is already running. The index is purged first, searches return
+     * partial results until the rebuild completes.
+     *
+     * @return The progress of the running rebuild
+     */
+    public synchronized ReindexProgress startRebuild() {
+        if (this.rebuild != null && !this.rebuild.isDone()) {
+            return this.rebuildProgress;
+        }
+
+        final TweetArchiveProperties.Index config = this.properties.getIndex();
+        this.rebuildProgress = new ReindexProgress();
+        this.rebuild = Search.getFullTextEntityManager(this.entityManager)
+                .createIndexer(TweetEntity.class)
+                .threadsToLoadObjects(config.getReindexThreads())
+                .batchSizeToLoadObjects(config.getReindexBatchSize())
+                .idFetchSize(config.getReindexFetchSize())
+                .purgeAllOnStart(true)
+                .optimizeOnFinish(true)
+                .progressMonitor(this.rebuildProgress)
+                .start();
+        log.info("Started rebuilding the index with {} threads", config.getReindexThreads());
+        return this.rebuildProgress;
+    }
+
+    /**
+     * Rebuilds the index and waits for the rebuild to finish.
+     *
+     * @return The final progress
+     * @throws InterruptedException When interrupted while waiting
+     */
+    public ReindexProgress rebuild() throws InterruptedException {
+        final ReindexProgress rv;
+        final Future<?> running;
+        synchronized (this) {
+            rv = startRebuild();
+            running = this.rebuild;
+        }
+        try {
+            running.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not rebuild index", e.getCause());
+        }
+        return rv;
+    }
+
+    /**
+     * @return The progress of the running or last rebuild, if any
+     */
+    public synchronized Optional<ReindexProgress> getRebuildProgress() {
+        return Optional.ofNullable(this.rebuildProgress);
+    }
+
+    /**
+     * Reconciles the index on startup if configured.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void reconcileOnStartup() {
+        if (this.properties.getIndex().isReconcileOnStartup()) {
+            log.info("Reconciled {} documents", reconcile());
+        }
+    }
+
+    private TweetCount countTweets() {
+        final TweetCount cached = this.tweetCount;
+        final long now = System.nanoTime();
+        if (cached != null && now - cached.countedAt < TimeUnit.MILLISECONDS.toNanos(this.properties.getIndex().getStatusMaxAge())) {
+            return cached;
+        }
+        final TweetCount counted = new TweetCount(this.create.fetchCount(TWEETS), now);
+        this.tweetCount = counted;
+        return counted;
+    }
+
+    private void index(final FullTextEntityManager fullTextEntityManager, final List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        fullTextEntityManager
+                .createQuery("Select t from TweetEntity t where t.id in :ids", TweetEntity.class)
+                .setParameter("ids", ids)
+                .getResultList()
+                .forEach(fullTextEntityManager::index);
+        fullTextEntityManager.flushToIndexes();
+        fullTextEntityManager.clear();
+    }
+
+    /**
+     * Reads the ids of all live documents from the index terms. The terms are
+     * ordered as strings, so the ids are sorted afterwards.
+     *
+     * @return The ids of all indexed tweets in ascending order
+     */
+    long[] findIndexedIds() {
+        final SearchFactory searchFactory = Search.getFullTextEntityManager(this.entityManager).getSearchFactory();
+        final IndexReader indexReader = searchFactory.getIndexReaderAccessor().open(TweetYearShardIdentifierProvider.getIndexNames(searchFactory, null, null));
+        try {
+            long[] rv = new long[indexReader.numDocs()];
+            int cnt = 0;
+            final Terms terms = MultiFields.getTerms(indexReader, ID_FIELD);
+            if (terms == null) {
+                return new long[0];
+            }
+            final Bits liveDocs = MultiFields.getLiveDocs(indexReader);
+            final TermsEnum termsEnum = terms.iterator();
+            PostingsEnum postings = null;
+            BytesRef term;
+            while ((term = termsEnum.next()) != null) {
+                postings = termsEnum.postings(postings, PostingsEnum.NONE);
+                int doc;
+                while ((doc = postings.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+                    if (liveDocs == null || liveDocs.get(doc)) {
+                        if (cnt == rv.length) {
+                            rv = Arrays.copyOf(rv, Math.max(16, 2 * cnt));
+                        }
+                        rv[cnt++] = Long.parseLong(term.utf8ToString());
+                        break;
+                    }
+                }
+            }
+            rv = Arrays.copyOf(rv, cnt);
+            Arrays.sort(rv);
+            return rv;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            searchFactory.getIndexReaderAccessor().close(indexReader);
+        }
+    }
+}
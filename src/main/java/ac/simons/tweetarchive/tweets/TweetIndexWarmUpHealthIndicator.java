@@ -0,0 +1,46 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the application as out of service (HTTP 503 on {@code /health})
+ * until the index has been warmed, so that load balancers hold traffic back
+ * after a deployment.
+ */
+@Component
+@RequiredArgsConstructor
+public final class TweetIndexWarmUpHealthIndicator extends AbstractHealthIndicator {
+
+    private final TweetIndexWarmUpService tweetIndexWarmUpService;
+
+    @Override
+    protected void doHealthCheck(final Health.Builder builder) {
+        if (this.tweetIndexWarmUpService.isReady()) {
+            builder.up();
+        } else {
+            builder.outOfService();
+        }
+        builder
+                .withDetail("state", this.tweetIndexWarmUpService.getState())
+                .withDetail("warmedTerms", this.tweetIndexWarmUpService.getWarmedTerms())
+                .withDetail("duration", this.tweetIndexWarmUpService.getDuration());
+    }
+}
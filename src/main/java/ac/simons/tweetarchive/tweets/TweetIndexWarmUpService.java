@@ -0,0 +1,170 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import ac.simons.tweetarchive.config.TweetArchiveProperties;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.hibernate.search.SearchFactory;
+import org.hibernate.search.indexes.IndexReaderAccessor;
+import org.hibernate.search.jpa.Search;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Warms the full text index after startup: The shared index readers of all
+ * shards are opened and the postings of the fields used by searches as well
+ * as the values used for sorting are read once, so that they are in the page
+ * cache before the first real query arrives.
+ * <br>
+ * {@link TweetIndexWarmUpHealthIndicator} reports the application as out of
+ * service until warming has finished.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TweetIndexWarmUpService {
+
+    /**
+     * Fields searched by {@code /search} and {@code /extendedSearch}.
+     */
+    private static final List<String> WARMED_FIELDS = Arrays.asList("content", "screenName", "created_at");
+
+    /**
+     * States of the warm up.
+     */
+    public enum State {
+        PENDING, WARMING, WARM, FAILED
+    }
+
+    private final EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TweetArchiveProperties properties;
+
+    @Getter
+    private volatile State state = State.PENDING;
+
+    /**
+     * Number of terms whose postings have been read.
+     */
+    @Getter
+    private volatile long warmedTerms;
+
+    /**
+     * Duration of the warm up in milliseconds.
+     */
+    @Getter
+    private volatile long duration;
+
+    /**
+     * @return {@literal true} if searches are served at full speed or warming
+     * is disabled or has failed
+     */
+    public boolean isReady() {
+        return !this.properties.getIndex().isWarmUpOnStartup() || this.state == State.WARM || this.state == State.FAILED;
+    }
+
+    /**
+     * Warms the index in the background, if configured.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpOnStartup() {
+        if (!this.properties.getIndex().isWarmUpOnStartup()) {
+            return;
+        }
+        final Thread warmer = new Thread(this::warmUp, "index-warm-up");
+        warmer.setDaemon(true);
+        warmer.start();
+    }
+
+    /**
+     * Reads the postings of all {@link #WARMED_FIELDS} and the sort values of
+     * all shards.
+     */
+    public void warmUp() {
+        this.state = State.WARMING;
+        final long start = System.nanoTime();
+        try {
+            this.warmedTerms = this.transactionTemplate.execute(status -> {
+                final SearchFactory searchFactory = Search.getFullTextEntityManager(this.entityManager).getSearchFactory();
+                final IndexReaderAccessor indexReaderAccessor = searchFactory.getIndexReaderAccessor();
+                final IndexReader indexReader = indexReaderAccessor.open(TweetYearShardIdentifierProvider.getIndexNames(searchFactory, null, null));
+                try {
+                    long rv = 0;
+                    for (LeafReaderContext leaf : indexReader.leaves()) {
+                        rv += warmUp(leaf.reader());
+                    }
+                    return rv;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    indexReaderAccessor.close(indexReader);
+                }
+            });
+            this.duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            this.state = State.WARM;
+            log.info("Warmed {} terms of the index in {}ms", this.warmedTerms, this.duration);
+        } catch (RuntimeException e) {
+            this.state = State.FAILED;
+            log.error("Could not warm the index", e);
+        }
+    }
+
+    private static long warmUp(final LeafReader reader) throws IOException {
+        long rv = 0;
+        PostingsEnum postings = null;
+        for (String field : WARMED_FIELDS) {
+            final Terms terms = reader.terms(field);
+            if (terms == null) {
+                continue;
+            }
+            final TermsEnum termsEnum = terms.iterator();
+            while (termsEnum.next() != null) {
+                postings = termsEnum.postings(postings, PostingsEnum.FREQS);
+                while (postings.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+                    postings.freq();
+                }
+                ++rv;
+            }
+        }
+
+        final NumericDocValues statusIds = DocValues.getNumeric(reader, TweetRepositoryImpl.STATUS_ID_FIELD);
+        for (int doc = 0; doc < reader.maxDoc(); ++doc) {
+            statusIds.get(doc);
+        }
+        return rv;
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * An append only journal of the raw json of statuses. The journal is split
+ * into segment files named after the position of their first entry. Each
+ * entry consists of its length, a CRC32 checksum and the UTF-8 encoded json.
+ * <br>
+ * Appending only writes to the page cache, {@link #sync()} forces all
+ * appended entries to disk and is meant to be called once per batch. The
+ * position up to which entries have been stored is kept in a separate
+ * checkpoint file, segments completely before that position are deleted.
+ * <br>
+ * Entries may be appended by any thread, {@link #commit(long)} and
+ * {@link #read(long, long, EntryConsumer)} are meant to be called by one
+ * thread. The directory is locked while the journal is open, so only one
+ * process at a time can use it.
+ */
+@Slf4j
+public final class TweetJournal implements Closeable {
+
+    /**
+     * Receives the entries of the journal.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+
+        /**
+         * @param rawContent The raw json of a status
+         * @param endPosition The position directly after the entry
+         */
+        void accept(String rawContent, long endPosition);
+    }
+
+    private static final String SEGMENT_PREFIX = "journal-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private static final String LOCK_FILE = "lock";
+
+    /**
+     * Length and checksum of an entry.
+     */
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * Way larger than any status, longer entries can only be garbage.
+     */
+    private static final int MAX_ENTRY_SIZE = 16 * 1024 * 1024;
+
+    private final Path directory;
+
+    private final long segmentSize;
+
+    /**
+     * Start positions of all segments.
+     */
+    private final NavigableSet<Long> segments = new ConcurrentSkipListSet<>();
+
+    /**
+     * Held while the journal is open, so that no other process replays or
+     * deletes its segments.
+     */
+    private final FileChannel lock;
+
+    private final FileChannel checkpoint;
+
+    private FileChannel currentSegment;
+
+    private long currentSegmentStart;
+
+    private volatile long endPosition;
+
+    private volatile long committedPosition;
+
+    /**
+     * Opens or creates a journal. An incomplete entry at the end of the
+     * journal, written while crashing, is removed.
+     *
+     * @param directory Directory containing the segments
+     * @param segmentSize Size in bytes after which a new segment is started
+     * @throws IOException If the journal cannot be opened or is already in
+     * use by another process
+     */
+    public TweetJournal(final File directory, final long segmentSize) throws IOException {
+        this.directory = directory.toPath();
+        this.segmentSize = segmentSize;
+
+        Files.createDirectories(this.directory);
+        this.lock = FileChannel.open(this.directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (!tryLock(this.lock)) {
+                throw new IOException("The journal in " + directory + " is in use by another process");
+            }
+
+            try (final DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+                for (Path file : files) {
+                    final String name = file.getFileName().toString();
+                    this.segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                }
+            }
+
+            this.checkpoint = FileChannel.open(this.directory.resolve(CHECKPOINT_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+            if (this.checkpoint.read(buffer, 0) == Long.BYTES) {
+                buffer.flip();
+                this.committedPosition = buffer.getLong();
+            }
+
+            if (this.segments.isEmpty()) {
+                this.currentSegmentStart = this.committedPosition;
+                this.currentSegment = openSegment(this.currentSegmentStart);
+            } else {
+                this.currentSegmentStart = this.segments.last();
+                final long validLength = read(this.currentSegmentStart, 0, Long.MAX_VALUE, (rawContent, end) -> {
+                }) - this.currentSegmentStart;
+                this.currentSegment = FileChannel.open(getSegmentFile(this.currentSegmentStart), StandardOpenOption.WRITE);
+                if (this.currentSegment.size() > validLength) {
+                    log.warn("Removing {} bytes of an incomplete entry from the journal", this.currentSegment.size() - validLength);
+                    this.currentSegment.truncate(validLength);
+                }
+                this.currentSegment.position(validLength);
+            }
+            this.endPosition = this.currentSegmentStart + this.currentSegment.position();
+            this.committedPosition = Math.max(this.segments.first(), Math.min(this.committedPosition, this.endPosition));
+        } catch (IOException | RuntimeException e) {
+            this.lock.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends the raw json of one status.
+     *
+     * @param rawContent The raw json
+     * @return The position directly after the new entry
+     * @throws IOException If the entry cannot be written
+     */
+    public synchronized long append(final String rawContent) throws IOException {
+        if (this.endPosition - this.currentSegmentStart >= this.segmentSize) {
+            this.currentSegment.force(false);
+            this.currentSegment.close();
+            this.currentSegmentStart = this.endPosition;
+            this.currentSegment = openSegment(this.currentSegmentStart);
+        }
+
+        final byte[] content = rawContent.getBytes(StandardCharsets.UTF_8);
+        final CRC32 checksum = new CRC32();
+        checksum.update(content);
+        final ByteBuffer entry = ByteBuffer.allocate(HEADER_SIZE + content.length);
+        entry.putInt(content.length).putInt((int) checksum.getValue()).put(content).flip();
+        while (entry.hasRemaining()) {
+            this.currentSegment.write(entry);
+        }
+        this.endPosition += entry.limit();
+        return this.endPosition;
+    }
+
+    /**
+     * Forces all appended entries to disk.
+     *
+     * @throws IOException If the entries cannot be written
+     */
+    public void sync() throws IOException {
+        final FileChannel segment;
+        synchronized (this) {
+            segment = this.currentSegment;
+        }
+        try {
+            segment.force(false);
+        } catch (ClosedChannelException e) {
+            // The segment has been forced before it was closed
+        }
+    }
+
+    /**
+     * Marks all entries before the given position as stored. Segments
+     * containing only stored entries are deleted.
+     *
+     * @param position The end position of the last stored entry
+     * @throws IOException If the checkpoint cannot be written
+     */
+    public void commit(final long position) throws IOException {
+        if (position <= this.committedPosition) {
+            return;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        buffer.putLong(position).flip();
+        this.checkpoint.write(buffer, 0);
+        this.checkpoint.force(false);
+        this.committedPosition = position;
+
+        final Long first = this.segments.floor(position);
+        for (Long segment : this.segments.headSet(first, false)) {
+            Files.deleteIfExists(getSegmentFile(segment));
+            this.segments.remove(segment);
+        }
+    }
+
+    /**
+     * Reads all complete entries between two positions.
+     *
+     * @param from Start position, usually the {@link #getCommittedPosition()}
+     * @param to End position, usually the {@link #getEndPosition()}
+     * @param consumer Receives the entries
+     * @throws IOException If the journal cannot be read
+     */
+    public void read(final long from, final long to, final EntryConsumer consumer) throws IOException {
+        final Long first = this.segments.floor(from);
+        for (Long segment : this.segments.tailSet(first == null ? from : first, true)) {
+            if (segment >= to) {
+                break;
+            }
+            read(segment, from, to, consumer);
+        }
+    }
+
+    /**
+     * Reads the entries of one segment.
+     *
+     * @return The position after the last complete entry
+     */
+    private long read(final long segment, final long from, final long to, final EntryConsumer consumer) throws IOException {
+        long position = segment;
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(getSegmentFile(segment))))) {
+            while (position < to) {
+                final int length = in.readInt();
+                final int checksum = in.readInt();
+                if (length < 0 || length > MAX_ENTRY_SIZE) {
+                    break;
+                }
+                final byte[] content = new byte[length];
+                in.readFully(content);
+                final CRC32 actualChecksum = new CRC32();
+                actualChecksum.update(content);
+                if ((int) actualChecksum.getValue() != checksum) {
+                    break;
+                }
+                position += HEADER_SIZE + length;
+                if (position > from) {
+                    consumer.accept(new String(content, StandardCharsets.UTF_8), position);
+                }
+            }
+        } catch (EOFException e) {
+            // Incomplete entry at the end of the segment
+        }
+        return position;
+    }
+
+    public long getEndPosition() {
+        return this.endPosition;
+    }
+
+    public long getCommittedPosition() {
+        return this.committedPosition;
+    }
+
+    /**
+     * @return Number of bytes in the journal that haven't been stored
+     */
+    public long getPendingBytes() {
+        return this.endPosition - this.committedPosition;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            this.currentSegment.force(false);
+            this.currentSegment.close();
+        } finally {
+            try {
+                this.checkpoint.close();
+            } finally {
+                // Releases the lock as well
+                this.lock.close();
+            }
+        }
+    }
+
+    private static boolean tryLock(final FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock() != null;
+        } catch (OverlappingFileLockException e) {
+            // Already locked by this process
+            return false;
+        }
+    }
+
+    private Path getSegmentFile(final long start) {
+        return this.directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, start, SEGMENT_SUFFIX));
+    }
+
+    private FileChannel openSegment(final long start) throws IOException {
+        this.segments.add(start);
+        return FileChannel.open(getSegmentFile(start), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import java.time.Clock;
+import java.time.Year;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jooq.DSLContext;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Maintains the yearly partitions of the tweets table. Tweets of years
+ * without a partition are stored in a default partition and moved into the
+ * partition of their year once it is created.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TweetPartitionService {
+
+    private final DSLContext create;
+
+    /**
+     * Makes sure that the partitions for the current and the next year exist,
+     * so that new tweets don't end up in the default partition.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void createUpcomingPartitions() {
+        final int currentYear = Year.now(Clock.systemUTC()).getValue();
+        createPartition(currentYear);
+        createPartition(currentYear + 1);
+    }
+
+    /**
+     * Creates the partition for the given year if it doesn't exist yet.
+     *
+     * @param year The year to create a partition for
+     */
+    @Transactional
+    public void createPartition(final int year) {
+        log.debug("Making sure a partition for {} exists", year);
+        this.create.execute("SELECT tweets_create_partition(?)", year);
+    }
+}
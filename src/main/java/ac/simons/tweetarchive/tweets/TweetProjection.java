@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_EMPTY;
+import java.time.ZonedDateTime;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.search.engine.ProjectionConstants;
+
+/**
+ * A lightweight representation of a tweet, built solely from the fields
+ * stored in the index, without touching the database.
+ */
+@RequiredArgsConstructor
+@Getter
+@JsonInclude(NON_EMPTY)
+public final class TweetProjection {
+
+    /**
+     * The projected index fields, in the order of the constructor parameters.
+     */
+    static final String[] FIELDS = {
+        ProjectionConstants.ID, "screenName", "created_at", "content", "source", "country_code", "reply.to"
+    };
+
+    private final long id;
+
+    private final String screenName;
+
+    private final ZonedDateTime createdAt;
+
+    private final String content;
+
+    private final String source;
+
+    private final String countryCode;
+
+    /**
+     * Screen name of the author of the tweet this is a reply to.
+     */
+    private final String inReplyToScreenName;
+
+    /**
+     * Creates a tweet projection from a projection of {@link #FIELDS}.
+     *
+     * @param row The projected values
+     * @return A new projection
+     */
+    static TweetProjection of(final Object[] row) {
+        return new TweetProjection(
+                (Long) row[0],
+                (String) row[1],
+                (ZonedDateTime) row[2],
+                (String) row[3],
+                (String) row[4],
+                (String) row[5],
+                (String) row[6]
+        );
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import ac.simons.tweetarchive.config.TweetArchiveProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.Query;
+import org.hibernate.search.SearchFactory;
+import org.hibernate.search.query.dsl.QueryBuilder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Compiles keywords and queries entered by the user into Lucene queries.
+ * Compiled queries only depend on the analyzers, not on the content of the
+ * index, and are cached by their normalized form.
+ * <br>
+ * Cached queries are shared between threads and must not be modified,
+ * combine them with other queries instead. The query builder and the scoped
+ * analyzer of tweets are retrieved only once, query parsers are not thread
+ * safe and kept per thread.
+ */
+@Component
+public final class TweetQueryCompiler {
+
+    /**
+     * Terms without a field are searched in the content of tweets.
+     */
+    private static final String DEFAULT_FIELD = "content";
+
+    private final Cache<String, Query> keywordQueries;
+
+    private final Cache<String, Query> parsedQueries;
+
+    private final ThreadLocal<QueryParser> queryParsers = new ThreadLocal<>();
+
+    private volatile QueryBuilder queryBuilder;
+
+    private volatile Analyzer analyzer;
+
+    public TweetQueryCompiler(final TweetArchiveProperties properties) {
+        final long maximumSize = properties.getSearch().getQueryCacheSize();
+        this.keywordQueries = Caffeine.newBuilder().maximumSize(maximumSize).recordStats().build();
+        this.parsedQueries = Caffeine.newBuilder().maximumSize(maximumSize).recordStats().build();
+    }
+
+    /**
+     * @param searchFactory The search factory
+     * @return A query builder for tweets, which can be shared between threads
+     */
+    public QueryBuilder getQueryBuilder(final SearchFactory searchFactory) {
+        QueryBuilder rv = this.queryBuilder;
+        if (rv == null) {
+            rv = searchFactory.buildQueryBuilder().forEntity(TweetEntity.class).get();
+            this.queryBuilder = rv;
+        }
+        return rv;
+    }
+
+    /**
+     * @param searchFactory The search factory
+     * @param keywords Keywords separated by blanks
+     * @return A query matching the keywords in the content of tweets
+     */
+    public Query compileKeywords(final SearchFactory searchFactory, final String keywords) {
+        return this.keywordQueries.get(TweetSearchCache.normalizeKeywords(keywords),
+                key -> getQueryBuilder(searchFactory).keyword().onFields(DEFAULT_FIELD).matching(keywords).createQuery());
+    }
+
+    /**
+     * @param searchFactory The search factory
+     * @param query A query in the classic Lucene query syntax, leading
+     * wildcards are not allowed
+     * @return The parsed query
+     * @throws InvalidQueryException If the query cannot be parsed, those are
+     * not cached
+     */
+    public Query compileQuery(final SearchFactory searchFactory, final String query) {
+        return this.parsedQueries.get(TweetSearchCache.normalizeQuery(query), key -> parse(searchFactory, query));
+    }
+
+    /**
+     * @return Hits and misses of the cache of keyword queries
+     */
+    public CacheStats getKeywordQueryStats() {
+        return this.keywordQueries.stats();
+    }
+
+    /**
+     * @return Hits and misses of the cache of parsed queries
+     */
+    public CacheStats getParsedQueryStats() {
+        return this.parsedQueries.stats();
+    }
+
+    private Query parse(final SearchFactory searchFactory, final String query) {
+        QueryParser queryParser = this.queryParsers.get();
+        if (queryParser == null) {
+            queryParser = new QueryParser(DEFAULT_FIELD, getAnalyzer(searchFactory));
+            this.queryParsers.set(queryParser);
+        }
+        try {
+            return queryParser.parse(query);
+        } catch (ParseException e) {
+            throw new InvalidQueryException(query, e);
+        }
+    }
+
+    private Analyzer getAnalyzer(final SearchFactory searchFactory) {
+        Analyzer rv = this.analyzer;
+        if (rv == null) {
+            rv = searchFactory.getAnalyzer(TweetEntity.class);
+            this.analyzer = rv;
+        }
+        return rv;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import java.io.Serializable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * The raw json data of the original tweet object. Stored apart from the
+ * {@link TweetEntity} with the same id, so that it is only loaded when
+ * explicitly needed.
+ * <br>
+ * The data is either stored as {@code jsonb} or compressed, use
+ * {@link RawDataCodec#decode(ac.simons.tweetarchive.tweets.TweetRawDataEntity)}
+ * to read it.
+ */
+@Entity
+@Table(name = "tweets_raw_data")
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Getter
+public class TweetRawDataEntity implements Serializable {
+
+    private static final long serialVersionUID = -2305924447113738095L;
+
+    @Id
+    private long id;
+
+    /**
+     * The uncompressed data, {@literal null} if compressed.
+     */
+    @Column(name = "raw_data", columnDefinition = "jsonb")
+    private String rawData;
+
+    /**
+     * A zstd frame containing the data.
+     */
+    @Column(name = "compressed_raw_data")
+    private byte[] compressedRawData;
+
+    public TweetRawDataEntity(final long id, final String rawData) {
+        this.id = id;
+        this.rawData = rawData;
+    }
+
+    /**
+     * Replaces the uncompressed data.
+     *
+     * @param compressed A zstd frame containing the data
+     */
+    void compress(final byte[] compressed) {
+        this.compressedRawData = compressed;
+        this.rawData = null;
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import java.util.function.Consumer;
+
+/**
+ * Bulk access to the raw data.
+ */
+public interface TweetRawDataRepositoryExt {
+
+    /**
+     * Reads the raw data of all tweets in the order of their ids without
+     * keeping them in memory.
+     *
+     * @param consumer Consumer for the raw json data of each tweet
+     */
+    void exportAll(final Consumer<String> consumer);
+}
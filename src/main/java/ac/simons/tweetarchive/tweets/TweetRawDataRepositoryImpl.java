@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import static ac.simons.tweetarchive.db.tables.TweetsRawData.TWEETS_RAW_DATA;
+import java.util.function.Consumer;
+import lombok.RequiredArgsConstructor;
+import org.jooq.Cursor;
+import org.jooq.DSLContext;
+import org.jooq.Record2;
+import org.springframework.transaction.annotation.Transactional;
+
+@RequiredArgsConstructor
+public class TweetRawDataRepositoryImpl implements TweetRawDataRepositoryExt {
+
+    /**
+     * Number of rows fetched together, a fetch size is only honoured inside a
+     * transaction.
+     */
+    private static final int EXPORT_FETCH_SIZE = 1000;
+
+    private final DSLContext create;
+
+    private final RawDataCodec rawDataCodec;
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportAll(final Consumer<String> consumer) {
+        try (Cursor<Record2<String, byte[]>> cursor = this.create
+                .select(TWEETS_RAW_DATA.RAW_DATA.cast(String.class), TWEETS_RAW_DATA.COMPRESSED_RAW_DATA)
+                .from(TWEETS_RAW_DATA)
+                .orderBy(TWEETS_RAW_DATA.ID)
+                .fetchSize(EXPORT_FETCH_SIZE)
+                .fetchLazy()) {
+            cursor.forEach(rawData -> consumer.accept(this.rawDataCodec.decode(rawData.value1(), rawData.value2())));
+        }
+    }
+}
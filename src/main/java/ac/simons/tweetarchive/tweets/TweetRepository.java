@@ -15,8 +15,12 @@
  */
 package ac.simons.tweetarchive.tweets;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
 
 /**
  * @author Michael J. Simons, 2016-09-05
@@ -27,5 +31,21 @@ public interface TweetRepository extends Repository<TweetEntity, Long>, TweetRep
 
     TweetEntity save(final TweetEntity tweet);
 
-    long deleteById(final long id);
+    /**
+     * Checks which of the given ids have already been stored.
+     *
+     * @param ids The ids to check
+     * @return The ids of tweets that already exist
+     */
+    @Query("Select t.id from TweetEntity t where t.id in :ids")
+    List<Long> findExistingIds(@Param("ids") final Collection<Long> ids);
+
+    /**
+     * Loads the given tweets.
+     *
+     * @param ids The ids of the tweets to load
+     * @return The tweets ordered by creation date
+     */
+    @Query("Select t from TweetEntity t where t.id in :ids order by t.createdAt")
+    List<TweetEntity> findAllByIds(@Param("ids") final Collection<Long> ids);
 }
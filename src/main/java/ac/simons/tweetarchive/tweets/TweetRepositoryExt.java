@@ -17,6 +17,7 @@ package ac.simons.tweetarchive.tweets;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * The part of the tweet repository that is not covered by Spring Data JPA.
@@ -32,23 +33,154 @@ public interface TweetRepositoryExt {
      * @param keywords The kewords to search, separate by blanks
      * @param from Optional date range (start)
      * @param to Optional date range (end)
+     * @param paging The page to retrieve
      * @return
      */
-    List<TweetEntity> searchByKeyword(final String keywords, final LocalDate from, final LocalDate to);
+    TweetSearchResult<TweetEntity> searchByKeyword(final String keywords, final LocalDate from, final LocalDate to, final Paging paging);
 
     /**
      * Parses the query into a lucene query and handles it to the index.
      *
      * @param query The query to parse. Leading wildcards are not allowed
+     * @param paging The page to retrieve
      * @return
      */
-    List<TweetEntity> searchByQuery(final String query);
+    TweetSearchResult<TweetEntity> searchByQuery(final String query, final Paging paging);
 
     /**
-     * Retrieves the hierarchy of the tweet with the given id.
+     * Same as {@link #searchByKeyword(java.lang.String, java.time.LocalDate, java.time.LocalDate, ac.simons.tweetarchive.tweets.Paging)},
+     * but also counts the values of all {@link TweetFacet facets} of all hits
+     * while searching.
      *
-     * @param id The id of the tweet whose hierarchy should be retrieved
-     * @return A list of tweets
+     * @param keywords The kewords to search, separate by blanks
+     * @param from Optional date range (start)
+     * @param to Optional date range (end)
+     * @param paging The page to retrieve
+     * @param facetLimit Maximum number of values returned per facet
+     * @return
+     */
+    TweetFacetedSearchResult searchWithFacetsByKeyword(final String keywords, final LocalDate from, final LocalDate to, final Paging paging, final int facetLimit);
+
+    /**
+     * Faceted variant of {@link #searchByQuery(java.lang.String, ac.simons.tweetarchive.tweets.Paging)}.
+     *
+     * @param query The query to parse. Leading wildcards are not allowed
+     * @param paging The page to retrieve
+     * @param facetLimit Maximum number of values returned per facet
+     * @return
+     */
+    TweetFacetedSearchResult searchWithFacetsByQuery(final String query, final Paging paging, final int facetLimit);
+
+    /**
+     * Searches tweets located within the given radius around a point. The
+     * tweets are ordered by their distance, nearest first.
+     *
+     * @param latitude Latitude of the center
+     * @param longitude Longitude of the center
+     * @param radius Radius in kilometers
+     * @param keywords Optional keywords, separated by blanks
+     * @param from Optional date range (start)
+     * @param to Optional date range (end)
+     * @param paging The page to retrieve, only offsets are supported
+     * @return
+     */
+    TweetSearchResult<TweetEntity> searchNear(final double latitude, final double longitude, final double radius, final String keywords, final LocalDate from, final LocalDate to, final Paging paging);
+
+    /**
+     * Searches tweets located inside the given bounding box.
+     *
+     * @param boundingBox The area to search
+     * @param keywords Optional keywords, separated by blanks
+     * @param from Optional date range (start)
+     * @param to Optional date range (end)
+     * @param paging The page to retrieve
+     * @return
+     */
+    TweetSearchResult<TweetEntity> searchWithin(final BoundingBox boundingBox, final String keywords, final LocalDate from, final LocalDate to, final Paging paging);
+
+    /**
+     * Divides the bounding box into a grid and counts the tweets inside each
+     * cell.
+     *
+     * @param boundingBox The area to search
+     * @param rows Number of rows of the grid
+     * @param columns Number of columns of the grid
+     * @param keywords Optional keywords, separated by blanks
+     * @param from Optional date range (start)
+     * @param to Optional date range (end)
+     * @return All cells containing at least one tweet
+     */
+    List<TweetGeoGridCell> countWithin(final BoundingBox boundingBox, final int rows, final int columns, final String keywords, final LocalDate from, final LocalDate to);
+
+    /**
+     * Same as {@link #searchByKeyword(java.lang.String, java.time.LocalDate, java.time.LocalDate, ac.simons.tweetarchive.tweets.Paging)},
+     * but returns projections read from the index without hitting the
+     * database.
+     *
+     * @param keywords The kewords to search, separate by blanks
+     * @param from Optional date range (start)
+     * @param to Optional date range (end)
+     * @param paging The page to retrieve
+     * @return
+     */
+    TweetSearchResult<TweetProjection> searchProjectionsByKeyword(final String keywords, final LocalDate from, final LocalDate to, final Paging paging);
+
+    /**
+     * Projection variant of {@link #searchByQuery(java.lang.String, ac.simons.tweetarchive.tweets.Paging)}.
+     *
+     * @param query The query to parse. Leading wildcards are not allowed
+     * @param paging The page to retrieve
+     * @return
+     */
+    TweetSearchResult<TweetProjection> searchProjectionsByQuery(final String query, final Paging paging);
+
+    /**
+     * Same as {@link #searchByKeyword(java.lang.String, java.time.LocalDate, java.time.LocalDate, ac.simons.tweetarchive.tweets.Paging)},
+     * but hands all hits ordered by relevance to the consumer as they are
+     * loaded from the database, without keeping them in memory.
+     *
+     * @param keywords The kewords to search, separate by blanks
+     * @param from Optional date range (start)
+     * @param to Optional date range (end)
+     * @param consumer Consumer for the hits
+     */
+    void streamByKeyword(final String keywords, final LocalDate from, final LocalDate to, final Consumer<TweetEntity> consumer);
+
+    /**
+     * Streaming variant of {@link #searchByQuery(java.lang.String, ac.simons.tweetarchive.tweets.Paging)}.
+     *
+     * @param query The query to parse. Leading wildcards are not allowed
+     * @param consumer Consumer for the hits
+     */
+    void streamByQuery(final String query, final Consumer<TweetEntity> consumer);
+
+    /**
+     * Checks whether the query can be parsed, before its hits are streamed
+     * and the response has already been committed.
+     *
+     * @param query The query to parse. Leading wildcards are not allowed
+     * @throws InvalidQueryException If the query cannot be parsed
+     */
+    void validateQuery(final String query);
+
+    /**
+     * Persists all given tweets, which must not exist yet. The inserts are
+     * batched by the JDBC driver, in contrast to {@code save}, no select is
+     * issued for the tweets.
+     *
+     * @param tweets The new tweets to persist
+     */
+    void persistAll(final List<TweetEntity> tweets);
+
+    /**
+     * Retrieves the conversation of the tweet with the given id: All tweets it
+     * replies to up to the start of the conversation, the tweet itself and all
+     * replies to it.
+     *
+     * @param id The id of the tweet whose conversation should be retrieved
+     * @param maxDepth Optional maximum number of levels of replies
+     * @return The tweets ordered by creation date, empty if there's no such
+     * tweet
      */
-    List<TweetEntity> getTweetHierarchy(final long id);
+    List<TweetEntity> getConversation(final long id, final Integer maxDepth);
 }
@@ -16,28 +16,69 @@
 package ac.simons.tweetarchive.tweets;
 
 import static ac.simons.tweetarchive.db.tables.Tweets.TWEETS;
+import ac.simons.tweetarchive.db.tables.Tweets;
+import ac.simons.tweetarchive.tweets.TweetSearchCache.Kind;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.lucene.queryparser.classic.ParseException;
-import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.hibernate.Criteria;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.search.FullTextSession;
+import org.hibernate.search.filter.FullTextFilter;
+import org.hibernate.search.indexes.IndexReaderAccessor;
 import org.hibernate.search.jpa.FullTextEntityManager;
+import org.hibernate.search.jpa.FullTextQuery;
 import org.hibernate.search.jpa.Search;
 import org.hibernate.search.query.dsl.BooleanJunction;
 import org.hibernate.search.query.dsl.QueryBuilder;
+import org.hibernate.search.query.dsl.Unit;
+import org.hibernate.search.spatial.DistanceSortField;
+import org.jooq.Condition;
 import org.jooq.DSLContext;
+import org.jooq.Field;
 import org.jooq.Record;
 import org.jooq.SelectQuery;
 import org.jooq.conf.ParamType;
+import static org.jooq.impl.DSL.any;
+import static org.jooq.impl.DSL.array;
 import static org.jooq.impl.DSL.field;
-import static org.jooq.impl.DSL.name;
-import static org.jooq.impl.DSL.select;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -51,28 +92,240 @@ public class TweetRepositoryImpl implements TweetRepositoryExt {
 
     private static final ZoneId UTC = ZoneId.of("UTC");
 
+    /**
+     * The numeric and sortable representation of the status id.
+     */
+    static final String STATUS_ID_FIELD = "status_id";
+
+    private static final Sort NEWEST_FIRST = new Sort(new SortField(STATUS_ID_FIELD, SortField.Type.LONG, true));
+
+    /**
+     * Number of tweets loaded together when streaming results.
+     */
+    private static final int STREAM_FETCH_SIZE = 100;
+
+    private static final Set<String> ID_FIELDS = Collections.singleton(TweetIndexService.ID_FIELD);
+
     private final EntityManager entityManager;
 
     private final DSLContext create;
 
+    private final TweetSearchCache searchCache;
+
+    private final ThreadPoolTaskExecutor shardSearchExecutor;
+
+    private final TweetQueryCompiler queryCompiler;
+
     @Override
     @Transactional(readOnly = true)
-    public List<TweetEntity> searchByKeyword(final String keywords, final LocalDate from, final LocalDate to) {
+    public TweetSearchResult<TweetEntity> searchByKeyword(final String keywords, final LocalDate from, final LocalDate to, final Paging paging) {
         // Must be retrieved inside a transaction to take part of
         final FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(entityManager);
+        return load(this.searchCache.get(Kind.KEYWORD, TweetSearchCache.normalizeKeywords(keywords), from, to, paging, currentIndexVersion(fullTextEntityManager),
+                () -> searchIds(fullTextEntityManager, createKeywordQuery(fullTextEntityManager, keywords, from, to), from, to, paging, null)), from, to);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public TweetSearchResult<TweetEntity> searchByQuery(final String query, final Paging paging) {
+        final FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(entityManager);
+        return load(this.searchCache.get(Kind.QUERY, TweetSearchCache.normalizeQuery(query), null, null, paging, currentIndexVersion(fullTextEntityManager),
+                () -> searchIds(fullTextEntityManager, this.queryCompiler.compileQuery(fullTextEntityManager.getSearchFactory(), query), null, null, paging, null)), null, null);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public TweetFacetedSearchResult searchWithFacetsByKeyword(final String keywords, final LocalDate from, final LocalDate to, final Paging paging, final int facetLimit) {
+        final FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(entityManager);
+        return searchWithFacets(fullTextEntityManager, createKeywordQuery(fullTextEntityManager, keywords, from, to), from, to, paging, facetLimit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public TweetFacetedSearchResult searchWithFacetsByQuery(final String query, final Paging paging, final int facetLimit) {
+        final FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(entityManager);
+        return searchWithFacets(fullTextEntityManager, this.queryCompiler.compileQuery(fullTextEntityManager.getSearchFactory(), query), null, null, paging, facetLimit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public TweetSearchResult<TweetEntity> searchNear(final double latitude, final double longitude, final double radius, final String keywords, final LocalDate from, final LocalDate to, final Paging paging) {
+        final FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(entityManager);
+        final String cacheKey = String.format(Locale.ROOT, "%f %f %f %s", latitude, longitude, radius, TweetSearchCache.normalizeKeywords(Optional.ofNullable(keywords).orElse("")));
+        return load(this.searchCache.get(Kind.NEAR, cacheKey, from, to, paging, currentIndexVersion(fullTextEntityManager), () -> {
+            final org.apache.lucene.search.Query query = createSpatialQuery(fullTextEntityManager, createRadiusQuery(fullTextEntityManager, latitude, longitude, radius), keywords, from, to);
+            final Sort nearestFirst = new Sort(new DistanceSortField(latitude, longitude, TweetGeoGridCollector.LOCATION_FIELD));
+            return searchIds(fullTextEntityManager, query, from, to, paging, nearestFirst);
+        }), from, to);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public TweetSearchResult<TweetEntity> searchWithin(final BoundingBox boundingBox, final String keywords, final LocalDate from, final LocalDate to, final Paging paging) {
+        final FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(entityManager);
+        final String cacheKey = String.format(Locale.ROOT, "%f %f %f %f %s", boundingBox.getSouth(), boundingBox.getWest(), boundingBox.getNorth(), boundingBox.getEast(),
+                TweetSearchCache.normalizeKeywords(Optional.ofNullable(keywords).orElse("")));
+        return load(this.searchCache.get(Kind.WITHIN, cacheKey, from, to, paging, currentIndexVersion(fullTextEntityManager),
+                () -> searchIds(fullTextEntityManager, createSpatialQuery(fullTextEntityManager, createBoundingBoxQuery(boundingBox), keywords, from, to), from, to, paging, null)), from, to);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TweetGeoGridCell> countWithin(final BoundingBox boundingBox, final int rows, final int columns, final String keywords, final LocalDate from, final LocalDate to) {
+        final FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(entityManager);
+        final String[] shards = TweetYearShardIdentifierProvider.getIndexNames(fullTextEntityManager.getSearchFactory(), yearOf(from), yearOf(to));
+        if (shards.length == 0) {
+            return new ArrayList<>();
+        }
+
+        final org.apache.lucene.search.Query query = createSpatialQuery(fullTextEntityManager, createBoundingBoxQuery(boundingBox), keywords, from, to);
+        final IndexReaderAccessor indexReaderAccessor = fullTextEntityManager.getSearchFactory().getIndexReaderAccessor();
+        final IndexReader indexReader = indexReaderAccessor.open(shards);
+        try {
+            return new ShardedIndexSearcher(indexReader, this.shardSearchExecutor.getThreadPoolExecutor()).search(query, new CollectorManager<TweetGeoGridCollector, List<TweetGeoGridCell>>() {
+                @Override
+                public TweetGeoGridCollector newCollector() {
+                    return new TweetGeoGridCollector(boundingBox, rows, columns);
+                }
+
+                @Override
+                public List<TweetGeoGridCell> reduce(final Collection<TweetGeoGridCollector> collectors) {
+                    return TweetGeoGridCollector.merge(collectors);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            indexReaderAccessor.close(indexReader);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public TweetSearchResult<TweetProjection> searchProjectionsByKeyword(final String keywords, final LocalDate from, final LocalDate to, final Paging paging) {
+        final FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(entityManager);
+        return this.searchCache.get(Kind.KEYWORD_PROJECTIONS, TweetSearchCache.normalizeKeywords(keywords), from, to, paging, currentIndexVersion(fullTextEntityManager),
+                () -> searchProjections(fullTextEntityManager, createKeywordQuery(fullTextEntityManager, keywords, from, to), from, to, paging));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public TweetSearchResult<TweetProjection> searchProjectionsByQuery(final String query, final Paging paging) {
+        final FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(entityManager);
+        return this.searchCache.get(Kind.QUERY_PROJECTIONS, TweetSearchCache.normalizeQuery(query), null, null, paging, currentIndexVersion(fullTextEntityManager),
+                () -> searchProjections(fullTextEntityManager, this.queryCompiler.compileQuery(fullTextEntityManager.getSearchFactory(), query), null, null, paging));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamByKeyword(final String keywords, final LocalDate from, final LocalDate to, final Consumer<TweetEntity> consumer) {
+        final FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(entityManager);
+        stream(createKeywordQuery(fullTextEntityManager, keywords, from, to), from, to, consumer);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamByQuery(final String query, final Consumer<TweetEntity> consumer) {
+        final FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(entityManager);
+        stream(this.queryCompiler.compileQuery(fullTextEntityManager.getSearchFactory(), query), null, null, consumer);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void validateQuery(final String query) {
+        final FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(entityManager);
+        this.queryCompiler.compileQuery(fullTextEntityManager.getSearchFactory(), query);
+    }
+
+    /**
+     * @param fullTextEntityManager The current entity manager
+     * @return The version of the index searches are executed against
+     * @see TweetSearchCache#versionOf(org.apache.lucene.index.IndexReader)
+     */
+    private static long currentIndexVersion(final FullTextEntityManager fullTextEntityManager) {
+        final IndexReaderAccessor indexReaderAccessor = fullTextEntityManager.getSearchFactory().getIndexReaderAccessor();
+        final IndexReader indexReader = indexReaderAccessor.open(TweetYearShardIdentifierProvider.getIndexNames(fullTextEntityManager.getSearchFactory(), null, null));
+        try {
+            return TweetSearchCache.versionOf(indexReader);
+        } finally {
+            indexReaderAccessor.close(indexReader);
+        }
+    }
+
+    private org.apache.lucene.search.Query createKeywordQuery(final FullTextEntityManager fullTextEntityManager, final String keywords, final LocalDate from, final LocalDate to) {
+        final org.apache.lucene.search.Query keywordQuery = this.queryCompiler.compileKeywords(fullTextEntityManager.getSearchFactory(), keywords);
+        return restrictToDateRange(fullTextEntityManager, keywordQuery, from, to);
+    }
+
+    /**
+     * @param fullTextEntityManager The current entity manager
+     * @param spatialQuery A query selecting tweets by their location
+     * @param keywords Optional keywords
+     * @param from Optional date range (start)
+     * @param to Optional date range (end)
+     * @return The spatial query, restricted by keywords and dates
+     */
+    private org.apache.lucene.search.Query createSpatialQuery(final FullTextEntityManager fullTextEntityManager, final org.apache.lucene.search.Query spatialQuery, final String keywords, final LocalDate from, final LocalDate to) {
+        org.apache.lucene.search.Query rv = spatialQuery;
+        if (keywords != null && !keywords.trim().isEmpty()) {
+            rv = this.queryCompiler.getQueryBuilder(fullTextEntityManager.getSearchFactory()).bool()
+                    .must(spatialQuery)
+                    .must(this.queryCompiler.compileKeywords(fullTextEntityManager.getSearchFactory(), keywords))
+                    .createQuery();
+        }
+        return restrictToDateRange(fullTextEntityManager, rv, from, to);
+    }
+
+    /**
+     * Tweets within the given radius are selected by Hibernate Search's
+     * spatial query, which checks the distance of all tweets inside the
+     * enclosing box.
+     *
+     * @param fullTextEntityManager The current entity manager
+     * @param latitude Latitude of the center
+     * @param longitude Longitude of the center
+     * @param radius Radius in kilometers
+     * @return A query for all tweets within the radius
+     */
+    private org.apache.lucene.search.Query createRadiusQuery(final FullTextEntityManager fullTextEntityManager, final double latitude, final double longitude, final double radius) {
+        return this.queryCompiler.getQueryBuilder(fullTextEntityManager.getSearchFactory()).spatial()
+                .onField(TweetGeoGridCollector.LOCATION_FIELD)
+                .within(radius, Unit.KM)
+                .ofLatitude(latitude)
+                .andLongitude(longitude)
+                .createQuery();
+    }
 
-        // Prepare a search query builder
-        final QueryBuilder queryBuilder = fullTextEntityManager.getSearchFactory().buildQueryBuilder().forEntity(TweetEntity.class).get();
+    /**
+     * Hibernate Search has no query for bounding boxes, but indexes latitude
+     * and longitude as numeric fields.
+     *
+     * @param boundingBox The area to search
+     * @return A query for all tweets inside the box
+     */
+    private static org.apache.lucene.search.Query createBoundingBoxQuery(final BoundingBox boundingBox) {
+        final BooleanQuery.Builder rv = new BooleanQuery.Builder()
+                .add(NumericRangeQuery.newDoubleRange(TweetGeoGridCollector.LATITUDE_FIELD, boundingBox.getSouth(), boundingBox.getNorth(), true, true), Occur.MUST);
+        if (boundingBox.crossesAntimeridian()) {
+            rv.add(new BooleanQuery.Builder()
+                    .add(NumericRangeQuery.newDoubleRange(TweetGeoGridCollector.LONGITUDE_FIELD, boundingBox.getWest(), 180.0, true, true), Occur.SHOULD)
+                    .add(NumericRangeQuery.newDoubleRange(TweetGeoGridCollector.LONGITUDE_FIELD, -180.0, boundingBox.getEast(), true, true), Occur.SHOULD)
+                    .build(), Occur.MUST);
+        } else {
+            rv.add(NumericRangeQuery.newDoubleRange(TweetGeoGridCollector.LONGITUDE_FIELD, boundingBox.getWest(), boundingBox.getEast(), true, true), Occur.MUST);
+        }
+        return new ConstantScoreQuery(rv.build());
+    }
+
+    private org.apache.lucene.search.Query restrictToDateRange(final FullTextEntityManager fullTextEntityManager, final org.apache.lucene.search.Query query, final LocalDate from, final LocalDate to) {
+        if (from == null && to == null) {
+            return query;
+        }
 
-        // This is a boolean junction... I'll add at least a keyword query
-        final BooleanJunction<BooleanJunction> outer = queryBuilder.bool();
-        outer.must(
-                queryBuilder
-                .keyword()
-                .onFields("content")
-                .matching(keywords)
-                .createQuery()
-        );
+        // The query may be shared, the date range is added in a new boolean junction
+        final QueryBuilder queryBuilder = this.queryCompiler.getQueryBuilder(fullTextEntityManager.getSearchFactory());
+        final BooleanJunction<?> outer = queryBuilder.bool();
+        outer.must(query);
 
         // And then 2 range queries if from and to are not null
         Optional.ofNullable(from)
@@ -83,56 +336,316 @@ public class TweetRepositoryImpl implements TweetRepositoryExt {
                 .map(f -> f.plusDays(1).atStartOfDay(UTC)) // Same here, but a day later
                 .map(f -> queryBuilder.range().onField("created_at").below(f).excludeLimit().createQuery()) // which i exclude
                 .ifPresent(q -> outer.must(q));
-        return fullTextEntityManager.createFullTextQuery(outer.createQuery(), TweetEntity.class).getResultList();
+        return outer.createQuery();
     }
 
-    @Override
-    @Transactional(readOnly = true)
-    public List<TweetEntity> searchByQuery(final String query) {
-        final FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(entityManager);
-        List<TweetEntity> rv;
+    /**
+     * Hits are loaded from the database by their ids. Restricting the load to
+     * the searched date range as well lets PostgreSQL skip the partitions of
+     * all other years.
+     *
+     * @param from Optional lower bound
+     * @param to Optional upper bound (inclusive)
+     * @return Criteria for loading the hits, empty if no range is given
+     */
+    private Optional<Criteria> createLoadingCriteria(final LocalDate from, final LocalDate to) {
+        if (from == null && to == null) {
+            return Optional.empty();
+        }
+        final Criteria criteria = this.entityManager.unwrap(Session.class).createCriteria(TweetEntity.class);
+        Optional.ofNullable(from)
+                .map(f -> f.atStartOfDay(UTC))
+                .ifPresent(f -> criteria.add(Restrictions.ge("createdAt", f)));
+        Optional.ofNullable(to)
+                .map(f -> f.plusDays(1).atStartOfDay(UTC))
+                .ifPresent(f -> criteria.add(Restrictions.lt("createdAt", f)));
+        return Optional.of(criteria);
+    }
+
+    /**
+     * Searches the shards of the given years in parallel and retrieves the
+     * ids of the tweets of the requested page.
+     *
+     * @param fullTextEntityManager The current entity manager
+     * @param query The query to execute
+     * @param from Optional lower bound of the query
+     * @param to Optional upper bound of the query (inclusive)
+     * @param paging The requested page
+     * @param sort Optional sort, overriding the order of the paging
+     * @return The page of ids
+     */
+    private TweetSearchResult<Long> searchIds(final FullTextEntityManager fullTextEntityManager, final org.apache.lucene.search.Query query, final LocalDate from, final LocalDate to, final Paging paging, final Sort sort) {
+        return searchIds(fullTextEntityManager, query, from, to, paging, sort, 0, facetCounts -> { });
+    }
+
+    /**
+     * Searches the shards of the given years in parallel and loads the tweets
+     * of the requested page. The values of all facets of all hits are counted
+     * in the same pass.
+     *
+     * @param fullTextEntityManager The current entity manager
+     * @param query The query to execute
+     * @param from Optional lower bound of the query
+     * @param to Optional upper bound of the query (inclusive)
+     * @param paging The requested page
+     * @param facetLimit Maximum number of values per facet
+     * @return The page of tweets and the facets
+     */
+    private TweetFacetedSearchResult searchWithFacets(final FullTextEntityManager fullTextEntityManager, final org.apache.lucene.search.Query query, final LocalDate from, final LocalDate to, final Paging paging, final int facetLimit) {
+        final List<Map<String, Map<String, Integer>>> facets = new ArrayList<>(1);
+        final TweetSearchResult<Long> ids = searchIds(fullTextEntityManager, query, from, to, paging, null, facetLimit, facets::add);
+        return new TweetFacetedSearchResult(load(ids, from, to), facets.isEmpty() ? Collections.emptyMap() : facets.get(0));
+    }
+
+    /**
+     * Searches the shards of the given years in parallel and retrieves the
+     * ids of the tweets of the requested page. The values of all facets of
+     * all hits are counted in the same pass.
+     *
+     * @param fullTextEntityManager The current entity manager
+     * @param query The query to execute
+     * @param from Optional lower bound of the query
+     * @param to Optional upper bound of the query (inclusive)
+     * @param paging The requested page
+     * @param sort Optional sort, overriding the order of the paging
+     * @param facetLimit Maximum number of values per facet, {@literal 0}
+     * disables the counting
+     * @param facetCountsConsumer Receives the facets if there have been any
+     * hits
+     * @return The page of ids
+     */
+    private TweetSearchResult<Long> searchIds(
+            final FullTextEntityManager fullTextEntityManager, final org.apache.lucene.search.Query query, final LocalDate from, final LocalDate to, final Paging paging, final Sort sort,
+            final int facetLimit, final Consumer<Map<String, Map<String, Integer>>> facetCountsConsumer
+    ) {
+        final String[] shards = TweetYearShardIdentifierProvider.getIndexNames(fullTextEntityManager.getSearchFactory(), yearOf(from), yearOf(to));
+        if (shards.length == 0) {
+            return new TweetSearchResult<>(new ArrayList<>(), 0, null);
+        }
+
+        final int firstResult = paging.getSearchAfter() == null ? paging.getFirstResult() : 0;
+        final org.apache.lucene.search.Query effectiveQuery = applySearchAfter(fullTextEntityManager, query, paging);
+        final Set<TweetFacet> facets = facetLimit > 0 ? EnumSet.allOf(TweetFacet.class) : EnumSet.noneOf(TweetFacet.class);
+        final Sort effectiveSort = sort == null && paging.getOrder() == Paging.Order.NEWEST ? NEWEST_FIRST : sort;
+        final List<Long> ids = new ArrayList<>();
+        final int resultSize;
+        final IndexReaderAccessor indexReaderAccessor = fullTextEntityManager.getSearchFactory().getIndexReaderAccessor();
+        final IndexReader indexReader = indexReaderAccessor.open(shards);
+        try {
+            final IndexSearcher indexSearcher = new ShardedIndexSearcher(indexReader, this.shardSearchExecutor.getThreadPoolExecutor());
+            final int numHits = Math.max(1, Math.min(indexReader.maxDoc(), firstResult + paging.getMaxResults()));
+            // One collector per shard, each collecting its top hits and counting facets
+            final Collection<TweetFacetsCollector> collectors = indexSearcher.search(effectiveQuery, new CollectorManager<TweetFacetsCollector, Collection<TweetFacetsCollector>>() {
+                @Override
+                public TweetFacetsCollector newCollector() throws IOException {
+                    return new TweetFacetsCollector(effectiveSort != null ? TopFieldCollector.create(effectiveSort, numHits, true, false, false) : TopScoreDocCollector.create(numHits), facets);
+                }
+
+                @Override
+                public Collection<TweetFacetsCollector> reduce(final Collection<TweetFacetsCollector> sliceCollectors) {
+                    return sliceCollectors;
+                }
+            });
+            final TopDocs topDocs;
+            if (effectiveSort != null) {
+                topDocs = TopDocs.merge(effectiveSort, numHits, collectors.stream().map(collector -> (TopFieldDocs) collector.topDocs()).toArray(TopFieldDocs[]::new));
+            } else {
+                topDocs = TopDocs.merge(numHits, collectors.stream().map(TweetFacetsCollector::topDocs).toArray(TopDocs[]::new));
+            }
+            for (int i = firstResult; i < topDocs.scoreDocs.length; ++i) {
+                ids.add(Long.valueOf(indexSearcher.doc(topDocs.scoreDocs[i].doc, ID_FIELDS).get(TweetIndexService.ID_FIELD)));
+            }
+            resultSize = topDocs.totalHits;
+            facetCountsConsumer.accept(TweetFacetsCollector.topCounts(collectors, facetLimit));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            indexReaderAccessor.close(indexReader);
+        }
+        return toResult(Collections.unmodifiableList(ids), resultSize, paging, Long::longValue);
+    }
+
+    /**
+     * Loads the tweets of a page of ids. Hits are cached as ids, so that each
+     * request gets its own managed entities.
+     *
+     * @param ids The page of ids
+     * @param from Optional lower bound of the creation date of those tweets
+     * @param to Optional upper bound of the creation date of those tweets
+     * @return The page of tweets still stored in the database
+     */
+    private TweetSearchResult<TweetEntity> load(final TweetSearchResult<Long> ids, final LocalDate from, final LocalDate to) {
+        return new TweetSearchResult<>(load(ids.getTweets(), from, to), ids.getTotalHits(), ids.getSearchAfter());
+    }
+
+    /**
+     * Loads tweets in the order of the given ids.
+     *
+     * @param ids The ids of the tweets to load
+     * @param from Optional lower bound of the creation date of those tweets
+     * @param to Optional upper bound of the creation date of those tweets
+     * @return The tweets still stored in the database
+     */
+    private List<TweetEntity> load(final List<Long> ids, final LocalDate from, final LocalDate to) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        final Criteria criteria = createLoadingCriteria(from, to)
+                .orElseGet(() -> this.entityManager.unwrap(Session.class).createCriteria(TweetEntity.class))
+                .add(Restrictions.in("id", ids));
+        final Map<Long, TweetEntity> tweets = ((List<?>) criteria.list()).stream()
+                .map(TweetEntity.class::cast)
+                .collect(toMap(TweetEntity::getId, Function.identity()));
+        return ids.stream().map(tweets::get).filter(Objects::nonNull).collect(toList());
+    }
+
+    private TweetSearchResult<TweetProjection> searchProjections(final FullTextEntityManager fullTextEntityManager, final org.apache.lucene.search.Query query, final LocalDate from, final LocalDate to, final Paging paging) {
+        // Only stored fields are projected, so no entity is loaded
+        final FullTextQuery fullTextQuery = createPagedQuery(fullTextEntityManager, query, paging)
+                .setProjection(TweetProjection.FIELDS);
+        restrictToShards(fullTextQuery::enableFullTextFilter, from, to);
+        final List<TweetProjection> projections = ((List<?>) fullTextQuery.getResultList()).stream()
+                .map(Object[].class::cast)
+                .map(TweetProjection::of)
+                .collect(toList());
+        return toResult(projections, fullTextQuery.getResultSize(), paging, TweetProjection::getId);
+    }
+
+    /**
+     * Keyset paging: Restricts the query to tweets older than the last one of
+     * the previous page, if any.
+     *
+     * @param fullTextEntityManager The current entity manager
+     * @param query The original query
+     * @param paging The requested page
+     * @return The query to execute
+     */
+    private org.apache.lucene.search.Query applySearchAfter(final FullTextEntityManager fullTextEntityManager, final org.apache.lucene.search.Query query, final Paging paging) {
+        if (paging.getSearchAfter() == null) {
+            return query;
+        }
+        final QueryBuilder queryBuilder = this.queryCompiler.getQueryBuilder(fullTextEntityManager.getSearchFactory());
+        return queryBuilder.bool()
+                .must(query)
+                .must(queryBuilder.range().onField(STATUS_ID_FIELD).below(paging.getSearchAfter()).excludeLimit().createQuery())
+                .createQuery();
+    }
+
+    private FullTextQuery createPagedQuery(final FullTextEntityManager fullTextEntityManager, final org.apache.lucene.search.Query query, final Paging paging) {
+        final FullTextQuery fullTextQuery = fullTextEntityManager.createFullTextQuery(applySearchAfter(fullTextEntityManager, query, paging), TweetEntity.class);
+        fullTextQuery.setMaxResults(paging.getMaxResults());
+        if (paging.getOrder() == Paging.Order.NEWEST) {
+            fullTextQuery.setSort(NEWEST_FIRST);
+        }
+        if (paging.getSearchAfter() == null) {
+            fullTextQuery.setFirstResult(paging.getFirstResult());
+        }
+        return fullTextQuery;
+    }
+
+    /**
+     * Restricts a full text query to the shards of the years between from
+     * and to.
+     *
+     * @param filterEnabler Enables a filter of the query
+     * @param from Optional lower bound
+     * @param to Optional upper bound
+     */
+    private static void restrictToShards(final Function<String, FullTextFilter> filterEnabler, final LocalDate from, final LocalDate to) {
+        if (from != null || to != null) {
+            filterEnabler.apply(TweetYearShardIdentifierProvider.YEARS_FILTER)
+                    .setParameter(TweetYearShardIdentifierProvider.FROM_YEAR_PARAMETER, yearOf(from))
+                    .setParameter(TweetYearShardIdentifierProvider.TO_YEAR_PARAMETER, yearOf(to));
+        }
+    }
+
+    private static Integer yearOf(final LocalDate date) {
+        return date == null ? null : date.getYear();
+    }
+
+    private static <T> TweetSearchResult<T> toResult(final List<T> hits, final int resultSize, final Paging paging, final ToLongFunction<T> idExtractor) {
+        final Long searchAfter;
+        if (paging.getOrder() == Paging.Order.NEWEST && !hits.isEmpty() && hits.size() == paging.getMaxResults()) {
+            searchAfter = idExtractor.applyAsLong(hits.get(hits.size() - 1));
+        } else {
+            searchAfter = null;
+        }
+        return new TweetSearchResult<>(hits, resultSize, searchAfter);
+    }
+
+    /**
+     * Scrolls through all hits. Tweets are loaded from the database in
+     * batches and the session is cleared after each batch, so memory usage
+     * doesn't depend on the number of hits.
+     *
+     * @param query The query to execute
+     * @param from Optional lower bound of the query
+     * @param to Optional upper bound of the query
+     * @param consumer Consumer for the hits
+     */
+    private void stream(final org.apache.lucene.search.Query query, final LocalDate from, final LocalDate to, final Consumer<TweetEntity> consumer) {
+        final FullTextSession fullTextSession = org.hibernate.search.Search.getFullTextSession(this.entityManager.unwrap(Session.class));
+        final org.hibernate.search.FullTextQuery fullTextQuery = fullTextSession
+                .createFullTextQuery(query, TweetEntity.class)
+                .setFetchSize(STREAM_FETCH_SIZE);
+        restrictToShards(fullTextQuery::enableFullTextFilter, from, to);
+        createLoadingCriteria(from, to).ifPresent(fullTextQuery::setCriteriaQuery);
+        final ScrollableResults results = fullTextQuery.scroll(ScrollMode.FORWARD_ONLY);
         try {
-            final QueryParser queryParser = new QueryParser("content", fullTextEntityManager.getSearchFactory().getAnalyzer(TweetEntity.class));
-            rv = fullTextEntityManager.createFullTextQuery(queryParser.parse(query), TweetEntity.class).getResultList();
-        } catch (ParseException e) {
-            log.error("Could not parse query", e);
-            rv = new ArrayList<>();
+            int cnt = 0;
+            while (results.next()) {
+                consumer.accept((TweetEntity) results.get()[0]);
+                if (++cnt % STREAM_FETCH_SIZE == 0) {
+                    fullTextSession.clear();
+                }
+            }
+        } finally {
+            results.close();
         }
-        return rv;
+    }
+
+    @Override
+    @Transactional
+    public void persistAll(final List<TweetEntity> tweets) {
+        tweets.forEach(this.entityManager::persist);
+        this.entityManager.flush();
     }
 
     /**
      * Creates a query like
      * <pre>
-     * WITH RECURSIVE cte AS (
-     *      SELECT id, content FROM tweets WHERE id = ?
-     *      UNION ALL
-     *      SELECT t.id, t.content
-     *      FROM cte c
-     *      JOIN tweets t on t.in_reply_to_status_id = c.id
-     * ) SELECT * FROM cte
+     * SELECT t.*
+     * FROM tweets t
+     * JOIN tweets s ON t.conversation_id = s.conversation_id
+     * WHERE s.id = ?
+     *   AND (t.id = ANY(s.conversation_path)
+     *        OR (t.conversation_path @&gt; ARRAY[s.id] AND cardinality(t.conversation_path) &lt;= cardinality(s.conversation_path) + ?))
+     * ORDER BY t.created_at
      * </pre>
+     * The conversation is selected through the index on the conversation id,
+     * the tweets replied to and the replies are then taken from the
+     * materialized paths, so no recursion is needed.
      *
-     * @param id The id of the tweet starting the hierarchy, i.e. 726762141064286208
+     * @param id The id of the tweet whose conversation is retrieved, i.e. 726762141064286208
+     * @param maxDepth Optional maximum number of levels of replies
      * @return
      */
     @Override
-    public List<TweetEntity> getTweetHierarchy(final long id) {
+    public List<TweetEntity> getConversation(final long id, final Integer maxDepth) {
+        final Tweets t = TWEETS.as("t");
+        final Tweets s = TWEETS.as("s");
+
+        Condition isReply = t.CONVERSATION_PATH.contains(array(s.ID));
+        if (maxDepth != null) {
+            isReply = isReply.and(cardinality(t.CONVERSATION_PATH).le(cardinality(s.CONVERSATION_PATH).plus(maxDepth)));
+        }
         final SelectQuery<Record> sqlGenerator = this.create
-                .withRecursive("cte").as(
-                    select()
-                        .from(TWEETS)
-                        .where(TWEETS.ID.eq(id))
-                   .unionAll(
-                    select()
-                        .from(name("cte"))
-                        .join(TWEETS)
-                            .on(TWEETS.IN_REPLY_TO_STATUS_ID .eq(field(name("cte", "id"), Long.class)))
-                    )
-                )
-                .select()
-                .from(name("cte"))
-                .orderBy(field(name("cte", TWEETS.CREATED_AT.getName())))
+                .select(t.fields())
+                .from(t)
+                .join(s).on(t.CONVERSATION_ID.eq(s.CONVERSATION_ID))
+                .where(s.ID.eq(id))
+                .and(t.ID.eq(any(s.CONVERSATION_PATH)).or(isReply))
+                .orderBy(t.CREATED_AT)
                 .getQuery();
 
         // Retrieve sql with named parameter
@@ -141,7 +654,13 @@ public class TweetRepositoryImpl implements TweetRepositoryExt {
         final Query query = this.entityManager.createNativeQuery(sql, TweetEntity.class);
         // fill in parameter
         sqlGenerator.getParams().forEach((n, v) -> query.setParameter(n, v.getValue()));
-        // execute query
-        return query.getResultList();
+        // execute query, native queries are untyped
+        return ((List<?>) query.getResultList()).stream()
+                .map(TweetEntity.class::cast)
+                .collect(toList());
+    }
+
+    private static Field<Integer> cardinality(final Field<Long[]> array) {
+        return field("cardinality({0})", Integer.class, array);
     }
 }
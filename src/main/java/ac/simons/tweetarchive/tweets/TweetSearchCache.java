@@ -0,0 +1,203 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import ac.simons.tweetarchive.config.TweetArchiveProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexReaderContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches pages of search results. Entries are keyed by the normalized query
+ * and the version of the full text index they have been computed from. When
+ * a new version of the index becomes visible to searches, i.e. after tweets
+ * have been stored, deleted or reindexed, all older entries are invalidated,
+ * so cached results are never older than the index itself.
+ * <br>
+ * Searches for full tweets only cache the ids of their hits, the tweets are
+ * loaded for each request, so that no entity is ever shared between callers.
+ * Projections are immutable and cached as they are.
+ * <br>
+ * The cache is bounded by the approximate size of the cached hits, least
+ * valuable entries are evicted first.
+ */
+@Component
+public final class TweetSearchCache {
+
+    /**
+     * The different searches, results of one query differ between them.
+     */
+    enum Kind {
+        KEYWORD, QUERY, KEYWORD_PROJECTIONS, QUERY_PROJECTIONS, NEAR, WITHIN
+    }
+
+    @RequiredArgsConstructor
+    @EqualsAndHashCode
+    private static final class Key {
+
+        private final Kind kind;
+
+        private final String query;
+
+        private final LocalDate from;
+
+        private final LocalDate to;
+
+        private final int firstResult;
+
+        private final int maxResults;
+
+        private final Paging.Order order;
+
+        private final Long searchAfter;
+
+        private final long indexVersion;
+    }
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * Rough estimate of the bytes used by a hit besides its text.
+     */
+    private static final int HIT_OVERHEAD = 256;
+
+    private final Cache<Key, TweetSearchResult<?>> cache;
+
+    private final AtomicLong indexVersion = new AtomicLong(Long.MIN_VALUE);
+
+    public TweetSearchCache(final TweetArchiveProperties properties) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getSearch().getCacheMaximumWeight())
+                .weigher((final Key key, final TweetSearchResult<?> value) -> weigh(value))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns a cached result or computes and caches a new one.
+     *
+     * @param <T> Type of the hits
+     * @param kind The kind of search
+     * @param query The keywords or the query, must have been normalized with
+     * {@link #normalizeKeywords(java.lang.String)} or
+     * {@link #normalizeQuery(java.lang.String)}
+     * @param from Optional lower bound of the search
+     * @param to Optional upper bound of the search
+     * @param paging The requested page
+     * @param currentIndexVersion The version of the index the search is
+     * executed against
+     * @param search The actual search
+     * @return The cached or computed result
+     */
+    @SuppressWarnings("unchecked")
+    <T> TweetSearchResult<T> get(
+            final Kind kind, final String query, final LocalDate from, final LocalDate to, final Paging paging,
+            final long currentIndexVersion,
+            final Supplier<TweetSearchResult<T>> search
+    ) {
+        final long previousIndexVersion = this.indexVersion.getAndAccumulate(currentIndexVersion, Math::max);
+        if (previousIndexVersion < currentIndexVersion) {
+            this.cache.invalidateAll();
+        }
+        final Key key = new Key(kind, query, from, to,
+                paging.getFirstResult(), paging.getMaxResults(), paging.getOrder(), paging.getSearchAfter(),
+                currentIndexVersion);
+        return (TweetSearchResult<T>) this.cache.get(key, k -> search.get());
+    }
+
+    /**
+     * @return Hits, misses and evictions so far
+     */
+    public CacheStats getStats() {
+        return this.cache.stats();
+    }
+
+    /**
+     * @return The approximate number of cached results
+     */
+    public long getSize() {
+        return this.cache.estimatedSize();
+    }
+
+    /**
+     * Keywords are analyzed and lower cased by all our analyzers, so case and
+     * additional whitespace don't make a difference.
+     *
+     * @param keywords Keywords as entered by the user
+     * @return Normalized keywords
+     */
+    static String normalizeKeywords(final String keywords) {
+        return normalizeQuery(keywords).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Case is significant for operators of the query syntax, so only
+     * whitespace is normalized.
+     *
+     * @param query Query as entered by the user
+     * @return Normalized query
+     */
+    static String normalizeQuery(final String query) {
+        return WHITESPACE.matcher(query.trim()).replaceAll(" ");
+    }
+
+    /**
+     * Computes a version of all indexes read by the given reader. The version
+     * of each index increases with every commit, so does their sum.
+     *
+     * @param reader A reader as opened for searches
+     * @return The version of the index
+     */
+    static long versionOf(final IndexReader reader) {
+        if (reader instanceof DirectoryReader) {
+            return ((DirectoryReader) reader).getVersion();
+        }
+        long rv = 0;
+        final IndexReaderContext context = reader.getContext();
+        if (context.children() != null) {
+            for (IndexReaderContext child : context.children()) {
+                rv += versionOf(child.reader());
+            }
+        }
+        return rv;
+    }
+
+    private static int weigh(final TweetSearchResult<?> result) {
+        int rv = HIT_OVERHEAD;
+        for (Object hit : result.getTweets()) {
+            rv += HIT_OVERHEAD;
+            if (hit instanceof TweetProjection) {
+                rv += 2 * length(((TweetProjection) hit).getContent());
+            }
+        }
+        return rv;
+    }
+
+    private static int length(final String value) {
+        return value == null ? 0 : value.length();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import java.util.Arrays;
+import java.util.Collection;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the effectiveness of the {@link TweetSearchCache} and of the
+ * caches of the {@link TweetQueryCompiler}.
+ */
+@Component
+@RequiredArgsConstructor
+public final class TweetSearchCacheMetrics implements PublicMetrics {
+
+    private final TweetSearchCache tweetSearchCache;
+
+    private final TweetQueryCompiler tweetQueryCompiler;
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        final CacheStats stats = this.tweetSearchCache.getStats();
+        final CacheStats keywordQueryStats = this.tweetQueryCompiler.getKeywordQueryStats();
+        final CacheStats parsedQueryStats = this.tweetQueryCompiler.getParsedQueryStats();
+        return Arrays.asList(
+                new Metric<>("tweetarchive.search.cache.size", this.tweetSearchCache.getSize()),
+                new Metric<>("tweetarchive.search.cache.hits", stats.hitCount()),
+                new Metric<>("tweetarchive.search.cache.misses", stats.missCount()),
+                new Metric<>("tweetarchive.search.cache.hit-ratio", stats.hitRate()),
+                new Metric<>("tweetarchive.search.cache.evictions", stats.evictionCount()),
+                new Metric<>("tweetarchive.search.keyword-queries.hits", keywordQueryStats.hitCount()),
+                new Metric<>("tweetarchive.search.keyword-queries.misses", keywordQueryStats.missCount()),
+                new Metric<>("tweetarchive.search.parsed-queries.hits", parsedQueryStats.hitCount()),
+                new Metric<>("tweetarchive.search.parsed-queries.misses", parsedQueryStats.missCount())
+        );
+    }
+}
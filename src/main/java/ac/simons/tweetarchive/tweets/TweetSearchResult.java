@@ -0,0 +1,43 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import java.util.List;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * One page of a search result.
+ *
+ * @param <T> Type of the hits, either full tweets or projections
+ */
+@RequiredArgsConstructor
+@Getter
+public final class TweetSearchResult<T> {
+
+    private final List<T> tweets;
+
+    /**
+     * The total number of hits, independent of the page.
+     */
+    private final int totalHits;
+
+    /**
+     * The cursor for the next page if the tweets have been ordered newest
+     * first and the page has been filled completely.
+     */
+    private final Long searchAfter;
+}
@@ -15,22 +15,27 @@
  */
 package ac.simons.tweetarchive.tweets;
 
-import ac.simons.tweetarchive.tweets.TweetEntity.InReplyTo;
-import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
+import static java.util.stream.Collectors.toList;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import twitter4j.Place;
 import twitter4j.Status;
-import twitter4j.URLEntity;
 
 /**
- * Parses {@link Status statuses} and their raw json representation and creates
- * {@link TweetEntity tweet entities}.
+ * Stores {@link Status statuses} and their raw json representation as
+ * {@link TweetEntity tweet entities}, which are created by the
+ * {@link TweetEntityMapper}.
  *
  * @author Michael J. Simons, 2016-09-05
  */
@@ -39,13 +44,24 @@ import twitter4j.URLEntity;
 @Slf4j
 public class TweetStorageService {
 
-    /**
-     * Pattern to extract the source from a tweet.
-     */
-    private static final Pattern SOURCE_PATTERN = Pattern.compile("<a.*?>(.*)</a>");
-
     private final TweetRepository tweetRepository;
 
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final RawDataCodec rawDataCodec;
+
+    private final TweetEntityMapper tweetEntityMapper;
+
+    private final TweetDeletionService tweetDeletionService;
+
+    /**
+     * Stores a single status.
+     *
+     * @param status The status to store
+     * @param rawContent The raw json the status has been created from
+     * @return The new or already existing tweet, {@literal null} if the tweet
+     * has been deleted
+     */
     @Transactional
     public TweetEntity store(final Status status, final String rawContent) {
         final Optional<TweetEntity> existingTweet = this.tweetRepository.findOne(status.getId());
@@ -54,68 +70,79 @@ public class TweetStorageService {
             log.warn("Tweet with status {} already existed...", rv.getId());
             return rv;
         }
-
-        final TweetEntity tweet = new TweetEntity(
-                status.getId(),
-                status.getUser().getId(),
-                status.getUser().getScreenName(),
-                status.getCreatedAt().toInstant().atZone(ZoneId.of("UTC")),
-                extractContent(status),
-                extractSource(status),
-                rawContent
-        );
-        tweet.setCountryCode(Optional.ofNullable(status.getPlace()).map(Place::getCountryCode).orElse(null));
-        if (status.getInReplyToStatusId() != -1L && status.getInReplyToUserId() != -1L && status.getInReplyToScreenName() != null) {
-            tweet.setInReplyTo(new InReplyTo(status.getInReplyToStatusId(), status.getInReplyToScreenName(), status.getInReplyToUserId()));
+        if (!this.tweetDeletionService.findDeletedIds(Collections.singleton(status.getId())).isEmpty()) {
+            log.info("Tweet with status {} has been deleted, not storing it again", status.getId());
+            return null;
         }
-        tweet.setLang(status.getLang());
-        tweet.setLocation(Optional.ofNullable(status.getGeoLocation()).map(g -> new TweetEntity.Location(g.getLatitude(), g.getLongitude())).orElse(null));
-        // TODO Handle quoted tweets
-        return this.tweetRepository.save(tweet);
+
+        final TweetEntity rv = this.tweetRepository.save(createEntity(status, rawContent));
+        this.eventPublisher.publishEvent(new TweetsStoredEvent(Collections.singletonList(rv)));
+        return rv;
     }
 
+    /**
+     * Stores a batch of statuses within one transaction.
+     *
+     * @param statuses The statuses to store
+     * @return The number of tweets actually stored
+     * @see #storeTweets(java.util.Collection)
+     */
     @Transactional
-    public void delete(final long id) {
-        long count = this.tweetRepository.deleteById(id);
-        log.info("Deleted {} status...", count);
+    public int storeAll(final Collection<RawStatus> statuses) {
+        return storeTweets(statuses.stream()
+                .map(s -> createEntity(s.getStatus(), s.getRawContent()))
+                .collect(toList()));
     }
 
-    String extractContent(final Status status) {
-        // TODO Handle quoted tweets
-        final Status workStatus;
-        if (status.isRetweet()) {
-            workStatus = status.getRetweetedStatus();
-        } else {
-            workStatus = status;
+    /**
+     * Stores a batch of tweets within one transaction. Already existing
+     * tweets are determined with a single query and skipped, the new ones are
+     * inserted in JDBC batches. Callers are responsible for chunking large
+     * imports into reasonable batches. If the same tweet is stored
+     * concurrently, the database skips the second insert of its id in
+     * {@code tweet_ids}, which Hibernate reports as an unexpected row count
+     * and fails the transaction. Storing the batch again skips the tweet as
+     * existing.
+     *
+     * @param tweets The tweets to store, usually created through
+     * {@link #createEntity(twitter4j.Status, java.lang.String)}
+     * @return The number of tweets actually stored
+     */
+    @Transactional
+    public int storeTweets(final Collection<TweetEntity> tweets) {
+        if (tweets.isEmpty()) {
+            return 0;
         }
 
-        final StringBuilder rv = new StringBuilder();
-
-        final String text = workStatus.getText();
-        int pos = 0;
-        for (URLEntity urlEntity : workStatus.getURLEntities()) {
-            rv.append(text.substring(pos, urlEntity.getStart()));
-            rv.append(urlEntity.getExpandedURL());
-            pos = urlEntity.getEnd();
-
+        final Map<Long, TweetEntity> newTweets = new LinkedHashMap<>();
+        tweets.forEach(t -> newTweets.putIfAbsent(t.getId(), t));
+        final Set<Long> existingIds = new HashSet<>(this.tweetRepository.findExistingIds(newTweets.keySet()));
+        newTweets.keySet().removeAll(existingIds);
+        if (!existingIds.isEmpty()) {
+            log.warn("{} of {} tweets already existed...", existingIds.size(), tweets.size());
         }
-        if (pos <= text.length()) {
-            rv.append(text.substring(pos, text.length()));
+        final Set<Long> deletedIds = this.tweetDeletionService.findDeletedIds(newTweets.keySet());
+        newTweets.keySet().removeAll(deletedIds);
+        if (!deletedIds.isEmpty()) {
+            log.info("{} of {} tweets have been deleted and are not stored again", deletedIds.size(), tweets.size());
         }
 
-        if (status.isRetweet()) {
-            rv.insert(0, String.format("RT @%s: ", workStatus.getUser().getScreenName()));
-        }
-        return rv.toString();
+        final List<TweetEntity> storedTweets = new ArrayList<>(newTweets.values());
+        this.tweetRepository.persistAll(storedTweets);
+        this.eventPublisher.publishEvent(new TweetsStoredEvent(storedTweets));
+        return storedTweets.size();
     }
 
-    String extractSource(final Status status) {
-        return Optional.ofNullable(status.getSource())
-                .map(String::trim)
-                .filter(s -> !s.isEmpty())
-                .map(SOURCE_PATTERN::matcher)
-                .filter(Matcher::matches)
-                .map(m -> m.group(1).trim())
-                .orElse(null);
+    /**
+     * Creates a new, unsaved tweet from the given status.
+     *
+     * @param status The status to store
+     * @param rawContent The raw json the status has been created from
+     * @return A new tweet entity
+     */
+    public TweetEntity createEntity(final Status status, final String rawContent) {
+        final TweetEntity tweet = this.tweetEntityMapper.toEntity(status, rawContent);
+        this.rawDataCodec.encode(tweet.getRawData());
+        return tweet;
     }
 }
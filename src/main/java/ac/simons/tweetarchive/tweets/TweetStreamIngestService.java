@@ -0,0 +1,502 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import ac.simons.tweetarchive.config.TweetArchiveProperties;
+import ac.simons.tweetarchive.config.TweetArchiveProperties.StreamBackpressure;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import static java.util.stream.Collectors.toList;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import twitter4j.Status;
+import twitter4j.TwitterException;
+import twitter4j.TwitterObjectFactory;
+
+/**
+ * Decouples the user stream from storage. The raw json of each received
+ * status is first appended to a local {@link TweetJournal}, then the status
+ * is put into a bounded queue, which is drained by one writer thread that
+ * stores them in batches. What happens when the queue is full is configured
+ * through {@link StreamBackpressure}.
+ * <br>
+ * Statuses that didn't make it through the queue, because the queue was full
+ * or because storing them failed, for example while the database is down,
+ * are stored from the journal once the queue is empty again, also after a
+ * restart. As existing tweets are skipped, statuses may safely be stored
+ * twice.
+ * <br>
+ * Journaled statuses that cannot be parsed, or that cannot be stored while
+ * other statuses of the same batch can, are moved to a dead letter file
+ * ({@value #DEAD_LETTERS_FILE} inside the journal directory, one status per
+ * line), so that they don't block the journal.
+ */
+@Service
+@ConditionalOnProperty(prefix = "tweetarchive.stream", name = "enabled", matchIfMissing = true)
+@Slf4j
+public class TweetStreamIngestService {
+
+    @RequiredArgsConstructor
+    private static final class Pending {
+
+        private final RawStatus status;
+
+        /**
+         * {@link System#nanoTime()} when the status has been received.
+         */
+        private final long receivedAt;
+
+        /**
+         * The position after the status in the journal or {@literal -1} if
+         * it hasn't been written to the journal.
+         */
+        private final long journalPosition;
+    }
+
+    private static final long INITIAL_RETRY_DELAY = 100;
+
+    static final String DEAD_LETTERS_FILE = "dead-letters.json";
+
+    private final TweetStorageService tweetStorageService;
+
+    private final TweetArchiveProperties.Stream config;
+
+    private final TweetJournal journal;
+
+    private final Path deadLetters;
+
+    private final BlockingQueue<Pending> queue;
+
+    private final CountDownLatch stopping = new CountDownLatch(1);
+
+    private final Thread writer;
+
+    /**
+     * Incremented whenever a journaled status is not stored through the
+     * queue. The journal cannot be committed beyond such a gap until the
+     * journal has been replayed.
+     */
+    private final AtomicLong gaps = new AtomicLong();
+
+    private long retryDelay = INITIAL_RETRY_DELAY;
+
+    private long replayNotBefore = System.nanoTime();
+
+    private final AtomicLong received = new AtomicLong();
+
+    private final AtomicLong stored = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong spilled = new AtomicLong();
+
+    private final AtomicLong replayed = new AtomicLong();
+
+    private final AtomicLong failedBatches = new AtomicLong();
+
+    private final AtomicLong deadLettered = new AtomicLong();
+
+    private final AtomicLong totalLatency = new AtomicLong();
+
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    private volatile long lastLatency;
+
+    public TweetStreamIngestService(final TweetStorageService tweetStorageService, final TweetArchiveProperties properties) throws IOException {
+        this.tweetStorageService = tweetStorageService;
+        this.config = properties.getStream();
+        this.journal = new TweetJournal(this.config.getJournalDirectory(), this.config.getJournalSegmentSize());
+        this.deadLetters = this.config.getJournalDirectory().toPath().resolve(DEAD_LETTERS_FILE);
+        this.queue = new ArrayBlockingQueue<>(this.config.getQueueCapacity());
+        this.writer = new Thread(this::run, "stream-writer");
+        if (this.journal.getPendingBytes() > 0) {
+            log.info("Journal contains {} bytes of statuses that haven't been stored", this.journal.getPendingBytes());
+            this.gaps.incrementAndGet();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        this.writer.start();
+    }
+
+    /**
+     * Stores all queued statuses and stops the writer. Statuses that cannot
+     * be stored remain in the journal.
+     *
+     * @throws InterruptedException When interrupted while waiting
+     * @throws IOException If the journal cannot be closed
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        this.stopping.countDown();
+        this.writer.join();
+        this.journal.close();
+    }
+
+    /**
+     * Journals and queues a status received from the stream. Must be called
+     * on the thread that received the status, as the raw json is only
+     * available there.
+     *
+     * @param status The received status
+     * @param rawContent Its raw json
+     */
+    public synchronized void ingest(final Status status, final String rawContent) {
+        this.received.incrementAndGet();
+        long journalPosition = -1;
+        if (rawContent == null) {
+            log.warn("Status {} has no raw json and cannot be journaled", status.getId());
+        } else {
+            try {
+                journalPosition = this.journal.append(rawContent);
+            } catch (IOException e) {
+                log.error("Could not journal status {}", status.getId(), e);
+            }
+        }
+
+        final Pending pending = new Pending(new RawStatus(status, rawContent), System.nanoTime(), journalPosition);
+        switch (this.config.getBackpressure()) {
+            case BLOCK:
+                try {
+                    this.queue.put(pending);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.warn("Interrupted while waiting for the queue, status {} is not queued", status.getId());
+                    skip(pending);
+                }
+                break;
+            case DROP_OLDEST:
+                while (!this.queue.offer(pending)) {
+                    // The writer must not commit past the oldest status once it left the queue,
+                    // an unused reservation only causes an additional replay
+                    this.gaps.incrementAndGet();
+                    final Pending oldest = this.queue.poll();
+                    if (oldest != null) {
+                        skipWithReservedGap(oldest);
+                    }
+                }
+                break;
+            default:
+                if (!this.queue.offer(pending)) {
+                    skip(pending);
+                }
+        }
+    }
+
+    public int getQueueSize() {
+        return this.queue.size();
+    }
+
+    public int getQueueCapacity() {
+        return this.config.getQueueCapacity();
+    }
+
+    /**
+     * @return Number of bytes in the journal that haven't been stored
+     */
+    public long getJournalPendingBytes() {
+        return this.journal.getPendingBytes();
+    }
+
+    public long getReceived() {
+        return this.received.get();
+    }
+
+    /**
+     * @return Number of statuses stored through the queue, including existing
+     * ones
+     */
+    public long getStored() {
+        return this.stored.get();
+    }
+
+    /**
+     * @return Number of statuses that have been lost, because they could
+     * neither be journaled nor stored
+     */
+    public long getDropped() {
+        return this.dropped.get();
+    }
+
+    /**
+     * @return Number of statuses that didn't make it through the queue and
+     * are left to the journal
+     */
+    public long getSpilled() {
+        return this.spilled.get();
+    }
+
+    /**
+     * @return Number of statuses that have been stored from the journal since
+     * startup
+     */
+    public long getReplayed() {
+        return this.replayed.get();
+    }
+
+    public long getFailedBatches() {
+        return this.failedBatches.get();
+    }
+
+    /**
+     * @return Number of journaled statuses that have been moved to the dead
+     * letter file since startup
+     */
+    public long getDeadLettered() {
+        return this.deadLettered.get();
+    }
+
+    /**
+     * @return Time in milliseconds between receiving and committing the most
+     * recently stored status
+     */
+    public double getLastLatency() {
+        return toMillis(this.lastLatency);
+    }
+
+    /**
+     * @return Maximum time in milliseconds between receiving and committing
+     * a status
+     */
+    public double getMaxLatency() {
+        return toMillis(this.maxLatency.get());
+    }
+
+    /**
+     * @return Mean time in milliseconds between receiving and committing a
+     * status, statuses that have been replayed from the journal are not
+     * included
+     */
+    public double getMeanLatency() {
+        final long count = this.stored.get();
+        return count == 0 ? 0.0 : toMillis(this.totalLatency.get()) / count;
+    }
+
+    private static double toMillis(final long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private boolean isStopping() {
+        return this.stopping.getCount() == 0;
+    }
+
+    /**
+     * Leaves a status to the journal.
+     */
+    private void skip(final Pending pending) {
+        if (pending.journalPosition >= 0) {
+            this.gaps.incrementAndGet();
+        }
+        skipWithReservedGap(pending);
+    }
+
+    /**
+     * Leaves a status to the journal, the gap has already been counted.
+     */
+    private void skipWithReservedGap(final Pending pending) {
+        if (pending.journalPosition < 0) {
+            log.warn("Status {} hasn't been journaled and is lost", pending.status.getStatus().getId());
+            this.dropped.incrementAndGet();
+        } else {
+            this.spilled.incrementAndGet();
+        }
+    }
+
+    private void run() {
+        final List<Pending> batch = new ArrayList<>(this.config.getBatchSize());
+        while (!(isStopping() && this.queue.isEmpty())) {
+            final Pending first;
+            try {
+                first = this.queue.poll(INITIAL_RETRY_DELAY, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (first == null) {
+                if (!isStopping() && this.gaps.get() > 0 && System.nanoTime() - this.replayNotBefore >= 0) {
+                    replay();
+                }
+                continue;
+            }
+            batch.add(first);
+            this.queue.drainTo(batch, this.config.getBatchSize() - 1);
+            store(batch);
+            batch.clear();
+        }
+    }
+
+    private void store(final List<Pending> batch) {
+        final List<RawStatus> statuses = batch.stream().map(p -> p.status).collect(toList());
+        try {
+            // Everything that might not be stored must be on disk
+            this.journal.sync();
+            this.tweetStorageService.storeAll(statuses);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not store {} statuses, retrying from the journal in {}ms", statuses.size(), this.retryDelay, e);
+            this.failedBatches.incrementAndGet();
+            batch.forEach(this::skip);
+            backOff();
+            return;
+        }
+        this.retryDelay = INITIAL_RETRY_DELAY;
+
+        final long now = System.nanoTime();
+        long journalPosition = -1;
+        for (Pending pending : batch) {
+            final long latency = now - pending.receivedAt;
+            this.totalLatency.addAndGet(latency);
+            this.maxLatency.accumulateAndGet(latency, Math::max);
+            this.lastLatency = latency;
+            journalPosition = Math.max(journalPosition, pending.journalPosition);
+        }
+        this.stored.addAndGet(batch.size());
+        if (this.gaps.get() == 0) {
+            commit(journalPosition);
+        }
+    }
+
+    /**
+     * Waits before the next attempt to store statuses, so that the database
+     * isn't hammered while it is down.
+     */
+    private void backOff() {
+        this.replayNotBefore = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.retryDelay);
+        if (!isStopping()) {
+            try {
+                this.stopping.await(this.retryDelay, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        this.retryDelay = Math.min(2 * this.retryDelay, this.config.getMaxRetryDelay());
+    }
+
+    private void commit(final long journalPosition) {
+        if (journalPosition < 0) {
+            return;
+        }
+        try {
+            this.journal.commit(journalPosition);
+        } catch (IOException e) {
+            log.warn("Could not commit journal, statuses will be stored again", e);
+        }
+    }
+
+    /**
+     * Stores all statuses from the journal that haven't been committed yet,
+     * called by the writer while the queue is empty. Every status journaled
+     * until now either has been stored through the queue or is stored here.
+     */
+    private void replay() {
+        final long gapsBefore = this.gaps.get();
+        final long replayedBefore = this.replayed.get();
+        final List<RawStatus> batch = new ArrayList<>(this.config.getBatchSize());
+        final long[] batchEnd = new long[1];
+        try {
+            this.journal.sync();
+            this.journal.read(this.journal.getCommittedPosition(), this.journal.getEndPosition(), (rawContent, endPosition) -> {
+                try {
+                    batch.add(new RawStatus(TwitterObjectFactory.createStatus(rawContent), rawContent));
+                } catch (TwitterException e) {
+                    log.warn("Could not parse journaled status", e);
+                    deadLetter(rawContent);
+                }
+                batchEnd[0] = endPosition;
+                if (batch.size() == this.config.getBatchSize()) {
+                    storeReplayed(batch, batchEnd[0]);
+                }
+            });
+            storeReplayed(batch, batchEnd[0]);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not store journaled statuses, retrying in {}ms", this.retryDelay, e);
+            this.failedBatches.incrementAndGet();
+            backOff();
+            return;
+        }
+        this.retryDelay = INITIAL_RETRY_DELAY;
+        this.gaps.compareAndSet(gapsBefore, 0);
+        log.info("Stored {} journaled statuses", this.replayed.get() - replayedBefore);
+    }
+
+    private void storeReplayed(final List<RawStatus> batch, final long journalPosition) {
+        if (!batch.isEmpty()) {
+            try {
+                this.tweetStorageService.storeAll(batch);
+                this.replayed.addAndGet(batch.size());
+            } catch (RuntimeException e) {
+                log.warn("Could not store {} journaled statuses, storing them one by one", batch.size(), e);
+                storeReplayedOneByOne(batch, e);
+            }
+            batch.clear();
+        }
+        commit(journalPosition);
+    }
+
+    /**
+     * Stores statuses of a failed batch one by one. If none of them can be
+     * stored, storage is considered to be down and the original failure is
+     * rethrown. Otherwise the statuses that still fail are moved to the dead
+     * letter file.
+     *
+     * @param batch The statuses of the failed batch
+     * @param batchFailure Why the batch failed
+     */
+    private void storeReplayedOneByOne(final List<RawStatus> batch, final RuntimeException batchFailure) {
+        final List<RawStatus> failed = new ArrayList<>();
+        for (RawStatus status : batch) {
+            try {
+                this.tweetStorageService.storeAll(Collections.singletonList(status));
+                this.replayed.incrementAndGet();
+            } catch (RuntimeException e) {
+                log.debug("Could not store journaled status {}", status.getStatus().getId(), e);
+                failed.add(status);
+            }
+        }
+        if (failed.size() == batch.size()) {
+            throw batchFailure;
+        }
+        failed.forEach(status -> {
+            log.error("Could not store journaled status {}, moving it to {}", status.getStatus().getId(), this.deadLetters);
+            deadLetter(status.getRawContent());
+        });
+    }
+
+    private void deadLetter(final String rawContent) {
+        try {
+            Files.write(this.deadLetters, Collections.singletonList(rawContent), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write dead letter", e);
+        }
+        this.deadLettered.incrementAndGet();
+    }
+}
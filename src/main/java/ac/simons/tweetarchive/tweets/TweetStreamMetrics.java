@@ -0,0 +1,56 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import java.util.Arrays;
+import java.util.Collection;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the depth of the stream ingest queue and how long it takes until
+ * received statuses are stored.
+ */
+@Component
+@ConditionalOnProperty(prefix = "tweetarchive.stream", name = "enabled", matchIfMissing = true)
+@RequiredArgsConstructor
+public final class TweetStreamMetrics implements PublicMetrics {
+
+    private final TweetStreamIngestService tweetStreamIngestService;
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        final TweetStreamIngestService service = this.tweetStreamIngestService;
+        return Arrays.asList(
+                new Metric<>("tweetarchive.stream.queue.size", service.getQueueSize()),
+                new Metric<>("tweetarchive.stream.queue.capacity", service.getQueueCapacity()),
+                new Metric<>("tweetarchive.stream.journal.pending-bytes", service.getJournalPendingBytes()),
+                new Metric<>("tweetarchive.stream.received", service.getReceived()),
+                new Metric<>("tweetarchive.stream.stored", service.getStored()),
+                new Metric<>("tweetarchive.stream.dropped", service.getDropped()),
+                new Metric<>("tweetarchive.stream.spilled", service.getSpilled()),
+                new Metric<>("tweetarchive.stream.replayed", service.getReplayed()),
+                new Metric<>("tweetarchive.stream.failed-batches", service.getFailedBatches()),
+                new Metric<>("tweetarchive.stream.dead-letters", service.getDeadLettered()),
+                new Metric<>("tweetarchive.stream.latency.last", service.getLastLatency()),
+                new Metric<>("tweetarchive.stream.latency.mean", service.getMeanLatency()),
+                new Metric<>("tweetarchive.stream.latency.max", service.getMaxLatency())
+        );
+    }
+}
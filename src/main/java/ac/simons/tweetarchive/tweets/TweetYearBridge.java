@@ -15,6 +15,7 @@
  */
 package ac.simons.tweetarchive.tweets;
 
+import java.time.ZoneId;
 import org.apache.lucene.document.Document;
 import org.hibernate.search.bridge.FieldBridge;
 import org.hibernate.search.bridge.LuceneOptions;
@@ -26,10 +27,20 @@ import org.hibernate.search.bridge.LuceneOptions;
  */
 public final class TweetYearBridge implements FieldBridge {
 
+    private static final ZoneId UTC = ZoneId.of("UTC");
+
     @Override
     public void set(final String name, final Object value, final Document document, final LuceneOptions luceneOptions) {
-        final TweetEntity tweet = (TweetEntity) value;
-        luceneOptions.addFieldToDocument(name, String.valueOf(tweet.getCreatedAt().getYear()), document);
+        luceneOptions.addFieldToDocument(name, yearOf((TweetEntity) value), document);
+    }
+
+    /**
+     * @param tweet A tweet
+     * @return The year the tweet was created, always in UTC, as the year
+     * selects the index shard
+     */
+    static String yearOf(final TweetEntity tweet) {
+        return String.valueOf(tweet.getCreatedAt().withZoneSameInstant(UTC).getYear());
     }
 
 }
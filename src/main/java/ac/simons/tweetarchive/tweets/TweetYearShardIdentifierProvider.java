@@ -0,0 +1,172 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import java.io.File;
+import java.io.Serializable;
+import java.time.Clock;
+import java.time.Year;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import static java.util.stream.Collectors.toSet;
+import org.apache.lucene.document.Document;
+import org.hibernate.search.SearchFactory;
+import org.hibernate.search.filter.FullTextFilterImplementor;
+import org.hibernate.search.indexes.spi.IndexManager;
+import org.hibernate.search.spi.BuildContext;
+import org.hibernate.search.spi.SearchIntegrator;
+import org.hibernate.search.store.ShardIdentifierProviderTemplate;
+
+/**
+ * Splits the index of tweets into one shard per year. Indexing new tweets
+ * only ever touches the shard of the current year, so merges don't rewrite
+ * the segments of older years.
+ * <br>
+ * Queries are executed against all shards unless the {@link #YEARS_FILTER}
+ * is enabled, which restricts them to the shards of the given years.
+ */
+public final class TweetYearShardIdentifierProvider extends ShardIdentifierProviderTemplate {
+
+    private static final class YearsFilter implements FullTextFilterImplementor {
+
+        private final Map<String, Object> parameters = new HashMap<>();
+
+        @Override
+        public String getName() {
+            return YEARS_FILTER;
+        }
+
+        @Override
+        public YearsFilter setParameter(final String name, final Object value) {
+            this.parameters.put(name, value);
+            return this;
+        }
+
+        @Override
+        public Object getParameter(final String name) {
+            return this.parameters.get(name);
+        }
+    }
+
+    /**
+     * Name of the filter selecting shards by year. Its optional parameters
+     * {@link #FROM_YEAR_PARAMETER} and {@link #TO_YEAR_PARAMETER} are both
+     * inclusive.
+     */
+    public static final String YEARS_FILTER = "years";
+
+    public static final String FROM_YEAR_PARAMETER = "from";
+
+    public static final String TO_YEAR_PARAMETER = "to";
+
+    /**
+     * Name of the index shared by all shards, which are stored in
+     * directories named after the index, a dot and the shards year.
+     */
+    static final String INDEX_NAME = TweetEntity.class.getName();
+
+    private static final Pattern SHARD_DIRECTORY = Pattern.compile(Pattern.quote(INDEX_NAME) + "\\.(\\d{4})");
+
+    /**
+     * Finds the shards of previous runs. The strategy only sees properties
+     * prefixed with {@code sharding_strategy}, so the index base must be
+     * configured as {@code sharding_strategy.indexBase} as well.
+     *
+     * @param properties The properties of the sharding strategy
+     * @param buildContext Unused
+     * @return The identifiers of all existing shards
+     */
+    @Override
+    protected Set<String> loadInitialShardNames(final Properties properties, final BuildContext buildContext) {
+        final File[] directories = Optional.ofNullable(properties.getProperty("indexBase"))
+                .map(File::new)
+                .map(File::listFiles)
+                .orElseGet(() -> new File[0]);
+        final Set<String> rv = Arrays.stream(directories)
+                .filter(File::isDirectory)
+                .map(directory -> SHARD_DIRECTORY.matcher(directory.getName()))
+                .filter(Matcher::matches)
+                .map(matcher -> matcher.group(1))
+                .collect(toSet());
+        // Readers cannot be opened on an index without shards
+        if (rv.isEmpty()) {
+            rv.add(String.valueOf(Year.now(Clock.systemUTC()).getValue()));
+        }
+        return rv;
+    }
+
+    @Override
+    public String getShardIdentifier(final Class<?> entityType, final Serializable id, final String idAsString, final Document document) {
+        final String rv = document.get("year");
+        addShard(rv);
+        return rv;
+    }
+
+    @Override
+    public Set<String> getShardIdentifiersForQuery(final FullTextFilterImplementor[] fullTextFilters) {
+        for (FullTextFilterImplementor filter : fullTextFilters) {
+            if (YEARS_FILTER.equals(filter.getName())) {
+                return selectShards(getAllShardIdentifiers(), (Integer) filter.getParameter(FROM_YEAR_PARAMETER), (Integer) filter.getParameter(TO_YEAR_PARAMETER));
+            }
+        }
+        return getAllShardIdentifiers();
+    }
+
+    /**
+     * Selects the index names of the shards of the given years. Other than
+     * {@link org.hibernate.search.indexes.IndexReaderAccessor#open(java.lang.Class...)},
+     * this includes shards that haven't been used since startup.
+     *
+     * @param searchFactory The search factory
+     * @param fromYear Optional first year
+     * @param toYear Optional last year
+     * @return The names to pass to
+     * {@link org.hibernate.search.indexes.IndexReaderAccessor#open(java.lang.String...)}
+     */
+    static String[] getIndexNames(final SearchFactory searchFactory, final Integer fromYear, final Integer toYear) {
+        final FullTextFilterImplementor yearsFilter = new YearsFilter()
+                .setParameter(FROM_YEAR_PARAMETER, fromYear)
+                .setParameter(TO_YEAR_PARAMETER, toYear);
+        return Arrays.stream(searchFactory.unwrap(SearchIntegrator.class)
+                .getIndexBinding(TweetEntity.class)
+                .getSelectionStrategy()
+                .getIndexManagersForQuery(new FullTextFilterImplementor[]{yearsFilter}))
+                .map(IndexManager::getIndexName)
+                .toArray(String[]::new);
+    }
+
+    /**
+     * @param shards The identifiers of all shards
+     * @param fromYear Optional first year
+     * @param toYear Optional last year
+     * @return The identifiers of shards containing tweets from the given years
+     */
+    static Set<String> selectShards(final Collection<String> shards, final Integer fromYear, final Integer toYear) {
+        return shards.stream()
+                .filter(shard -> {
+                    final int year = Integer.parseInt(shard);
+                    return (fromYear == null || year >= fromYear) && (toYear == null || year <= toYear);
+                })
+                .collect(toSet());
+    }
+}
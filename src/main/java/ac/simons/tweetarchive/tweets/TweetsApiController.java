@@ -15,14 +15,30 @@
  */
 package ac.simons.tweetarchive.tweets;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import static java.util.stream.Collectors.toList;
+import java.util.stream.LongStream;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
- * This rest controller displays a single tweet and all replys to it.
+ * This rest controller displays a single tweet within its conversation: The
+ * tweets it replies to and all replys to it. The raw data of the tweets is
+ * only available through the dedicated export endpoints.
  *
  * @author Michael J. Simons, 2016-12-27
  */
@@ -31,8 +47,56 @@ import org.springframework.web.bind.annotation.RestController;
 public final class TweetsApiController {
     private final TweetRepository tweetRepository;
 
+    private final TweetRawDataRepository tweetRawDataRepository;
+
+    private final RawDataCodec rawDataCodec;
+
+    private final Optional<ReplyGraphService> replyGraphService;
+
     @GetMapping("/tweets/{tweetId}")
-    public List<TweetEntity> getTweet(@PathVariable final long tweetId) {
-        return this.tweetRepository.getTweetHierarchy(tweetId);
+    public List<TweetEntity> getTweet(
+            @PathVariable final long tweetId,
+            @RequestParam(required = false) final Integer maxDepth
+    ) {
+        // Only the tweets actually needed are loaded if the conversation is known in memory
+        return this.replyGraphService
+                .filter(ReplyGraphService::isLoaded)
+                .map(graph -> graph.getConversation(tweetId, Optional.ofNullable(maxDepth).orElse(Integer.MAX_VALUE)))
+                .map(ids -> ids.length == 0 ? new ArrayList<TweetEntity>() : this.tweetRepository.findAllByIds(LongStream.of(ids).boxed().collect(toList())))
+                .orElseGet(() -> this.tweetRepository.getConversation(tweetId, maxDepth));
+    }
+
+    /**
+     * @param tweetId The id of the tweet
+     * @return The original json data of the tweet
+     */
+    @GetMapping(value = "/tweets/{tweetId}/raw", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<String> getRawData(@PathVariable final long tweetId) {
+        return this.tweetRawDataRepository.findOne(tweetId)
+                .map(this.rawDataCodec::decode)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Exports the original json data of all tweets.
+     *
+     * @return The json data of all tweets as newline delimited JSON, ordered
+     * by id
+     */
+    @GetMapping(value = "/tweets/raw", produces = SearchApiController.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportRawData() {
+        return SearchApiController.toResponse(out -> {
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            this.tweetRawDataRepository.exportAll(rawData -> {
+                try {
+                    writer.write(rawData);
+                    writer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        });
     }
 }
@@ -16,6 +16,7 @@
 package ac.simons.tweetarchive.tweets;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import twitter4j.Status;
 import twitter4j.StatusDeletionNotice;
@@ -23,21 +24,28 @@ import twitter4j.TwitterObjectFactory;
 import twitter4j.UserStreamAdapter;
 
 /**
+ * Receives the user stream. New statuses are handed over to the
+ * {@link TweetStreamIngestService}, so that the stream is not blocked by
+ * storage, deletions are recorded with the {@link TweetDeletionService}.
+ *
  * @author Michael J. Simons, 2016-09-05
  */
 @Component
+@ConditionalOnProperty(prefix = "tweetarchive.stream", name = "enabled", matchIfMissing = true)
 @RequiredArgsConstructor
 public final class UserStreamAdapterImpl extends UserStreamAdapter {
 
-    private final TweetStorageService tweetStorageService;
+    private final TweetDeletionService tweetDeletionService;
+
+    private final TweetStreamIngestService tweetStreamIngestService;
 
     @Override
     public void onStatus(final Status status) {
-        this.tweetStorageService.store(status, TwitterObjectFactory.getRawJSON(status));
+        this.tweetStreamIngestService.ingest(status, TwitterObjectFactory.getRawJSON(status));
     }
 
     @Override
     public void onDeletionNotice(final StatusDeletionNotice statusDeletionNotice) {
-        this.tweetStorageService.delete(statusDeletionNotice.getStatusId());
+        this.tweetDeletionService.delete(statusDeletionNotice.getStatusId());
     }
 }
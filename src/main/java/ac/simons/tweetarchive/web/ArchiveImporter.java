@@ -0,0 +1,152 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.web;
+
+import ac.simons.tweetarchive.config.TweetArchiveProperties;
+import ac.simons.tweetarchive.config.TweetArchiveProperties.ImportMode;
+import ac.simons.tweetarchive.tweets.TweetBatchWriter;
+import ac.simons.tweetarchive.tweets.TweetBatchWriter.BatchStore;
+import ac.simons.tweetarchive.tweets.TweetCopyService;
+import ac.simons.tweetarchive.tweets.TweetEntity;
+import ac.simons.tweetarchive.tweets.TweetIndexService;
+import ac.simons.tweetarchive.tweets.TweetStorageService;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import static java.util.stream.Collectors.partitioningBy;
+import static java.util.stream.Collectors.toList;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Imports a complete Twitter archive. The archive contains one entry per
+ * month, those entries are parsed in parallel by a bounded pool of workers
+ * and the resulting tweets are funneled through one {@link TweetBatchWriter}.
+ * <br>
+ * Entries are reported as stored only after all their tweets have been
+ * committed, so an interrupted import can be resumed by skipping those
+ * entries. As existing tweets are skipped, an entry may safely be imported
+ * twice.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public final class ArchiveImporter {
+
+    private static final String TWEETS_ENTRY_PREFIX = "data/js/tweets/";
+
+    private final TweetStorageService tweetStorageService;
+
+    private final TweetCopyService tweetCopyService;
+
+    private final TweetIndexService tweetIndexService;
+
+    private final TweetArchiveProperties properties;
+
+    private final TwitterArchiveReader archiveReader = new TwitterArchiveReader();
+
+    /**
+     * Imports all tweets from the given archive.
+     *
+     * @param archive A zip file as downloaded from Twitter
+     * @param processedEntries Names of entries that have already been
+     * processed in a previous run and are skipped
+     * @param listener Notified about the progress
+     * @throws IOException If the archive cannot be read
+     * @throws InterruptedException If interrupted while waiting for the
+     * workers
+     */
+    public void importArchive(final File archive, final Set<String> processedEntries, final ImportListener listener) throws IOException, InterruptedException {
+        final TweetArchiveProperties.Import config = this.properties.getImport();
+
+        final BatchStore store;
+        if (config.getMode() == ImportMode.COPY) {
+            // Each batch is committed by the copy service and indexed right away
+            store = batch -> {
+                final List<Long> ids = this.tweetCopyService.copyAll(batch);
+                this.tweetIndexService.index(ids);
+                return ids.size();
+            };
+        } else {
+            store = this.tweetStorageService::storeTweets;
+        }
+
+        // Entries are parsed by the workers, if they cannot keep up, the caller parses as well
+        final ThreadPoolExecutor workers = new ThreadPoolExecutor(
+                config.getParallelism(), config.getParallelism(), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.getQueueCapacity()),
+                new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+        try (
+                final ZipFile zipFile = new ZipFile(archive);
+                final TweetBatchWriter writer = new TweetBatchWriter("archive-writer", store, config.getBatchSize(), config.getQueueCapacity())) {
+            final Map<Boolean, List<ZipEntry>> entries = zipFile.stream()
+                    .filter(entry -> entry.getName().startsWith(TWEETS_ENTRY_PREFIX) && !entry.isDirectory())
+                    .collect(partitioningBy(entry -> processedEntries.contains(entry.getName())));
+            listener.entriesFound(entries.get(true).size() + entries.get(false).size(), entries.get(true).size());
+
+            try {
+                final List<Future<?>> pending = entries.get(false).stream()
+                        .map(entry -> workers.submit(() -> importEntry(zipFile, entry, writer, listener)))
+                        .collect(toList());
+                for (Future<?> entry : pending) {
+                    entry.get();
+                }
+            } finally {
+                // The workers must not read from the archive after it has been closed
+                workers.shutdownNow();
+                workers.awaitTermination(1, TimeUnit.MINUTES);
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not import archive", e.getCause());
+        }
+    }
+
+    private void importEntry(final ZipFile zipFile, final ZipEntry entry, final TweetBatchWriter writer, final ImportListener listener) {
+        log.debug("Reading archive entry {}...", entry.getName());
+        final List<TweetEntity> tweets = new ArrayList<>();
+        try (final InputStream in = zipFile.getInputStream(entry)) {
+            this.archiveReader.read(in, (status, rawJSON) -> tweets.add(this.tweetStorageService.createEntity(status, rawJSON)));
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new IllegalStateException("Import has been aborted while reading " + entry.getName(), e);
+            }
+            log.error("Could not read archive entry {}", entry.getName(), e);
+            listener.entryFailed(entry.getName(), e);
+            return;
+        }
+
+        // Failures of the writer are not specific to this entry and abort the whole import
+        try {
+            writer.write(tweets, stored -> listener.entryStored(entry.getName(), tweets.size(), stored));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while importing " + entry.getName(), e);
+        }
+    }
+}
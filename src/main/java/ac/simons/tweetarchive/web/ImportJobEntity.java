@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.web;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.io.Serializable;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.validator.constraints.NotBlank;
+
+/**
+ * An archive import running in the background. The counters and the
+ * processed entries are maintained through
+ * {@link ImportJobRepositoryExt}, so that the state of the job survives a
+ * restart of the application.
+ */
+@Entity
+@Table(name = "import_jobs")
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Getter
+public class ImportJobEntity implements Serializable {
+
+    private static final long serialVersionUID = 3795178862457187455L;
+
+    /**
+     * The states of an import job.
+     */
+    public enum State {
+        /**
+         * The archive has been spooled and waits to be imported.
+         */
+        QUEUED,
+        /**
+         * The archive is being imported or the import has been interrupted
+         * and will be resumed.
+         */
+        RUNNING,
+        /**
+         * All entries have been processed.
+         */
+        DONE,
+        /**
+         * The import has been aborted or some entries could not be imported.
+         * The archive is kept, so that the job can be retried.
+         */
+        FAILED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * Original name of the uploaded archive.
+     */
+    @Column(name = "archive_name", nullable = false)
+    @NotBlank
+    private String archiveName;
+
+    /**
+     * Path of the archive inside the spool directory.
+     */
+    @Column(name = "spooled_archive", nullable = false)
+    @NotBlank
+    @JsonIgnore
+    private String spooledArchive;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    @NotNull
+    private State state;
+
+    @Column(name = "created_at", nullable = false)
+    @NotNull
+    private ZonedDateTime createdAt;
+
+    /**
+     * When the import has been started the last time.
+     */
+    @Column(name = "started_at")
+    private ZonedDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private ZonedDateTime finishedAt;
+
+    /**
+     * Number of tweet entries inside the archive, known after the import
+     * started.
+     */
+    @Column(name = "entries_total")
+    private Integer entriesTotal;
+
+    /**
+     * Number of entries stored completely.
+     */
+    @Column(name = "entries_processed", nullable = false)
+    private int entriesProcessed;
+
+    /**
+     * Number of entries that could not be imported and haven't been stored
+     * by a later run.
+     */
+    @Column(name = "entries_failed", nullable = false)
+    private int entriesFailed;
+
+    /**
+     * Number of tweets read from processed entries.
+     */
+    @Column(name = "tweets_read", nullable = false)
+    private long tweetsRead;
+
+    /**
+     * Number of tweets actually stored, the difference to the tweets read are
+     * duplicates and deleted tweets.
+     */
+    @Column(name = "tweets_stored", nullable = false)
+    private long tweetsStored;
+
+    /**
+     * The reason why a job failed.
+     */
+    private String message;
+
+    public ImportJobEntity(final String archiveName, final String spooledArchive) {
+        this.archiveName = archiveName;
+        this.spooledArchive = spooledArchive;
+        this.state = State.QUEUED;
+        this.createdAt = ZonedDateTime.now(ZoneId.of("UTC"));
+    }
+}
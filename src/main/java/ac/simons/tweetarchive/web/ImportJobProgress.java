@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.web;
+
+import ac.simons.tweetarchive.web.ImportJobEntity.State;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_NULL;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import lombok.Getter;
+
+/**
+ * The progress of an import job as reported by the
+ * {@link ImportJobsApiController}. Rates and estimates are only available
+ * while the job is running.
+ */
+@Getter
+@JsonInclude(NON_NULL)
+public final class ImportJobProgress {
+
+    private final long id;
+
+    private final String archiveName;
+
+    private final State state;
+
+    private final ZonedDateTime createdAt;
+
+    private final ZonedDateTime startedAt;
+
+    private final ZonedDateTime finishedAt;
+
+    private final Integer entriesTotal;
+
+    private final int entriesProcessed;
+
+    private final int entriesFailed;
+
+    private final long tweetsStored;
+
+    /**
+     * Tweets that have not been stored, because they already existed or
+     * have been deleted.
+     */
+    private final long tweetsSkipped;
+
+    private final Double tweetsPerSecond;
+
+    private final Long estimatedSecondsRemaining;
+
+    private final String message;
+
+    ImportJobProgress(final ImportJobEntity job, final Optional<ImportResult> currentRun) {
+        this.id = job.getId();
+        this.archiveName = job.getArchiveName();
+        this.state = job.getState();
+        this.createdAt = job.getCreatedAt();
+        this.startedAt = job.getStartedAt();
+        this.finishedAt = job.getFinishedAt();
+        this.entriesTotal = job.getEntriesTotal();
+        this.entriesProcessed = job.getEntriesProcessed();
+        this.entriesFailed = job.getEntriesFailed();
+        this.tweetsStored = job.getTweetsStored();
+        this.tweetsSkipped = job.getTweetsRead() - job.getTweetsStored();
+        this.tweetsPerSecond = currentRun.map(ImportResult::getTweetsPerSecond).orElse(null);
+        this.estimatedSecondsRemaining = currentRun.map(ImportResult::getEstimatedSecondsRemaining).orElse(null);
+        this.message = job.getMessage();
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.web;
+
+import ac.simons.tweetarchive.web.ImportJobEntity.State;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.repository.Repository;
+
+public interface ImportJobRepository extends Repository<ImportJobEntity, Long>, ImportJobRepositoryExt {
+
+    Optional<ImportJobEntity> findOne(final Long id);
+
+    ImportJobEntity save(final ImportJobEntity job);
+
+    List<ImportJobEntity> findAllByOrderByIdDesc();
+
+    /**
+     * @param states The states to look for
+     * @return All jobs in one of the given states, oldest first
+     */
+    List<ImportJobEntity> findAllByStateInOrderByIdAsc(final Collection<State> states);
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.web;
+
+import ac.simons.tweetarchive.web.ImportJobEntity.State;
+import java.util.Set;
+
+/**
+ * Updates of import jobs. The progress is reported concurrently from several
+ * threads, so the counters are updated in place instead of through the
+ * entity.
+ */
+public interface ImportJobRepositoryExt {
+
+    /**
+     * Marks a job as running.
+     *
+     * @param id The id of the job
+     */
+    void start(final long id);
+
+    /**
+     * Records the number of entries inside the archive.
+     *
+     * @param id The id of the job
+     * @param entriesTotal The number of tweet entries
+     */
+    void updateEntriesTotal(final long id, final int entriesTotal);
+
+    /**
+     * Records a completely stored entry and updates the counters. An entry
+     * that failed before doesn't count as failed anymore.
+     *
+     * @param id The id of the job
+     * @param name The name of the entry
+     * @param tweetsRead Number of tweets inside the entry
+     * @param tweetsStored Number of tweets actually stored
+     */
+    void entryProcessed(final long id, final String name, final int tweetsRead, final int tweetsStored);
+
+    /**
+     * Records an entry that could not be imported. It is not processed and
+     * will be imported again when the job is resumed or retried.
+     *
+     * @param id The id of the job
+     * @param name The name of the entry
+     */
+    void entryFailed(final long id, final String name);
+
+    /**
+     * @param id The id of the job
+     * @return The names of all entries that have been stored so far
+     */
+    Set<String> findProcessedEntries(final long id);
+
+    /**
+     * Queues a failed job again.
+     *
+     * @param id The id of the job
+     * @return True if the job had failed and has been queued again
+     */
+    boolean retry(final long id);
+
+    /**
+     * Marks a job as done or failed.
+     *
+     * @param id The id of the job
+     * @param state The final state
+     * @param message An optional message
+     */
+    void finish(final long id, final State state, final String message);
+}
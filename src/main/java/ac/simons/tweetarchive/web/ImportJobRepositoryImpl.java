@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.web;
+
+import static ac.simons.tweetarchive.db.tables.ImportJobEntries.IMPORT_JOB_ENTRIES;
+import static ac.simons.tweetarchive.db.tables.ImportJobs.IMPORT_JOBS;
+import ac.simons.tweetarchive.web.ImportJobEntity.State;
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.Set;
+import lombok.RequiredArgsConstructor;
+import org.jooq.DSLContext;
+import static org.jooq.impl.DSL.currentTimestamp;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Implementation of the import job updates.
+ */
+@RequiredArgsConstructor
+public class ImportJobRepositoryImpl implements ImportJobRepositoryExt {
+
+    private final DSLContext create;
+
+    @Override
+    @Transactional
+    public void start(final long id) {
+        this.create
+                .update(IMPORT_JOBS)
+                .set(IMPORT_JOBS.STATE, State.RUNNING.name())
+                .set(IMPORT_JOBS.STARTED_AT, currentTimestamp())
+                .where(IMPORT_JOBS.ID.eq(id))
+                .execute();
+    }
+
+    @Override
+    @Transactional
+    public void updateEntriesTotal(final long id, final int entriesTotal) {
+        this.create
+                .update(IMPORT_JOBS)
+                .set(IMPORT_JOBS.ENTRIES_TOTAL, entriesTotal)
+                .where(IMPORT_JOBS.ID.eq(id))
+                .execute();
+    }
+
+    @Override
+    @Transactional
+    public void entryProcessed(final long id, final String name, final int tweetsRead, final int tweetsStored) {
+        final boolean failedBefore = this.create
+                .update(IMPORT_JOB_ENTRIES)
+                .set(IMPORT_JOB_ENTRIES.FAILED, false)
+                .where(IMPORT_JOB_ENTRIES.IMPORT_JOB_ID.eq(id))
+                .and(IMPORT_JOB_ENTRIES.NAME.eq(name))
+                .and(IMPORT_JOB_ENTRIES.FAILED.isTrue())
+                .execute() == 1;
+        if (!failedBefore && insertEntry(id, name, false) == 0) {
+            return;
+        }
+        this.create
+                .update(IMPORT_JOBS)
+                .set(IMPORT_JOBS.ENTRIES_PROCESSED, IMPORT_JOBS.ENTRIES_PROCESSED.add(1))
+                .set(IMPORT_JOBS.ENTRIES_FAILED, IMPORT_JOBS.ENTRIES_FAILED.sub(failedBefore ? 1 : 0))
+                .set(IMPORT_JOBS.TWEETS_READ, IMPORT_JOBS.TWEETS_READ.add(tweetsRead))
+                .set(IMPORT_JOBS.TWEETS_STORED, IMPORT_JOBS.TWEETS_STORED.add(tweetsStored))
+                .where(IMPORT_JOBS.ID.eq(id))
+                .execute();
+    }
+
+    @Override
+    @Transactional
+    public void entryFailed(final long id, final String name) {
+        if (insertEntry(id, name, true) == 0) {
+            return;
+        }
+        this.create
+                .update(IMPORT_JOBS)
+                .set(IMPORT_JOBS.ENTRIES_FAILED, IMPORT_JOBS.ENTRIES_FAILED.add(1))
+                .where(IMPORT_JOBS.ID.eq(id))
+                .execute();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Set<String> findProcessedEntries(final long id) {
+        return new HashSet<>(this.create
+                .select(IMPORT_JOB_ENTRIES.NAME)
+                .from(IMPORT_JOB_ENTRIES)
+                .where(IMPORT_JOB_ENTRIES.IMPORT_JOB_ID.eq(id))
+                .and(IMPORT_JOB_ENTRIES.FAILED.isFalse())
+                .fetch(IMPORT_JOB_ENTRIES.NAME));
+    }
+
+    @Override
+    @Transactional
+    public boolean retry(final long id) {
+        return this.create
+                .update(IMPORT_JOBS)
+                .set(IMPORT_JOBS.STATE, State.QUEUED.name())
+                .set(IMPORT_JOBS.FINISHED_AT, (Timestamp) null)
+                .set(IMPORT_JOBS.MESSAGE, (String) null)
+                .where(IMPORT_JOBS.ID.eq(id))
+                .and(IMPORT_JOBS.STATE.eq(State.FAILED.name()))
+                .execute() == 1;
+    }
+
+    private int insertEntry(final long id, final String name, final boolean failed) {
+        return this.create
+                .insertInto(IMPORT_JOB_ENTRIES)
+                .set(IMPORT_JOB_ENTRIES.IMPORT_JOB_ID, id)
+                .set(IMPORT_JOB_ENTRIES.NAME, name)
+                .set(IMPORT_JOB_ENTRIES.FAILED, failed)
+                .onDuplicateKeyIgnore()
+                .execute();
+    }
+
+    @Override
+    @Transactional
+    public void finish(final long id, final State state, final String message) {
+        this.create
+                .update(IMPORT_JOBS)
+                .set(IMPORT_JOBS.STATE, state.name())
+                .set(IMPORT_JOBS.FINISHED_AT, currentTimestamp())
+                .set(IMPORT_JOBS.MESSAGE, message)
+                .where(IMPORT_JOBS.ID.eq(id))
+                .execute();
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.web;
+
+import ac.simons.tweetarchive.config.TweetArchiveProperties;
+import ac.simons.tweetarchive.web.ImportJobEntity.State;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import static java.util.stream.Collectors.toList;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Runs archive imports as background jobs. Uploaded archives are spooled into
+ * {@link TweetArchiveProperties.Import#getSpoolDirectory()} and imported one
+ * after another by the {@code importJobExecutor}.
+ * <br>
+ * Every processed entry of an archive is recorded, jobs that have been
+ * interrupted by a shutdown are resumed on the next start and skip those
+ * entries. Entries that could not be imported are not processed, a job with
+ * such entries ends as {@link State#FAILED failed} and can be
+ * {@link #retry(long) retried}. The spooled archive is kept until the job is
+ * done.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImportJobService {
+
+    private final ImportJobRepository importJobRepository;
+
+    private final ArchiveImporter archiveImporter;
+
+    private final TweetArchiveProperties properties;
+
+    private final TaskExecutor importJobExecutor;
+
+    /**
+     * Statistics of the jobs running right now.
+     */
+    private final Map<Long, ImportResult> currentRuns = new ConcurrentHashMap<>();
+
+    /**
+     * Spools the uploaded archive to disk and schedules its import.
+     *
+     * @param archive The uploaded archive
+     * @return The new job
+     * @throws IOException If the archive cannot be spooled
+     */
+    public ImportJobEntity submit(final MultipartFile archive) throws IOException {
+        final File spoolDirectory = this.properties.getImport().getSpoolDirectory();
+        Files.createDirectories(spoolDirectory.toPath());
+        final File spooledArchive = File.createTempFile("archive-", ".zip", spoolDirectory);
+        archive.transferTo(spooledArchive);
+
+        final ImportJobEntity job = this.importJobRepository.save(new ImportJobEntity(
+                Optional.ofNullable(archive.getOriginalFilename()).filter(s -> !s.isEmpty()).orElse(spooledArchive.getName()),
+                spooledArchive.getAbsolutePath()
+        ));
+        log.info("Queued import job {} for {}", job.getId(), job.getArchiveName());
+        schedule(job.getId());
+        return job;
+    }
+
+    /**
+     * Resumes all jobs that have not been finished before the last shutdown.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedJobs() {
+        if (!this.properties.getImport().isResumeOnStartup()) {
+            return;
+        }
+        this.importJobRepository.findAllByStateInOrderByIdAsc(Arrays.asList(State.QUEUED, State.RUNNING)).forEach(job -> {
+            log.info("Resuming import job {} ({} of {} entries processed)", job.getId(), job.getEntriesProcessed(), job.getEntriesTotal());
+            schedule(job.getId());
+        });
+    }
+
+    /**
+     * Queues a failed job again, it skips all entries stored before.
+     *
+     * @param id The id of the job
+     * @return True if the job had failed and has been queued again
+     */
+    public boolean retry(final long id) {
+        if (!this.importJobRepository.retry(id)) {
+            return false;
+        }
+        log.info("Retrying import job {}", id);
+        schedule(id);
+        return true;
+    }
+
+    public Optional<ImportJobProgress> getProgress(final long id) {
+        return this.importJobRepository.findOne(id).map(this::toProgress);
+    }
+
+    public List<ImportJobProgress> getProgress() {
+        return this.importJobRepository.findAllByOrderByIdDesc().stream().map(this::toProgress).collect(toList());
+    }
+
+    private ImportJobProgress toProgress(final ImportJobEntity job) {
+        return new ImportJobProgress(job, Optional.ofNullable(this.currentRuns.get(job.getId())));
+    }
+
+    private void schedule(final long id) {
+        this.importJobExecutor.execute(() -> run(id));
+    }
+
+    private void run(final long id) {
+        final ImportJobEntity job = this.importJobRepository.findOne(id).orElse(null);
+        if (job == null) {
+            log.warn("Import job {} has been removed", id);
+            return;
+        }
+
+        final File spooledArchive = new File(job.getSpooledArchive());
+        final ImportResult currentRun = new ImportResult();
+        this.currentRuns.put(id, currentRun);
+        try {
+            this.importJobRepository.start(id);
+            this.archiveImporter.importArchive(spooledArchive, this.importJobRepository.findProcessedEntries(id), new ImportListener() {
+                @Override
+                public void entriesFound(final int total, final int skipped) {
+                    currentRun.entriesFound(total, skipped);
+                    importJobRepository.updateEntriesTotal(id, total);
+                }
+
+                @Override
+                public void entryStored(final String name, final int tweetsRead, final int tweetsStored) {
+                    currentRun.entryStored(name, tweetsRead, tweetsStored);
+                    importJobRepository.entryProcessed(id, name, tweetsRead, tweetsStored);
+                }
+
+                @Override
+                public void entryFailed(final String name, final Exception cause) {
+                    currentRun.entryFailed(name, cause);
+                    importJobRepository.entryFailed(id, name);
+                }
+            });
+            if (currentRun.getEntriesFailed() > 0) {
+                log.warn("Import job {} stored {} new tweets in this run, but {} entries failed", id, currentRun.getTweetsStored(), currentRun.getEntriesFailed());
+                finish(id, State.FAILED, currentRun.getEntriesFailed() + " entries could not be imported", spooledArchive);
+            } else {
+                log.info("Import job {} done, stored {} new tweets in this run", id, currentRun.getTweetsStored());
+                finish(id, State.DONE, null, spooledArchive);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.info("Import job {} has been interrupted and will be resumed on the next start", id);
+        } catch (IOException | RuntimeException e) {
+            log.error("Import job {} failed", id, e);
+            finish(id, State.FAILED, e.getMessage(), spooledArchive);
+        } finally {
+            this.currentRuns.remove(id);
+        }
+    }
+
+    private void finish(final long id, final State state, final String message, final File spooledArchive) {
+        this.importJobRepository.finish(id, state, message);
+        if (state != State.DONE) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(spooledArchive.toPath());
+        } catch (IOException e) {
+            log.warn("Could not delete spooled archive {}", spooledArchive, e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.web;
+
+import java.io.IOException;
+import java.util.List;
+import javax.validation.constraints.NotNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+/**
+ * Starts archive imports and reports their progress.
+ */
+@RestController
+@RequestMapping("/imports")
+@RequiredArgsConstructor
+public final class ImportJobsApiController {
+
+    private final ImportJobService importJobService;
+
+    /**
+     * Queues the import of the given archive and returns immediately.
+     *
+     * @param archive The archive downloaded from Twitter
+     * @return The new job with its location
+     * @throws IOException If the archive cannot be spooled
+     */
+    @PostMapping
+    public ResponseEntity<ImportJobProgress> create(@NotNull final MultipartFile archive) throws IOException {
+        final long id = this.importJobService.submit(archive).getId();
+        return ResponseEntity
+                .accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").buildAndExpand(id).toUri())
+                .body(this.importJobService.getProgress(id).get());
+    }
+
+    @GetMapping
+    public List<ImportJobProgress> getJobs() {
+        return this.importJobService.getProgress();
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<ImportJobProgress> getJob(@PathVariable final long id) {
+        return this.importJobService.getProgress(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Queues a failed job again.
+     *
+     * @param id The id of the job
+     * @return The job or {@literal 409} if it hasn't failed
+     */
+    @PostMapping("/{id}/retry")
+    public ResponseEntity<ImportJobProgress> retry(@PathVariable final long id) {
+        final boolean queued = this.importJobService.retry(id);
+        return this.importJobService.getProgress(id)
+                .map(job -> queued ? ResponseEntity.accepted().body(job) : ResponseEntity.status(HttpStatus.CONFLICT).body(job))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
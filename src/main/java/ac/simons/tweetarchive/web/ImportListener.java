@@ -0,0 +1,50 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.web;
+
+/**
+ * Gets notified about the progress of an archive import. Implementations
+ * must be thread safe, entries are processed concurrently.
+ */
+public interface ImportListener {
+
+    /**
+     * Called once after the archive has been opened.
+     *
+     * @param total The number of tweet entries (months) inside the archive
+     * @param skipped The number of entries skipped as they have already been
+     * processed
+     */
+    void entriesFound(int total, int skipped);
+
+    /**
+     * Called after all tweets of an entry have been committed.
+     *
+     * @param name The name of the entry
+     * @param tweetsRead The number of tweets inside the entry
+     * @param tweetsStored The number of tweets actually stored, the others
+     * already existed
+     */
+    void entryStored(String name, int tweetsRead, int tweetsStored);
+
+    /**
+     * Called when an entry could not be read.
+     *
+     * @param name The name of the entry
+     * @param cause The reason
+     */
+    void entryFailed(String name, Exception cause);
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.web;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of one run of an archive import, updated concurrently by the
+ * workers and the writer.
+ */
+public final class ImportResult implements ImportListener {
+
+    private final long startedAt = System.nanoTime();
+
+    private final AtomicInteger entriesTotal = new AtomicInteger();
+
+    private final AtomicInteger entriesSkipped = new AtomicInteger();
+
+    private final AtomicInteger entriesStored = new AtomicInteger();
+
+    private final AtomicInteger entriesFailed = new AtomicInteger();
+
+    private final AtomicLong tweetsRead = new AtomicLong();
+
+    private final AtomicLong tweetsStored = new AtomicLong();
+
+    @Override
+    public void entriesFound(final int total, final int skipped) {
+        this.entriesTotal.set(total);
+        this.entriesSkipped.set(skipped);
+    }
+
+    @Override
+    public void entryStored(final String name, final int numberOfTweetsRead, final int numberOfTweetsStored) {
+        this.entriesStored.incrementAndGet();
+        this.tweetsRead.addAndGet(numberOfTweetsRead);
+        this.tweetsStored.addAndGet(numberOfTweetsStored);
+    }
+
+    @Override
+    public void entryFailed(final String name, final Exception cause) {
+        this.entriesFailed.incrementAndGet();
+    }
+
+    public int getEntriesTotal() {
+        return this.entriesTotal.get();
+    }
+
+    public int getEntriesSkipped() {
+        return this.entriesSkipped.get();
+    }
+
+    public int getEntriesStored() {
+        return this.entriesStored.get();
+    }
+
+    public int getEntriesFailed() {
+        return this.entriesFailed.get();
+    }
+
+    public long getTweetsRead() {
+        return this.tweetsRead.get();
+    }
+
+    public long getTweetsStored() {
+        return this.tweetsStored.get();
+    }
+
+    /**
+     * @return Number of tweets read and stored per second in this run
+     */
+    public double getTweetsPerSecond() {
+        final long elapsed = System.nanoTime() - this.startedAt;
+        return elapsed == 0 ? 0.0 : this.tweetsRead.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    /**
+     * Estimates the remaining time from the average time spent per entry in
+     * this run.
+     *
+     * @return Estimated number of seconds until all entries are processed or
+     * {@literal null} if nothing has been processed yet
+     */
+    public Long getEstimatedSecondsRemaining() {
+        final int processed = this.entriesStored.get() + this.entriesFailed.get();
+        if (processed == 0) {
+            return null;
+        }
+        final int remaining = Math.max(0, this.entriesTotal.get() - this.entriesSkipped.get() - processed);
+        return TimeUnit.NANOSECONDS.toSeconds((System.nanoTime() - this.startedAt) / processed * remaining);
+    }
+}
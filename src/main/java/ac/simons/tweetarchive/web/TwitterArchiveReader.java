@@ -0,0 +1,152 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.web;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import lombok.extern.slf4j.Slf4j;
+import org.joor.Reflect;
+import twitter4j.JSONException;
+import twitter4j.JSONObject;
+import twitter4j.Status;
+
+/**
+ * Reads the statuses of a single {@code data/js/tweets/YYYY_MM.js} entry of an
+ * official Twitter archive. The entry is tokenized incrementally, only one
+ * status is materialized at a time and handed downstream before the next one
+ * is read, so memory usage doesn't depend on the size of the archive.
+ * <br>
+ * As you can see, it get's nasty here...
+ * <br>
+ * Twitter4j doesn't offer an official way to parse Twitters JSON, so I brute
+ * force my way into the twitter4j.StatusJSONImpl implementation of Status.
+ * <br>
+ * And even if there was an official way, the JSON files inside the official(!)
+ * Twitter archive differ from the API, even if they are said to be identical.
+ * By the way, I'm not the only one, who
+ * <a href="https://twittercommunity.com/t/why-does-twitter-json-archive-have-a-different-format-than-the-rest-api-1-1/35530">noticed
+ * that</a>. So the statuses are brought into the format of the official API on
+ * the fly: The creation date is reformatted and the media sizes are turned into
+ * an object.
+ * <br>
+ * Instances are thread safe.
+ */
+@Slf4j
+public final class TwitterArchiveReader {
+
+    private static final DateTimeFormatter DATE_FORMAT_IN = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss Z", Locale.US);
+    private static final DateTimeFormatter DATE_FORMAT_OUT = DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss Z yyyy", Locale.US);
+
+    private final ObjectMapper objectMapper;
+
+    private final Reflect statusFactory = Reflect.on("twitter4j.StatusJSONImpl");
+
+    public TwitterArchiveReader() {
+        // The entries are read from a zip stream that must stay open
+        this.objectMapper = new ObjectMapper(new JsonFactory().disable(JsonParser.Feature.AUTO_CLOSE_SOURCE));
+    }
+
+    /**
+     * Reads all statuses from the given entry. The stream is not closed.
+     *
+     * @param entry The content of one archive entry
+     * @param handler Receives each status together with its raw json
+     * @return The number of statuses read
+     * @throws IOException If the entry cannot be read or isn't a list of tweets
+     * @throws JSONException If a single status cannot be parsed by twitter4j
+     */
+    public int read(final InputStream entry, final BiConsumer<Status, String> handler) throws IOException, JSONException {
+        final PushbackReader reader = new PushbackReader(new InputStreamReader(entry, StandardCharsets.UTF_8));
+        // Skip the JavaScript assignment in front of the actual array
+        int c;
+        do {
+            c = reader.read();
+        } while (c != -1 && c != '[');
+        if (c == -1) {
+            throw new IOException("Archive entry doesn't contain a list of tweets");
+        }
+        reader.unread(c);
+
+        int cnt = 0;
+        try (final JsonParser parser = this.objectMapper.getFactory().createParser((Reader) reader)) {
+            parser.nextToken();
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                final ObjectNode node = this.objectMapper.readTree(parser);
+                normalize(node);
+                final String rawJSON = this.objectMapper.writeValueAsString(node);
+                // https://twitter.com/lukaseder/status/772772372990586882 ;)
+                final Status status = this.statusFactory.create(new JSONObject(rawJSON)).as(Status.class);
+                handler.accept(status, rawJSON);
+                ++cnt;
+            }
+        }
+        return cnt;
+    }
+
+    /**
+     * Recursively rewrites all creation dates and media sizes inside the given
+     * node into the format used by the API.
+     *
+     * @param node The node to normalize
+     */
+    static void normalize(final JsonNode node) {
+        if (node.isObject()) {
+            final Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                final Map.Entry<String, JsonNode> field = fields.next();
+                final JsonNode value = field.getValue();
+                if ("created_at".equals(field.getKey()) && value.isTextual()) {
+                    field.setValue(((ObjectNode) node).textNode(reformatDate(value.asText())));
+                } else if ("sizes".equals(field.getKey()) && value.isArray()) {
+                    field.setValue(((ObjectNode) node).objectNode());
+                } else {
+                    normalize(value);
+                }
+            }
+        } else if (node.isArray()) {
+            ((ArrayNode) node).forEach(TwitterArchiveReader::normalize);
+        }
+    }
+
+    static String reformatDate(final String createdAt) {
+        String rv = createdAt;
+        try {
+            rv = OffsetDateTime.parse(createdAt, DATE_FORMAT_IN).withOffsetSameInstant(ZoneOffset.UTC).format(DATE_FORMAT_OUT);
+        } catch (DateTimeParseException ex) {
+            log.warn("Unexpected date format in twitter archive: {}", createdAt);
+        }
+        return rv;
+    }
+}
@@ -0,0 +1,38 @@
+/* 
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+create table import_jobs (
+    id                      BIGSERIAL PRIMARY KEY,
+    archive_name            VARCHAR(255) NOT NULL,
+    spooled_archive         VARCHAR(1024) NOT NULL,
+    state                   VARCHAR(16) NOT NULL,
+    created_at              TIMESTAMP WITH TIME ZONE NOT NULL,
+    started_at              TIMESTAMP WITH TIME ZONE,
+    finished_at             TIMESTAMP WITH TIME ZONE,
+    entries_total           INTEGER,
+    entries_processed       INTEGER NOT NULL DEFAULT 0,
+    entries_failed          INTEGER NOT NULL DEFAULT 0,
+    tweets_read             BIGINT NOT NULL DEFAULT 0,
+    tweets_stored           BIGINT NOT NULL DEFAULT 0,
+    message                 TEXT
+);
+
+create table import_job_entries (
+    import_job_id           BIGINT NOT NULL REFERENCES import_jobs(id) ON DELETE CASCADE,
+    name                    VARCHAR(255) NOT NULL,
+    failed                  BOOLEAN NOT NULL,
+    PRIMARY KEY (import_job_id, name)
+);
@@ -0,0 +1,82 @@
+/* 
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+-- The path contains the ids of all tweets from the start of the conversation
+-- down to and including the tweet itself. Replies to tweets that are not in the
+-- archive (yet) start with the id of the missing tweet.
+ALTER TABLE tweets
+    ADD COLUMN conversation_id   BIGINT,
+    ADD COLUMN conversation_path BIGINT[];
+
+CREATE INDEX tweets_in_reply_to_status_id_idx ON tweets (in_reply_to_status_id);
+
+WITH RECURSIVE threads(id, conversation_path) AS (
+    SELECT t.id, CASE WHEN t.in_reply_to_status_id IS NULL THEN ARRAY[t.id] ELSE ARRAY[t.in_reply_to_status_id, t.id] END
+    FROM tweets t
+    WHERE t.in_reply_to_status_id IS NULL
+       OR NOT EXISTS (SELECT 1 FROM tweets p WHERE p.id = t.in_reply_to_status_id)
+    UNION ALL
+    SELECT t.id, th.conversation_path || t.id
+    FROM threads th
+    JOIN tweets t ON t.in_reply_to_status_id = th.id
+)
+UPDATE tweets t
+   SET conversation_id = th.conversation_path[1],
+       conversation_path = th.conversation_path
+  FROM threads th
+ WHERE th.id = t.id;
+
+CREATE INDEX tweets_conversation_id_idx ON tweets (conversation_id);
+
+CREATE FUNCTION tweets_join_conversation() RETURNS trigger AS $$
+DECLARE
+    parent_path BIGINT[];
+BEGIN
+    IF NEW.in_reply_to_status_id IS NULL THEN
+        NEW.conversation_path := ARRAY[NEW.id];
+    ELSE
+        SELECT conversation_path INTO parent_path FROM tweets WHERE id = NEW.in_reply_to_status_id;
+        NEW.conversation_path := COALESCE(parent_path, ARRAY[NEW.in_reply_to_status_id]) || NEW.id;
+    END IF;
+    NEW.conversation_id := NEW.conversation_path[1];
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Moves replies that have been stored before the tweet they reply to into the
+-- conversation of that tweet
+CREATE FUNCTION tweets_adopt_replies() RETURNS trigger AS $$
+DECLARE
+    own_path BIGINT[];
+BEGIN
+    -- Re-read, the tweet may have been adopted itself since it has been inserted
+    SELECT conversation_path INTO own_path FROM tweets WHERE id = NEW.id;
+    IF cardinality(own_path) > 1 THEN
+        UPDATE tweets
+           SET conversation_id = own_path[1],
+               conversation_path = own_path[1:cardinality(own_path) - 1] || conversation_path
+         WHERE conversation_id = NEW.id
+           AND id <> NEW.id;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER tweets_join_conversation BEFORE INSERT ON tweets
+    FOR EACH ROW EXECUTE PROCEDURE tweets_join_conversation();
+
+CREATE TRIGGER tweets_adopt_replies AFTER INSERT ON tweets
+    FOR EACH ROW EXECUTE PROCEDURE tweets_adopt_replies();
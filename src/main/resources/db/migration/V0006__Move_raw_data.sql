@@ -0,0 +1,27 @@
+/* 
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+-- The raw data is only needed for exports, keeping it apart keeps the rows read
+-- for searches and conversations small. There's no foreign key to tweets as
+-- both tables are maintained together.
+create table tweets_raw_data (
+    id                      BIGINT PRIMARY KEY,
+    raw_data                JSONB NOT NULL
+);
+
+INSERT INTO tweets_raw_data (id, raw_data) SELECT id, raw_data FROM tweets;
+
+ALTER TABLE tweets DROP COLUMN raw_data;
@@ -0,0 +1,30 @@
+/* 
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+-- Dictionaries trained on the raw data, the id is the id zstd stores in each frame
+create table raw_data_dictionaries (
+    id                      BIGINT PRIMARY KEY,
+    dictionary              BYTEA NOT NULL,
+    created_at              TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+ALTER TABLE tweets_raw_data
+    ALTER COLUMN raw_data DROP NOT NULL,
+    ADD COLUMN compressed_raw_data BYTEA,
+    ADD CONSTRAINT tweets_raw_data_present CHECK (raw_data IS NOT NULL OR compressed_raw_data IS NOT NULL);
+
+-- Already compressed, so don't let TOAST try again
+ALTER TABLE tweets_raw_data ALTER COLUMN compressed_raw_data SET STORAGE EXTERNAL;
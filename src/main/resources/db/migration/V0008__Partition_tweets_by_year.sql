@@ -0,0 +1,118 @@
+/* 
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+-- Tweets are partitioned by the year they have been created in (UTC), so that
+-- queries restricted to a date range only touch the partitions of those years
+-- and old years can be vacuumed, moved to another tablespace or detached and
+-- archived on their own. Requires PostgreSQL 11.
+ALTER TABLE tweets RENAME TO tweets_unpartitioned;
+DROP TRIGGER tweets_join_conversation ON tweets_unpartitioned;
+DROP TRIGGER tweets_adopt_replies ON tweets_unpartitioned;
+ALTER TABLE tweets_unpartitioned DROP CONSTRAINT tweets_pkey;
+DROP INDEX tweets_created_at_idx;
+DROP INDEX tweets_in_reply_to_status_id_idx;
+DROP INDEX tweets_conversation_id_idx;
+
+CREATE TABLE tweets (LIKE tweets_unpartitioned INCLUDING DEFAULTS INCLUDING CONSTRAINTS)
+    PARTITION BY RANGE (created_at);
+
+-- A primary key of a partitioned table must contain the partition key and
+-- doesn't prevent storing the same id twice with different creation dates. The
+-- id doesn't always determine the creation date: Ids before November 2010 are
+-- sequential and contain no timestamp. The ids of all tweets are therefore
+-- registered in the unpartitioned tweet_ids, which enforces that each id is unique.
+ALTER TABLE tweets ADD CONSTRAINT tweets_pkey PRIMARY KEY (id, created_at);
+COMMENT ON CONSTRAINT tweets_pkey ON tweets IS 'Contains the partition key, the uniqueness of the id alone is enforced by tweet_ids';
+CREATE INDEX tweets_created_at_idx ON tweets (created_at);
+CREATE INDEX tweets_in_reply_to_status_id_idx ON tweets (in_reply_to_status_id);
+CREATE INDEX tweets_conversation_id_idx ON tweets (conversation_id);
+
+create table tweet_ids (
+    id                      BIGINT PRIMARY KEY
+);
+
+-- Registers the id of a new tweet. A tweet whose id is already registered,
+-- for example by a concurrent transaction, is skipped like a conflict on the
+-- primary key instead of failing the whole statement.
+CREATE FUNCTION tweets_register_id() RETURNS trigger AS $$
+BEGIN
+    INSERT INTO tweet_ids (id) VALUES (NEW.id) ON CONFLICT (id) DO NOTHING;
+    IF NOT FOUND THEN
+        RETURN NULL;
+    END IF;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE FUNCTION tweets_unregister_id() RETURNS trigger AS $$
+BEGIN
+    DELETE FROM tweet_ids WHERE id = OLD.id;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Tweets from years without a partition of their own
+CREATE TABLE tweets_default PARTITION OF tweets DEFAULT;
+
+-- Row level triggers before insert are not supported on partitioned tables and
+-- must be created on each partition
+CREATE TRIGGER tweets_join_conversation BEFORE INSERT ON tweets_default
+    FOR EACH ROW EXECUTE PROCEDURE tweets_join_conversation();
+CREATE TRIGGER tweets_register_id BEFORE INSERT ON tweets_default
+    FOR EACH ROW EXECUTE PROCEDURE tweets_register_id();
+
+CREATE TRIGGER tweets_unregister_id AFTER DELETE ON tweets
+    FOR EACH ROW EXECUTE PROCEDURE tweets_unregister_id();
+
+-- Creates the partition for the given year if it doesn't exist yet and moves
+-- the tweets of that year out of the default partition. The detached default
+-- partition doesn't fire the triggers of the tweets table, so the ids of the
+-- moved tweets are unregistered beforehand.
+CREATE FUNCTION tweets_create_partition(year INTEGER) RETURNS VOID AS $$
+DECLARE
+    partition_name TEXT := 'tweets_' || year;
+    lower_bound TIMESTAMP WITH TIME ZONE := make_timestamptz(year, 1, 1, 0, 0, 0, 'UTC');
+    upper_bound TIMESTAMP WITH TIME ZONE := make_timestamptz(year + 1, 1, 1, 0, 0, 0, 'UTC');
+BEGIN
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN;
+    END IF;
+
+    ALTER TABLE tweets DETACH PARTITION tweets_default;
+    EXECUTE format('CREATE TABLE %I PARTITION OF tweets FOR VALUES FROM (%L) TO (%L)', partition_name, lower_bound, upper_bound);
+    EXECUTE format('CREATE TRIGGER tweets_join_conversation BEFORE INSERT ON %I FOR EACH ROW EXECUTE PROCEDURE tweets_join_conversation()', partition_name);
+    EXECUTE format('CREATE TRIGGER tweets_register_id BEFORE INSERT ON %I FOR EACH ROW EXECUTE PROCEDURE tweets_register_id()', partition_name);
+    DELETE FROM tweet_ids WHERE id IN (SELECT id FROM tweets_default WHERE created_at >= lower_bound AND created_at < upper_bound);
+    -- Tweets are reinserted after the tweets they reply to, so that their conversations stay the same
+    WITH moved AS (
+        DELETE FROM tweets_default WHERE created_at >= lower_bound AND created_at < upper_bound RETURNING *
+    )
+    INSERT INTO tweets SELECT * FROM moved ORDER BY cardinality(conversation_path), id;
+    ALTER TABLE tweets ATTACH PARTITION tweets_default DEFAULT;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Twitter has been founded in 2006, later years are created by the application
+SELECT tweets_create_partition(year) FROM generate_series(2006, extract(YEAR FROM now() AT TIME ZONE 'UTC')::INTEGER + 1) AS year;
+
+-- Conversations are complete in the old table, inserting parents first keeps them
+INSERT INTO tweets
+    SELECT * FROM tweets_unpartitioned ORDER BY cardinality(conversation_path), id;
+
+CREATE TRIGGER tweets_adopt_replies AFTER INSERT ON tweets
+    FOR EACH ROW EXECUTE PROCEDURE tweets_adopt_replies();
+
+DROP TABLE tweets_unpartitioned;
@@ -0,0 +1,25 @@
+/* 
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+-- Ids of deleted tweets. Deletions are recorded here first and applied in
+-- batches, the tombstones are kept so that deleted tweets are not imported again.
+create table tweet_tombstones (
+    id                      BIGINT PRIMARY KEY,
+    deleted_at              TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    applied_at              TIMESTAMP WITH TIME ZONE
+);
+
+CREATE INDEX tweet_tombstones_pending_idx ON tweet_tombstones (id) WHERE applied_at IS NULL;
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import static ac.simons.tweetarchive.db.tables.RawDataDictionaries.RAW_DATA_DICTIONARIES;
+import ac.simons.tweetarchive.config.TweetArchiveProperties;
+import ac.simons.tweetarchive.config.TweetArchiveProperties.RawDataCompression;
+import com.github.luben.zstd.Zstd;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import org.jooq.DSLContext;
+import org.jooq.Record1;
+import org.jooq.Result;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.jooq.tools.jdbc.MockConnection;
+import org.jooq.tools.jdbc.MockDataProvider;
+import org.jooq.tools.jdbc.MockExecuteContext;
+import org.jooq.tools.jdbc.MockResult;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+public class RawDataCodecTest {
+
+    /**
+     * Keeps the dictionaries in memory instead of {@code raw_data_dictionaries}.
+     */
+    private static final class Dictionaries implements MockDataProvider {
+
+        private final DSLContext create = DSL.using(SQLDialect.POSTGRES);
+
+        private final Map<Long, byte[]> dictionaries = new ConcurrentHashMap<>();
+
+        @Override
+        public MockResult[] execute(final MockExecuteContext ctx) {
+            final String sql = ctx.sql().toLowerCase();
+            final Object[] bindings = ctx.bindings();
+            if (sql.startsWith("insert")) {
+                this.dictionaries.putIfAbsent((Long) bindings[0], (byte[]) bindings[1]);
+                return new MockResult[]{new MockResult(1, null)};
+            } else if (sql.contains("where")) {
+                final Result<Record1<byte[]>> result = this.create.newResult(RAW_DATA_DICTIONARIES.DICTIONARY);
+                Optional.ofNullable(this.dictionaries.get((Long) bindings[0]))
+                        .map(dictionary -> this.create.newRecord(RAW_DATA_DICTIONARIES.DICTIONARY).value1(dictionary))
+                        .ifPresent(result::add);
+                return new MockResult[]{new MockResult(result.size(), result)};
+            }
+            // Only needed for the newest dictionary, which is either trained
+            // by the codec itself or none
+            return new MockResult[]{new MockResult(0, this.create.newResult(RAW_DATA_DICTIONARIES.ID, RAW_DATA_DICTIONARIES.DICTIONARY))};
+        }
+    }
+
+    private final Dictionaries dictionaries = new Dictionaries();
+
+    private RawDataCodec newCodec() {
+        final TweetArchiveProperties properties = new TweetArchiveProperties();
+        properties.getRawData().setCompression(RawDataCompression.ZSTD);
+        return new RawDataCodec(DSL.using(new MockConnection(this.dictionaries), SQLDialect.POSTGRES), properties);
+    }
+
+    private static List<String> tweets(final int n) {
+        final Random random = new Random(4711);
+        return IntStream.range(0, n)
+                .mapToObj(i -> "{\"created_at\":\"Sun Sep 04 " + (10 + random.nextInt(14)) + ":0" + random.nextInt(10) + ":00 +0000 2016\","
+                        + "\"id\":" + (770000000000000000L + random.nextInt(Integer.MAX_VALUE)) + ","
+                        + "\"text\":\"Tweet number " + i + " about " + (random.nextBoolean() ? "#Spring" : "#jOOQ") + " \\u00fcber " + Long.toHexString(random.nextLong()) + "\","
+                        + "\"source\":\"<a href=\\\"http://twitter.com\\\" rel=\\\"nofollow\\\">Twitter Web Client</a>\","
+                        + "\"user\":{\"id\":1863311,\"screen_name\":\"rotnroll666\",\"followers_count\":" + random.nextInt(5000) + "},"
+                        + "\"lang\":\"" + (random.nextBoolean() ? "en" : "de") + "\",\"retweet_count\":" + random.nextInt(100) + "}")
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void decompressShouldRestoreTheExactJson() {
+        final RawDataCodec codec = newCodec();
+        final String json = "{ \"text\" : \"Grüße 😀\",  \"id\":1 }";
+
+        final byte[] frame = codec.compress(json);
+        assertThat(Zstd.getDictIdFromFrame(frame), is(0L));
+        assertArrayEquals(json.getBytes(StandardCharsets.UTF_8), codec.decompress(frame).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void decompressShouldRestoreTheExactJsonWithTrainedDictionary() {
+        final List<String> tweets = tweets(5001);
+        final String json = tweets.remove(5000);
+        final RawDataCodec codec = newCodec();
+        final long dictionaryId = codec.train(tweets);
+        assertThat(dictionaryId, is(not(0L)));
+
+        final byte[] frame = codec.compress(json);
+        assertThat(Zstd.getDictIdFromFrame(frame), is(dictionaryId));
+        assertArrayEquals(json.getBytes(StandardCharsets.UTF_8), codec.decompress(frame).getBytes(StandardCharsets.UTF_8));
+        // A new codec loads the dictionary from the database like after a restart
+        assertThat(newCodec().decompress(frame), is(json));
+    }
+
+    @Test
+    public void encodeAndDecodeShouldRoundTrip() {
+        final RawDataCodec codec = newCodec();
+        final String json = tweets(1).get(0);
+        final TweetRawDataEntity rawData = new TweetRawDataEntity(1, json);
+
+        codec.encode(rawData);
+        assertThat(rawData.getRawData(), is(nullValue()));
+        assertThat(rawData.getCompressedRawData(), is(notNullValue()));
+        assertThat(codec.decode(rawData), is(json));
+    }
+
+    @Test
+    public void decompressShouldRejectOversizedFrames() {
+        final byte[] frame = Zstd.compress(new byte[1024 * 1024 + 1]);
+        try {
+            newCodec().decompress(frame);
+            fail("Oversized frame should have been rejected");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("Invalid frame content size " + (1024 * 1024 + 1)));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import java.util.Arrays;
+import java.util.List;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class ReplyGraphTest {
+
+    private static String ids(final long[] ids) {
+        Arrays.sort(ids);
+        return Arrays.toString(ids);
+    }
+
+    /**
+     * Creates the following conversation, 1 is not in the archive.
+     * <pre>
+     * 1 - 2 - 3 - 4
+     *       \ 5
+     * </pre>
+     *
+     * @return A new graph
+     */
+    private static ReplyGraph graph() {
+        final ReplyGraph graph = new ReplyGraph();
+        graph.add(4, 3L);
+        graph.add(2, 1L);
+        graph.add(3, 2L);
+        graph.add(5, 2L);
+        graph.add(6, null);
+        return graph;
+    }
+
+    @Test
+    public void shouldRetrieveConversations() {
+        final ReplyGraph graph = graph();
+        assertThat(ids(graph.getConversation(3, Integer.MAX_VALUE)), is("[2, 3, 4]"));
+        assertThat(ids(graph.getConversation(2, Integer.MAX_VALUE)), is("[2, 3, 4, 5]"));
+        assertThat(ids(graph.getConversation(2, 1)), is("[2, 3, 5]"));
+        assertThat(ids(graph.getConversation(1, Integer.MAX_VALUE)), is("[]"));
+        assertThat(graph.getTweets(), is(5));
+        assertThat(graph.getNodes(), is(6));
+    }
+
+    @Test
+    public void shouldKeepRemovedTweetsAsPlaceholders() {
+        final ReplyGraph graph = graph();
+        graph.remove(3);
+        assertThat(ids(graph.getConversation(4, Integer.MAX_VALUE)), is("[2, 4]"));
+        assertThat(ids(graph.getConversation(3, Integer.MAX_VALUE)), is("[]"));
+    }
+
+    @Test
+    public void shouldComputeLongestConversations() {
+        final List<ReplyGraph.Conversation> conversations = graph().getLongestConversations(10);
+        assertThat(conversations.size(), is(1));
+        assertThat(conversations.get(0).getId(), is(1L));
+        assertThat(conversations.get(0).isInArchive(), is(false));
+        assertThat(conversations.get(0).getTweets(), is(4));
+        assertThat(conversations.get(0).getDepth(), is(3));
+    }
+
+    @Test
+    public void shouldComputeMostRepliedTweets() {
+        final List<ReplyGraph.RepliedTweet> tweets = graph().getMostRepliedTweets(2);
+        assertThat(tweets.size(), is(2));
+        assertThat(tweets.get(0).getId(), is(2L));
+        assertThat(tweets.get(0).getReplies(), is(2));
+        assertThat(tweets.get(1).getReplies(), is(1));
+    }
+
+    @Test
+    public void shouldNotRankRemovedTweets() {
+        final ReplyGraph graph = graph();
+        graph.remove(4);
+        graph.remove(4);
+
+        final List<ReplyGraph.RepliedTweet> tweets = graph.getMostRepliedTweets(10);
+        assertThat(tweets.size(), is(2));
+        assertThat(tweets.get(0).getId(), is(2L));
+        assertThat(tweets.get(0).getReplies(), is(2));
+        assertThat(tweets.get(1).getId(), is(1L));
+        assertThat(tweets.get(1).getReplies(), is(1));
+
+        List<ReplyGraph.Conversation> conversations = graph.getLongestConversations(10);
+        assertThat(conversations.size(), is(1));
+        assertThat(conversations.get(0).getTweets(), is(3));
+        assertThat(conversations.get(0).getDepth(), is(2));
+
+        graph.remove(3);
+        graph.remove(5);
+        assertThat(graph.getMostRepliedTweets(10).size(), is(1));
+        conversations = graph.getLongestConversations(10);
+        assertThat(conversations.get(0).getTweets(), is(1));
+        assertThat(conversations.get(0).getDepth(), is(1));
+
+        graph.add(4, 3L);
+        assertThat(graph.getMostRepliedTweets(10).size(), is(2));
+        assertThat(graph.getLongestConversations(10).get(0).getDepth(), is(3));
+    }
+
+    @Test
+    public void shouldGrow() {
+        final ReplyGraph graph = new ReplyGraph();
+        for (long id = 1; id <= 100_000; ++id) {
+            graph.add(id, id == 1 ? null : id - 1);
+        }
+        assertThat(graph.getConversation(50_000, 2).length, is(50_002));
+        assertThat(graph.getLongestConversations(1).get(0).getDepth(), is(99_999));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.After;
+import org.junit.Test;
+
+public class ShardedIndexSearcherTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @After
+    public void shutdownExecutor() {
+        this.executor.shutdownNow();
+    }
+
+    private static DirectoryReader createShard(final String... segments) throws IOException {
+        final Directory directory = new RAMDirectory();
+        try (final IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new WhitespaceAnalyzer()))) {
+            for (String segment : segments) {
+                for (String content : segment.split(",")) {
+                    final Document document = new Document();
+                    document.add(new TextField("content", content, Field.Store.YES));
+                    writer.addDocument(document);
+                }
+                writer.commit();
+            }
+        }
+        return DirectoryReader.open(directory);
+    }
+
+    @Test
+    public void shouldSearchOneSlicePerShard() throws IOException {
+        try (final IndexReader reader = new MultiReader(
+                createShard("java spring,java,kotlin", "java java,spring"),
+                createShard("java kotlin,java java java", "spring,java"))) {
+            assertThat(reader.leaves().size(), is(4));
+
+            final ShardedIndexSearcher shardedIndexSearcher = new ShardedIndexSearcher(reader, this.executor);
+            assertThat(shardedIndexSearcher.getNumberOfSlices(), is(2));
+
+            final TermQuery query = new TermQuery(new Term("content", "java"));
+            final TopDocs expected = new IndexSearcher(reader).search(query, 4);
+            final TopDocs actual = shardedIndexSearcher.search(query, 4);
+            assertThat(actual.totalHits, is(expected.totalHits));
+            assertThat(docs(actual.scoreDocs), is(docs(expected.scoreDocs)));
+        }
+    }
+
+    private static String docs(final ScoreDoc[] scoreDocs) {
+        return Arrays.toString(Arrays.stream(scoreDocs).mapToInt(scoreDoc -> scoreDoc.doc).toArray());
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+public class TweetBatchWriterTest {
+
+    private static List<TweetEntity> tweets(final int n) {
+        return IntStream.range(0, n).mapToObj(i -> new TweetEntity()).collect(Collectors.toList());
+    }
+
+    @Test
+    public void shouldStoreInBatches() throws InterruptedException {
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger stored = new AtomicInteger();
+        try (final TweetBatchWriter writer = new TweetBatchWriter("test-writer", batch -> {
+            batchSizes.add(batch.size());
+            return batch.size();
+        }, 3, 1)) {
+            writer.write(tweets(7), stored::addAndGet);
+            writer.write(tweets(2), stored::addAndGet);
+        }
+        assertThat(batchSizes.toString(), is("[3, 3, 1, 2]"));
+        assertThat(stored.get(), is(9));
+    }
+
+    @Test
+    public void shouldPropagateFailures() throws InterruptedException {
+        final TweetBatchWriter writer = new TweetBatchWriter("test-writer", batch -> {
+            throw new IllegalStateException("Storage is gone");
+        }, 3, 1);
+        writer.write(tweets(1), stored -> fail("Nothing should have been stored"));
+        try {
+            writer.close();
+            fail("Failure should have been propagated");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("Storage is gone"));
+        }
+    }
+
+    @Test
+    public void shouldPropagateErrors() throws InterruptedException {
+        final TweetBatchWriter writer = new TweetBatchWriter("test-writer", batch -> {
+            throw new AssertionError("Broken");
+        }, 3, 1);
+        writer.write(tweets(1), stored -> fail("Nothing should have been stored"));
+        try {
+            writer.close();
+            fail("Error should have been propagated");
+        } catch (IllegalStateException e) {
+            assertThat(e.getCause().getMessage(), is("Broken"));
+        }
+        try {
+            writer.write(tweets(1), stored -> fail("Nothing should have been stored"));
+            fail("Writer should have been stopped");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("Writer died"));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Scanner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import org.joor.Reflect;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+import twitter4j.JSONException;
+import twitter4j.JSONObject;
+import twitter4j.Status;
+
+public class TweetEntityMapperTest {
+
+    /**
+     * The pattern that has been used to extract the source before.
+     */
+    private static final Pattern SOURCE_PATTERN = Pattern.compile("<a.*?>(.*)</a>");
+
+    private final Status simpleTweet;
+
+    private final TweetEntityMapper tweetEntityMapper = new TweetEntityMapper();
+
+    public TweetEntityMapperTest() throws IOException, JSONException {
+        final Reflect statusFactory = Reflect.on("twitter4j.StatusJSONImpl");
+        try (final InputStream in = this.getClass().getResourceAsStream("/tweets/simple-tweet.json")) {
+            simpleTweet = statusFactory.create(new JSONObject(new Scanner(in, "UTF-8").useDelimiter("\\Z").next())).as(Status.class);
+        }
+    }
+
+    @Test
+    public void renderContentShouldWork() {
+        assertThat(this.tweetEntityMapper.renderContent(simpleTweet), is("RT @euregjug: Meldet euch zum Vortrag am 14.9 an http://www.euregjug.eu/register/9 Ihr könnt eine @jetbrains Lizenz und Bücher aus dem @dpunkt_verlag gewinnen…"));
+    }
+
+    @Test
+    public void parseSourceShouldWork() {
+        assertThat(this.tweetEntityMapper.parseSource(simpleTweet.getSource()), is("Twitter for Mac"));
+        assertThat(this.tweetEntityMapper.parseSource(null), is(nullValue()));
+        assertThat(this.tweetEntityMapper.parseSource(""), is(nullValue()));
+    }
+
+    @Test
+    public void parseSourceShouldBehaveLikeThePattern() {
+        for (String source : Arrays.asList(
+                "<a href=\"http://twitter.com\" rel=\"nofollow\">Twitter Web Client</a>",
+                "  <a href=\"x\"> Tweetbot for iΟS </a>\n",
+                "<a></a>",
+                "<a</a>",
+                "<a>",
+                "</a>",
+                "<abbr>x</a>",
+                "<a href=\"x\">a > b</a>",
+                "<a href=\"x\">multi\nline</a>",
+                "<a href=\"x\">Twitter for Mac</a> ",
+                "web",
+                " ")) {
+            final String trimmed = source.trim();
+            final Matcher matcher = SOURCE_PATTERN.matcher(trimmed);
+            final String expected = !trimmed.isEmpty() && matcher.matches() ? matcher.group(1).trim() : null;
+            assertThat(source, this.tweetEntityMapper.parseSource(source), is(expected));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.After;
+import org.junit.Test;
+
+public class TweetFacetsCollectorTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @After
+    public void shutdownExecutor() {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * @param tweets Content, language and optional source of each tweet,
+     * separated by blanks
+     */
+    private static DirectoryReader createShard(final String... tweets) throws IOException {
+        final Directory directory = new RAMDirectory();
+        try (final IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new WhitespaceAnalyzer()))) {
+            for (String tweet : tweets) {
+                final String[] values = tweet.split(" ");
+                final Document document = new Document();
+                document.add(new TextField("content", values[0], Field.Store.NO));
+                document.add(new SortedDocValuesField(TweetFacet.LANG.getDocValuesField(), new BytesRef(values[1])));
+                if (values.length > 2) {
+                    document.add(new SortedDocValuesField(TweetFacet.SOURCE.getDocValuesField(), new BytesRef(values[2])));
+                }
+                writer.addDocument(document);
+                // One segment per tweet
+                writer.commit();
+            }
+        }
+        return DirectoryReader.open(directory);
+    }
+
+    @Test
+    public void shouldCountFacetsOfAllHits() throws IOException {
+        try (final IndexReader reader = new MultiReader(
+                createShard("java en web", "java de", "kotlin en web"),
+                createShard("java en iphone", "java en web", "java und"))) {
+            final ShardedIndexSearcher indexSearcher = new ShardedIndexSearcher(reader, this.executor);
+            final Collection<TweetFacetsCollector> collectors = indexSearcher.search(new TermQuery(new Term("content", "java")), new CollectorManager<TweetFacetsCollector, Collection<TweetFacetsCollector>>() {
+                @Override
+                public TweetFacetsCollector newCollector() {
+                    return new TweetFacetsCollector(TopScoreDocCollector.create(2), EnumSet.of(TweetFacet.LANG, TweetFacet.SOURCE));
+                }
+
+                @Override
+                public Collection<TweetFacetsCollector> reduce(final Collection<TweetFacetsCollector> sliceCollectors) {
+                    return sliceCollectors;
+                }
+            });
+            assertThat(collectors.size(), is(2));
+
+            final TopDocs topDocs = TopDocs.merge(2, collectors.stream().map(TweetFacetsCollector::topDocs).toArray(TopDocs[]::new));
+            assertThat(topDocs.totalHits, is(5));
+            assertThat(topDocs.scoreDocs.length, is(2));
+
+            final Map<String, Map<String, Integer>> facets = TweetFacetsCollector.topCounts(collectors, 2);
+            assertThat(facets.keySet().toString(), is("[lang, source]"));
+            assertThat(facets.get("lang").toString(), is("{en=3, de=1}"));
+            assertThat(facets.get("source").toString(), is("{web=2, iphone=1}"));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class TweetGeoGridCollectorTest {
+
+    private static DirectoryReader createIndex(final double[]... locations) throws IOException {
+        final Directory directory = new RAMDirectory();
+        try (final IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new WhitespaceAnalyzer()))) {
+            // One tweet without location
+            writer.addDocument(new Document());
+            for (double[] location : locations) {
+                final Document document = new Document();
+                document.add(new NumericDocValuesField(TweetGeoGridCollector.LATITUDE_FIELD, Double.doubleToRawLongBits(location[0])));
+                document.add(new NumericDocValuesField(TweetGeoGridCollector.LONGITUDE_FIELD, Double.doubleToRawLongBits(location[1])));
+                writer.addDocument(document);
+            }
+        }
+        return DirectoryReader.open(directory);
+    }
+
+    @Test
+    public void shouldCountTweetsPerCell() throws IOException {
+        try (final DirectoryReader reader = createIndex(new double[]{50.5, 6.5}, new double[]{51.25, 6.75}, new double[]{51.75, 6.25}, new double[]{52.0, 7.0})) {
+            final TweetGeoGridCollector collector = new TweetGeoGridCollector(new BoundingBox(50.0, 6.0, 52.0, 7.0), 2, 1);
+            new IndexSearcher(reader).search(new MatchAllDocsQuery(), collector);
+
+            final List<TweetGeoGridCell> cells = TweetGeoGridCollector.merge(Collections.singletonList(collector));
+            assertThat(cells.size(), is(2));
+            assertThat(cells.get(0).getCount(), is(1L));
+            assertThat(cells.get(0).getNorth(), is(51.0));
+            // Tweets on the northern boundary belong to the last row
+            assertThat(cells.get(1).getCount(), is(3L));
+            assertThat(cells.get(1).getLatitude(), is(51.666666666666664));
+            assertThat(cells.get(1).getLongitude(), is(6.666666666666667));
+        }
+    }
+
+    @Test
+    public void shouldHandleBoxesCrossingTheAntimeridian() throws IOException {
+        try (final DirectoryReader reader = createIndex(new double[]{0.0, 179.0}, new double[]{0.0, -179.0}, new double[]{0.0, -171.0})) {
+            final BoundingBox boundingBox = new BoundingBox(-10.0, 170.0, 10.0, -170.0);
+            assertThat(boundingBox.getWidth(), is(20.0));
+
+            final TweetGeoGridCollector collector = new TweetGeoGridCollector(boundingBox, 1, 2);
+            new IndexSearcher(reader).search(new MatchAllDocsQuery(), collector);
+
+            final List<TweetGeoGridCell> cells = TweetGeoGridCollector.merge(Collections.singletonList(collector));
+            assertThat(cells.size(), is(2));
+            assertThat(cells.get(0).getWest(), is(170.0));
+            assertThat(cells.get(0).getEast(), is(180.0));
+            assertThat(cells.get(0).getCount(), is(1L));
+            assertThat(cells.get(1).getWest(), is(180.0));
+            assertThat(cells.get(1).getEast(), is(-170.0));
+            assertThat(cells.get(1).getCount(), is(2L));
+            assertThat(cells.get(1).getLongitude(), is(-175.0));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TweetJournalTest {
+
+    @Rule
+    public final TemporaryFolder directory = new TemporaryFolder();
+
+    private static List<String> readPending(final TweetJournal journal) throws IOException {
+        final List<String> rv = new ArrayList<>();
+        journal.read(journal.getCommittedPosition(), journal.getEndPosition(), (rawContent, endPosition) -> rv.add(rawContent));
+        return rv;
+    }
+
+    @Test
+    public void shouldKeepUncommittedEntries() throws IOException {
+        long committed;
+        try (final TweetJournal journal = new TweetJournal(this.directory.getRoot(), 16)) {
+            committed = journal.append("{\"id\":1}");
+            journal.append("{\"id\":2}");
+            journal.append("{\"id\":3, \"text\":\"Grüße\"}");
+            journal.commit(committed);
+            assertThat(readPending(journal), is(Arrays.asList("{\"id\":2}", "{\"id\":3, \"text\":\"Grüße\"}")));
+        }
+
+        try (final TweetJournal journal = new TweetJournal(this.directory.getRoot(), 16)) {
+            assertThat(journal.getCommittedPosition(), is(committed));
+            assertThat(readPending(journal), is(Arrays.asList("{\"id\":2}", "{\"id\":3, \"text\":\"Grüße\"}")));
+            journal.append("{\"id\":4}");
+            journal.commit(journal.getEndPosition());
+            assertThat(journal.getPendingBytes(), is(0L));
+            assertThat(readPending(journal).isEmpty(), is(true));
+            // Only the current segment, the checkpoint and the lock are left
+            assertThat(this.directory.getRoot().list().length, is(3));
+        }
+    }
+
+    @Test
+    public void shouldRemoveIncompleteEntries() throws IOException {
+        final long end;
+        try (final TweetJournal journal = new TweetJournal(this.directory.getRoot(), 1024)) {
+            journal.append("{\"id\":1}");
+            end = journal.append("{\"id\":2}");
+        }
+        final File segment = this.directory.getRoot().listFiles((dir, name) -> name.startsWith("journal-"))[0];
+        try (final RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        try (final TweetJournal journal = new TweetJournal(this.directory.getRoot(), 1024)) {
+            assertThat(readPending(journal), is(Arrays.asList("{\"id\":1}")));
+            assertThat(journal.append("{\"id\":3}"), is(end));
+            assertThat(readPending(journal), is(Arrays.asList("{\"id\":1}", "{\"id\":3}")));
+        }
+    }
+
+    @Test
+    public void shouldNotBeOpenedTwice() throws IOException {
+        try (final TweetJournal journal = new TweetJournal(this.directory.getRoot(), 1024)) {
+            journal.append("{\"id\":1}");
+            try {
+                new TweetJournal(this.directory.getRoot(), 1024).close();
+                fail("The journal has been opened twice");
+            } catch (IOException e) {
+                assertThat(e.getMessage().contains("in use"), is(true));
+            }
+        }
+
+        try (final TweetJournal journal = new TweetJournal(this.directory.getRoot(), 1024)) {
+            assertThat(readPending(journal), is(Arrays.asList("{\"id\":1}")));
+        }
+    }
+}
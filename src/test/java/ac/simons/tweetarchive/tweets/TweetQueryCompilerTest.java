@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import ac.simons.tweetarchive.config.TweetArchiveProperties;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.search.Query;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.hibernate.search.SearchFactory;
+import org.junit.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TweetQueryCompilerTest {
+
+    private final TweetQueryCompiler compiler = new TweetQueryCompiler(new TweetArchiveProperties());
+
+    private final SearchFactory searchFactory = mock(SearchFactory.class);
+
+    public TweetQueryCompilerTest() {
+        when(this.searchFactory.getAnalyzer(TweetEntity.class)).thenReturn(new WhitespaceAnalyzer());
+    }
+
+    @Test
+    public void shouldCacheParsedQueries() {
+        final Query first = this.compiler.compileQuery(this.searchFactory, "java AND screenName:rotnroll666");
+        assertThat(this.compiler.compileQuery(this.searchFactory, " java  AND screenName:rotnroll666"), is(sameInstance(first)));
+        assertThat(this.compiler.compileQuery(this.searchFactory, "JAVA AND screenName:rotnroll666"), is(not(sameInstance(first))));
+        assertThat(first.toString(), is("+content:java +screenName:rotnroll666"));
+        assertThat(this.compiler.getParsedQueryStats().hitCount(), is(1L));
+        verify(this.searchFactory, times(1)).getAnalyzer(TweetEntity.class);
+    }
+
+    @Test
+    public void shouldReportPositionOfParseErrors() {
+        try {
+            this.compiler.compileQuery(this.searchFactory, "java AND (kotlin");
+            fail("Expected an InvalidQueryException");
+        } catch (InvalidQueryException e) {
+            assertThat(e.getQuery(), is("java AND (kotlin"));
+            assertThat(e.getColumn(), is(16));
+        }
+        try {
+            this.compiler.compileQuery(this.searchFactory, "*java");
+            fail("Expected an InvalidQueryException");
+        } catch (InvalidQueryException e) {
+            // Rejected after the query has been read, the position is unknown
+            assertThat(e.getColumn(), is(nullValue()));
+        }
+        assertThat(this.compiler.getParsedQueryStats().missCount(), is(2L));
+    }
+}
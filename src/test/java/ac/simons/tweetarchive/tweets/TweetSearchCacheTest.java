@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import ac.simons.tweetarchive.config.TweetArchiveProperties;
+import ac.simons.tweetarchive.tweets.TweetSearchCache.Kind;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class TweetSearchCacheTest {
+
+    private final TweetSearchCache cache = new TweetSearchCache(new TweetArchiveProperties());
+
+    private final Paging paging = new Paging(0, 50, Paging.Order.RELEVANCE, null);
+
+    private final AtomicInteger searches = new AtomicInteger();
+
+    private TweetSearchResult<Long> search(final String keywords, final long indexVersion) {
+        return this.cache.get(Kind.KEYWORD, TweetSearchCache.normalizeKeywords(keywords), null, null, this.paging, indexVersion, () -> {
+            this.searches.incrementAndGet();
+            return new TweetSearchResult<>(new ArrayList<>(), 0, null);
+        });
+    }
+
+    @Test
+    public void shouldCacheNormalizedQueries() {
+        final TweetSearchResult<Long> first = search("Java  Kotlin", 1);
+        assertThat(search(" java kotlin ", 1), is(sameInstance(first)));
+        assertThat(this.searches.get(), is(1));
+        assertThat(this.cache.getStats().hitCount(), is(1L));
+    }
+
+    @Test
+    public void shouldInvalidateOnNewIndexVersion() {
+        search("java", 1);
+        search("java", 2);
+        assertThat(this.searches.get(), is(2));
+        assertThat(this.cache.getSize(), is(1L));
+    }
+
+    @Test
+    public void shouldKeepCaseOfQueries() {
+        assertThat(TweetSearchCache.normalizeQuery(" java  AND\tkotlin"), is("java AND kotlin"));
+    }
+}
@@ -15,22 +15,22 @@
  */
 package ac.simons.tweetarchive.tweets;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.Scanner;
+import ac.simons.tweetarchive.config.TweetArchiveProperties;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
 import static org.hamcrest.CoreMatchers.is;
-import static org.hamcrest.CoreMatchers.nullValue;
-import org.joor.Reflect;
+import org.jooq.DSLContext;
 import static org.junit.Assert.assertThat;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import static org.mockito.Matchers.anyCollectionOf;
 import org.mockito.Mock;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.mockito.runners.MockitoJUnitRunner;
-import twitter4j.JSONException;
-import twitter4j.JSONObject;
-import twitter4j.Status;
+import org.springframework.context.ApplicationEventPublisher;
 
 /**
  * @author Michael J. Simons, 2016-09-05
@@ -38,41 +38,28 @@ import twitter4j.Status;
 @RunWith(MockitoJUnitRunner.class)
 public class TweetStorageServiceTest {
 
-    private final Status simpleTweet;
-    
     @Mock
     private TweetRepository tweetRepository;
 
-    public TweetStorageServiceTest() throws IOException, JSONException {
-        final Reflect statusFactory = Reflect.on("twitter4j.StatusJSONImpl");
-        try (final InputStream in = this.getClass().getResourceAsStream("/tweets/simple-tweet.json")) {
-            simpleTweet = statusFactory.create(new JSONObject(new Scanner(in).useDelimiter("\\Z").next())).as(Status.class);
-        }
-    }
-
-    @Test
-    public void extracTextShouldWork() {
-        final TweetStorageService tweetStorageService = new TweetStorageService(this.tweetRepository);
-        Status status;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
 
-        status = simpleTweet;
-        assertThat(tweetStorageService.extractContent(status), is("RT @euregjug: Meldet euch zum Vortrag am 14.9 an http://www.euregjug.eu/register/9 Ihr könnt eine @jetbrains Lizenz und Bücher aus dem @dpunkt_verlag gewinnen…"));
-    }
-    
-    
-    @Test
-    public void extractSourceShouldWork() {
-        final TweetStorageService tweetStorageService = new TweetStorageService(this.tweetRepository);
-        Status status;
+    @Mock
+    private TweetDeletionService tweetDeletionService;
 
-        status = simpleTweet;
-        assertThat(tweetStorageService.extractSource(status), is("Twitter for Mac"));
+    private final RawDataCodec rawDataCodec = new RawDataCodec(mock(DSLContext.class), new TweetArchiveProperties());
 
-        status = mock(Status.class);
-        assertThat(tweetStorageService.extractSource(status), is(nullValue()));
+    @Test
+    public void storeTweetsShouldSkipDeletedTweets() {
+        final TweetStorageService tweetStorageService = new TweetStorageService(this.tweetRepository, this.eventPublisher, this.rawDataCodec, new TweetEntityMapper(), this.tweetDeletionService);
+        final ZonedDateTime createdAt = ZonedDateTime.now();
+        final TweetEntity existingTweet = new TweetEntity(1, 1, "foo", createdAt, "existing", null, "{}");
+        final TweetEntity deletedTweet = new TweetEntity(2, 1, "foo", createdAt, "deleted", null, "{}");
+        final TweetEntity newTweet = new TweetEntity(3, 1, "foo", createdAt, "new", null, "{}");
+        when(this.tweetRepository.findExistingIds(anyCollectionOf(Long.class))).thenReturn(Arrays.asList(1L));
+        when(this.tweetDeletionService.findDeletedIds(anyCollectionOf(Long.class))).thenReturn(new HashSet<>(Arrays.asList(2L)));
 
-        status = mock(Status.class);
-        when(status.getSource()).thenReturn("");
-        assertThat(tweetStorageService.extractSource(status), is(nullValue()));
+        assertThat(tweetStorageService.storeTweets(Arrays.asList(existingTweet, deletedTweet, newTweet)), is(1));
+        verify(this.tweetRepository).persistAll(Arrays.asList(newTweet));
     }
 }
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.tweets;
+
+import ac.simons.tweetarchive.config.TweetArchiveProperties;
+import ac.simons.tweetarchive.config.TweetArchiveProperties.StreamBackpressure;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import static org.hamcrest.CoreMatchers.hasItems;
+import static org.hamcrest.CoreMatchers.is;
+import org.joor.Reflect;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import org.mockito.stubbing.Answer;
+import twitter4j.Status;
+import twitter4j.JSONException;
+import twitter4j.JSONObject;
+import twitter4j.TwitterException;
+import twitter4j.TwitterObjectFactory;
+import twitter4j.TwitterStream;
+import twitter4j.UserStreamListener;
+
+public class TweetStreamIngestServiceTest {
+
+    @Rule
+    public final TemporaryFolder journalDirectory = new TemporaryFolder();
+
+    private final List<Long> storedIds = Collections.synchronizedList(new ArrayList<>());
+
+    private TweetStreamIngestService newService(final TweetStorageService storage, final StreamBackpressure backpressure, final int capacity) throws IOException {
+        final TweetArchiveProperties properties = new TweetArchiveProperties();
+        properties.getStream().setBackpressure(backpressure);
+        properties.getStream().setQueueCapacity(capacity);
+        properties.getStream().setBatchSize(3);
+        properties.getStream().setJournalDirectory(this.journalDirectory.getRoot());
+        properties.getStream().setMaxRetryDelay(100);
+        final TweetStreamIngestService rv = new TweetStreamIngestService(storage, properties);
+        rv.start();
+        return rv;
+    }
+
+    /**
+     * Creates a storage that records the ids of all stored statuses and
+     * waits for the given latch before storing each batch.
+     */
+    private TweetStorageService newStorage(final CountDownLatch go) {
+        final TweetStorageService rv = mock(TweetStorageService.class);
+        doAnswer(invocation -> {
+            go.await();
+            final Collection<RawStatus> batch = (Collection<RawStatus>) invocation.getArguments()[0];
+            batch.forEach(s -> this.storedIds.add(s.getStatus().getId()));
+            return batch.size();
+        }).when(rv).storeAll(anyCollectionOf(RawStatus.class));
+        return rv;
+    }
+
+    /**
+     * Creates a fake stream that sends {@code n} synthetic statuses with the
+     * ids {@code 0} to {@code n - 1} to the listener on
+     * {@link TwitterStream#user()}. Like the real stream, it registers the raw
+     * json of each status.
+     */
+    private static TwitterStream newTwitterStream(final int n) throws IOException, JSONException {
+        final JSONObject template;
+        try (final InputStream in = TweetStreamIngestServiceTest.class.getResourceAsStream("/tweets/simple-tweet.json")) {
+            template = new JSONObject(new Scanner(in, "UTF-8").useDelimiter("\\Z").next());
+        }
+        final List<UserStreamListener> listeners = new ArrayList<>();
+        return mock(TwitterStream.class, (Answer<Object>) invocation -> {
+            switch (invocation.getMethod().getName()) {
+                case "addListener":
+                    listeners.add((UserStreamListener) invocation.getArguments()[0]);
+                    break;
+                case "user":
+                    for (long id = 0; id < n; ++id) {
+                        final String rawContent = template.put("id", id).put("id_str", Long.toString(id)).toString();
+                        final Status status = TwitterObjectFactory.createStatus(rawContent);
+                        Reflect.on(TwitterObjectFactory.class).call("registerJSONObject", status, rawContent);
+                        listeners.forEach(listener -> listener.onStatus(status));
+                    }
+                    break;
+                default:
+            }
+            return null;
+        });
+    }
+
+    private static void receive(final TwitterStream twitterStream, final TweetStreamIngestService service) {
+        twitterStream.addListener(new UserStreamAdapterImpl(mock(TweetDeletionService.class), service));
+        twitterStream.user();
+    }
+
+    @Test
+    public void blockShouldStoreAllStatusesInOrder() throws IOException, InterruptedException, JSONException {
+        final CountDownLatch go = new CountDownLatch(0);
+        final TweetStreamIngestService service = newService(newStorage(go), StreamBackpressure.BLOCK, 2);
+
+        receive(newTwitterStream(50), service);
+        service.stop();
+
+        assertThat(this.storedIds, is(LongStream.range(0, 50).boxed().collect(Collectors.toList())));
+        assertThat(service.getReceived(), is(50L));
+        assertThat(service.getStored(), is(50L));
+        assertThat(service.getDropped(), is(0L));
+        assertThat(service.getQueueSize(), is(0));
+        assertThat(service.getJournalPendingBytes(), is(0L));
+        assertTrue(service.getMaxLatency() >= service.getMeanLatency());
+    }
+
+    @Test
+    public void dropOldestShouldKeepNewestStatuses() throws IOException, InterruptedException, JSONException {
+        final CountDownLatch go = new CountDownLatch(1);
+        final TweetStreamIngestService service = newService(newStorage(go), StreamBackpressure.DROP_OLDEST, 5);
+
+        receive(newTwitterStream(50), service);
+        go.countDown();
+        service.stop();
+
+        assertThat(service.getReceived(), is(50L));
+        assertThat(service.getStored() + service.getSpilled(), is(50L));
+        assertThat(service.getDropped(), is(0L));
+        assertTrue(service.getSpilled() >= 40L);
+        assertThat(this.storedIds, hasItems(45L, 46L, 47L, 48L, 49L));
+    }
+
+    @Test
+    public void journaledStatusesShouldBeStoredAfterOutage() throws IOException, InterruptedException, JSONException {
+        final AtomicBoolean available = new AtomicBoolean();
+        final TweetStorageService storage = mock(TweetStorageService.class);
+        doAnswer(invocation -> {
+            if (!available.get()) {
+                throw new IllegalStateException("Storage is gone");
+            }
+            final Collection<RawStatus> batch = (Collection<RawStatus>) invocation.getArguments()[0];
+            batch.forEach(s -> this.storedIds.add(s.getStatus().getId()));
+            return batch.size();
+        }).when(storage).storeAll(anyCollectionOf(RawStatus.class));
+
+        TweetStreamIngestService service = newService(storage, StreamBackpressure.BLOCK, 5);
+        receive(newTwitterStream(2), service);
+        await(service, ingest -> ingest.getSpilled() == 2);
+        service.stop();
+        assertThat(service.getStored(), is(0L));
+        assertThat(service.getDropped(), is(0L));
+        assertTrue(service.getJournalPendingBytes() > 0);
+
+        // Stored while the queue is empty, also after a restart
+        available.set(true);
+        service = newService(storage, StreamBackpressure.BLOCK, 5);
+        await(service, ingest -> ingest.getReplayed() == 2);
+        service.stop();
+        assertThat(service.getJournalPendingBytes(), is(0L));
+        assertThat(this.storedIds, is(Arrays.asList(0L, 1L)));
+    }
+
+    @Test
+    public void statusesThatCannotBeStoredShouldNotBlockTheJournal() throws IOException, InterruptedException, JSONException, TwitterException {
+        final TweetStorageService storage = mock(TweetStorageService.class);
+        doAnswer(invocation -> {
+            final Collection<RawStatus> batch = (Collection<RawStatus>) invocation.getArguments()[0];
+            if (batch.stream().anyMatch(s -> s.getStatus().getId() == 1L)) {
+                throw new IllegalStateException("Constraint violated");
+            }
+            batch.forEach(s -> this.storedIds.add(s.getStatus().getId()));
+            return batch.size();
+        }).when(storage).storeAll(anyCollectionOf(RawStatus.class));
+
+        final TweetStreamIngestService service = newService(storage, StreamBackpressure.BLOCK, 5);
+        receive(newTwitterStream(3), service);
+        await(service, ingest -> ingest.getDeadLettered() == 1);
+        await(service, ingest -> ingest.getJournalPendingBytes() == 0);
+        service.stop();
+
+        assertThat(this.storedIds, hasItems(0L, 2L));
+        final List<String> deadLetters = Files.readAllLines(new File(this.journalDirectory.getRoot(), TweetStreamIngestService.DEAD_LETTERS_FILE).toPath(), StandardCharsets.UTF_8);
+        assertThat(deadLetters.size(), is(1));
+        assertThat(TwitterObjectFactory.createStatus(deadLetters.get(0)).getId(), is(1L));
+    }
+
+    private static void await(final TweetStreamIngestService service, final Predicate<TweetStreamIngestService> condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.test(service)) {
+            assertTrue("Timed out", System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
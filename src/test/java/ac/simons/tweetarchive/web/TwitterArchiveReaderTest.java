@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 michael-simons.eu.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ac.simons.tweetarchive.web;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+import org.springframework.util.StreamUtils;
+import twitter4j.JSONException;
+import twitter4j.Status;
+
+public class TwitterArchiveReaderTest {
+
+    private final TwitterArchiveReader archiveReader = new TwitterArchiveReader();
+
+    @Test
+    public void readShouldWork() throws IOException, JSONException {
+        final List<Status> statuses = new ArrayList<>();
+        final List<String> rawJSON = new ArrayList<>();
+        try (final InputStream in = this.getClass().getResourceAsStream("/archive/2016_09.js")) {
+            assertThat(archiveReader.read(in, (s, r) -> {
+                statuses.add(s);
+                rawJSON.add(r);
+            }), is(2));
+        }
+
+        Status status = statuses.get(0);
+        assertThat(status.getId(), is(772773219929145344L));
+        assertThat(status.getCreatedAt().toInstant(), is(Instant.parse("2016-09-05T12:27:47Z")));
+        assertThat(status.getUser().getScreenName(), is("rotnroll666"));
+        assertThat(status.getMediaEntities().length, is(1));
+        assertThat(rawJSON.get(0), containsString("\"created_at\":\"Mon Sep 05 12:27:47 +0000 2016\""));
+        assertThat(rawJSON.get(0), containsString("\"sizes\":{}"));
+
+        status = statuses.get(1);
+        assertThat(status.getId(), is(772774129103261696L));
+        assertThat(status.getInReplyToStatusId(), is(772772372990586882L));
+        assertThat(status.getInReplyToScreenName(), is("lukaseder"));
+        assertThat(status.getURLEntities()[0].getExpandedURL(), is("http://www.jooq.org/doc/3.8/manual/"));
+    }
+
+    @Test
+    public void readShouldKeepArchiveOpen() throws IOException, JSONException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (
+                final InputStream in = this.getClass().getResourceAsStream("/archive/2016_09.js");
+                final ZipOutputStream zip = new ZipOutputStream(buffer)) {
+            final byte[] entry = StreamUtils.copyToByteArray(in);
+            for (String month : new String[]{"2016_08", "2016_09"}) {
+                zip.putNextEntry(new ZipEntry("data/js/tweets/" + month + ".js"));
+                zip.write(entry);
+                zip.closeEntry();
+            }
+        }
+
+        int cnt = 0;
+        try (final ZipInputStream archive = new ZipInputStream(new ByteArrayInputStream(buffer.toByteArray()))) {
+            while (archive.getNextEntry() != null) {
+                cnt += archiveReader.read(archive, (s, r) -> {
+                });
+            }
+        }
+        assertThat(cnt, is(4));
+    }
+
+    @Test
+    public void reformatDateShouldWork() {
+        assertThat(TwitterArchiveReader.reformatDate("2016-09-05 14:27:47 +0200"), is("Mon Sep 05 12:27:47 +0000 2016"));
+        assertThat(TwitterArchiveReader.reformatDate("Mon Sep 05 12:27:47 +0000 2016"), is("Mon Sep 05 12:27:47 +0000 2016"));
+    }
+}
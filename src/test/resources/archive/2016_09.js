@@ -0,0 +1,80 @@
+Grailbird.data.tweets_2016_09 = 
+ [ {
+  "source" : "<a href=\"http:\/\/itunes.apple.com\/us\/app\/twitter\/id409789998?mt=12\" rel=\"nofollow\">Twitter for Mac<\/a>",
+  "entities" : {
+    "user_mentions" : [ ],
+    "media" : [ {
+      "expanded_url" : "https:\/\/twitter.com\/rotnroll666\/status\/772773219929145344\/photo\/1",
+      "indices" : [ 18, 41 ],
+      "url" : "https:\/\/t.co\/bqmKiPHGpL",
+      "media_url" : "http:\/\/pbs.twimg.com\/media\/CrnJfUeXEAAgoqf.jpg",
+      "id_str" : "772773211238162432",
+      "id" : 772773211238162432,
+      "media_url_https" : "https:\/\/pbs.twimg.com\/media\/CrnJfUeXEAAgoqf.jpg",
+      "sizes" : [ {
+        "h" : 150,
+        "resize" : "crop",
+        "w" : 150
+      }, {
+        "h" : 1200,
+        "resize" : "fit",
+        "w" : 900
+      } ],
+      "display_url" : "pic.twitter.com\/bqmKiPHGpL"
+    } ],
+    "hashtags" : [ ],
+    "urls" : [ ]
+  },
+  "geo" : { },
+  "id_str" : "772773219929145344",
+  "text" : "Neues Spielzeug 😀 https:\/\/t.co\/bqmKiPHGpL",
+  "id" : 772773219929145344,
+  "created_at" : "2016-09-05 12:27:47 +0000",
+  "user" : {
+    "name" : "Michael Simons",
+    "screen_name" : "rotnroll666",
+    "protected" : false,
+    "id_str" : "1863311",
+    "profile_image_url_https" : "https:\/\/pbs.twimg.com\/profile_images\/687617826374307840\/uqNT7B2K_normal.jpg",
+    "id" : 1863311,
+    "verified" : false
+  }
+}, {
+  "source" : "<a href=\"http:\/\/twitter.com\" rel=\"nofollow\">Twitter Web Client<\/a>",
+  "entities" : {
+    "user_mentions" : [ {
+      "name" : "Lukas Eder",
+      "screen_name" : "lukaseder",
+      "indices" : [ 0, 10 ],
+      "id_str" : "1193795274",
+      "id" : 1193795274
+    } ],
+    "media" : [ ],
+    "hashtags" : [ ],
+    "urls" : [ {
+      "indices" : [ 41, 64 ],
+      "url" : "https:\/\/t.co\/4sFr4nAQ6U",
+      "expanded_url" : "http:\/\/www.jooq.org\/doc\/3.8\/manual\/",
+      "display_url" : "jooq.org\/doc\/3.8\/manual\/"
+    } ]
+  },
+  "in_reply_to_status_id_str" : "772772372990586882",
+  "geo" : { },
+  "id_str" : "772774129103261696",
+  "in_reply_to_user_id" : 1193795274,
+  "text" : "@lukaseder Well, it's all in the manual: https:\/\/t.co\/4sFr4nAQ6U",
+  "id" : 772774129103261696,
+  "in_reply_to_status_id" : 772772372990586882,
+  "created_at" : "2016-09-05 12:31:24 +0000",
+  "in_reply_to_screen_name" : "lukaseder",
+  "in_reply_to_user_id_str" : "1193795274",
+  "user" : {
+    "name" : "Michael Simons",
+    "screen_name" : "rotnroll666",
+    "protected" : false,
+    "id_str" : "1863311",
+    "profile_image_url_https" : "https:\/\/pbs.twimg.com\/profile_images\/687617826374307840\/uqNT7B2K_normal.jpg",
+    "id" : 1863311,
+    "verified" : false
+  }
+} ]